@@ -0,0 +1,1046 @@
+package com.nascentdigital.communication.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+
+/**
+ * Generates an implementation of every interface annotated with
+ * {@code @ServiceInterface}, so typed service calls go straight to
+ * {@code ServiceClient.beginRequest} without reflection or proxies.
+ * <p>
+ * Each {@code @Request} method gets a {@code ServiceRequestTemplate} built
+ * once per instance, and a response format and identity transform built
+ * once per class.  The library isn't a dependency of the processor, so its
+ * types are looked up by name.
+ */
+@SupportedAnnotationTypes({
+	ServiceInterfaceProcessor.SERVICE_INTERFACE,
+	ServiceInterfaceProcessor.REQUEST,
+	ServiceInterfaceProcessor.PATH,
+	ServiceInterfaceProcessor.QUERY,
+	ServiceInterfaceProcessor.HEADER,
+	ServiceInterfaceProcessor.BODY
+})
+public final class ServiceInterfaceProcessor extends AbstractProcessor
+{
+	// [region] constants
+
+	private static final String COMMUNICATION_PACKAGE =
+		"com.nascentdigital.communication";
+	private static final String ANNOTATIONS_PACKAGE =
+		COMMUNICATION_PACKAGE + ".annotations";
+
+	static final String SERVICE_INTERFACE =
+		ANNOTATIONS_PACKAGE + ".ServiceInterface";
+	static final String REQUEST = ANNOTATIONS_PACKAGE + ".Request";
+	static final String PATH = ANNOTATIONS_PACKAGE + ".Path";
+	static final String QUERY = ANNOTATIONS_PACKAGE + ".Query";
+	static final String HEADER = ANNOTATIONS_PACKAGE + ".Header";
+	static final String BODY = ANNOTATIONS_PACKAGE + ".Body";
+
+	private static final String SERVICE_OPERATION =
+		COMMUNICATION_PACKAGE + ".ServiceOperation";
+	private static final String SERVICE_CLIENT_COMPLETION =
+		COMMUNICATION_PACKAGE + ".ServiceClientCompletion";
+	private static final String SERVICE_REQUEST_OPTIONS =
+		COMMUNICATION_PACKAGE + ".ServiceRequestOptions";
+	private static final String BODY_DATA_PROVIDER =
+		COMMUNICATION_PACKAGE + ".BodyDataProvider";
+
+	private static final String IMPLEMENTATION_SUFFIX = "Impl";
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private Elements _elements;
+	private Types _types;
+	private Messager _messager;
+
+	// [endregion]
+
+
+	// [region] processor methods
+
+	@Override
+	public SourceVersion getSupportedSourceVersion()
+	{
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+		RoundEnvironment roundEnvironment)
+	{
+		_elements = processingEnv.getElementUtils();
+		_types = processingEnv.getTypeUtils();
+		_messager = processingEnv.getMessager();
+
+		for (TypeElement annotation : annotations)
+		{
+			// the others are read along with the interface they're used in
+			if (!annotation.getQualifiedName().contentEquals(SERVICE_INTERFACE))
+			{
+				continue;
+			}
+
+			for (Element element
+				: roundEnvironment.getElementsAnnotatedWith(annotation))
+			{
+				if (element.getKind() != ElementKind.INTERFACE)
+				{
+					error(element, "@ServiceInterface can only be applied to "
+						+ "interfaces.");
+					continue;
+				}
+
+				TypeElement serviceInterface = (TypeElement)element;
+				ServiceInterfaceModel model = parseInterface(serviceInterface);
+				if (model != null)
+				{
+					writeImplementation(model);
+				}
+			}
+		}
+		return true;
+	}
+
+	// [endregion]
+
+
+	// [region] parsing
+
+	private ServiceInterfaceModel parseInterface(TypeElement serviceInterface)
+	{
+		if (!serviceInterface.getTypeParameters().isEmpty())
+		{
+			error(serviceInterface, "Service interfaces can't be generic.");
+			return null;
+		}
+		if (serviceInterface.getModifiers().contains(Modifier.PRIVATE))
+		{
+			error(serviceInterface, "Service interfaces can't be private.");
+			return null;
+		}
+
+		ServiceInterfaceModel model = new ServiceInterfaceModel();
+		model.element = serviceInterface;
+		model.packageName = getPackage(serviceInterface).getQualifiedName()
+			.toString();
+		model.className = getFlatName(serviceInterface) + IMPLEMENTATION_SUFFIX;
+		model.isPublic = serviceInterface.getModifiers()
+			.contains(Modifier.PUBLIC);
+
+		boolean valid = true;
+		for (ExecutableElement method : ElementFilter.methodsIn(
+			_elements.getAllMembers(serviceInterface)))
+		{
+			if (!method.getModifiers().contains(Modifier.ABSTRACT))
+			{
+				continue;
+			}
+
+			RequestModel request = parseMethod(method);
+			if (request == null)
+			{
+				valid = false;
+				continue;
+			}
+			request.index = model.requests.size();
+			model.requests.add(request);
+		}
+		return valid ? model : null;
+	}
+
+	private RequestModel parseMethod(ExecutableElement method)
+	{
+		AnnotationMirror requestAnnotation = getAnnotation(method, REQUEST);
+		if (requestAnnotation == null)
+		{
+			error(method, "Service interface methods need a @Request.");
+			return null;
+		}
+		if (!method.getTypeParameters().isEmpty())
+		{
+			error(method, "Service interface methods can't be generic.");
+			return null;
+		}
+
+		RequestModel request = new RequestModel();
+		request.method = method;
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+			_elements.getElementValuesWithDefaults(requestAnnotation);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>
+			value : values.entrySet())
+		{
+			String name = value.getKey().getSimpleName().toString();
+			Object constant = value.getValue().getValue();
+			if ("method".equals(name))
+			{
+				request.httpMethod = ((VariableElement)constant).getSimpleName()
+					.toString();
+			}
+			else if ("path".equals(name))
+			{
+				request.path = (String)constant;
+			}
+			else if ("headers".equals(name))
+			{
+				for (Object header : (List<?>)constant)
+				{
+					String line = (String)((AnnotationValue)header).getValue();
+					int separator = line.indexOf(':');
+					if (separator <= 0)
+					{
+						error(method, "Header \"" + line
+							+ "\" must be formatted as \"Name: value\".");
+						return null;
+					}
+					request.headers.add(line.substring(0, separator).trim());
+					request.headers.add(line.substring(separator + 1).trim());
+				}
+			}
+			else if ("priority".equals(name))
+			{
+				request.priority = ((VariableElement)constant).getSimpleName()
+					.toString();
+			}
+			else if ("useCaches".equals(name))
+			{
+				request.useCaches = (Boolean)constant;
+			}
+		}
+
+		// bind parameters
+		List<? extends VariableElement> parameters = method.getParameters();
+		for (int i = 0; i < parameters.size(); ++i)
+		{
+			VariableElement parameter = parameters.get(i);
+			String parameterName = parameter.getSimpleName().toString();
+			TypeMirror type = parameter.asType();
+			String pathName = getAnnotationString(parameter, PATH);
+			String queryName = getAnnotationString(parameter, QUERY);
+			String headerName = getAnnotationString(parameter, HEADER);
+			boolean isBody = getAnnotation(parameter, BODY) != null;
+			int bindingCount = (pathName != null ? 1 : 0)
+				+ (queryName != null ? 1 : 0) + (headerName != null ? 1 : 0)
+				+ (isBody ? 1 : 0);
+			if (bindingCount > 1)
+			{
+				error(parameter, "Parameters can only have one binding.");
+				return null;
+			}
+
+			if (pathName != null)
+			{
+				request.pathParameters.add(new ParameterModel(pathName,
+					parameterName, type));
+			}
+			else if (queryName != null)
+			{
+				if (!isValidQueryName(queryName))
+				{
+					error(parameter, "Invalid query parameter name \""
+						+ queryName + "\".");
+					return null;
+				}
+				request.queryParameters.add(new ParameterModel(queryName,
+					parameterName, type));
+			}
+			else if (headerName != null)
+			{
+				request.headerParameters.add(new ParameterModel(headerName,
+					parameterName, type));
+			}
+			else if (isBody)
+			{
+				if (request.bodyParameter != null)
+				{
+					error(parameter, "Only one parameter can be the @Body.");
+					return null;
+				}
+				if (getBodyExpression(parameterName, type) == null)
+				{
+					error(parameter, "@Body parameters must be a String, a "
+						+ "byte[] or a BodyDataProvider.");
+					return null;
+				}
+				request.bodyParameter = new ParameterModel(null, parameterName,
+					type);
+			}
+			else if (isType(type, SERVICE_REQUEST_OPTIONS)
+				&& request.optionsParameter == null)
+			{
+				request.optionsParameter = parameterName;
+			}
+			else if (i == parameters.size() - 1
+				&& isErasureOf(type, SERVICE_CLIENT_COMPLETION))
+			{
+				request.completionParameter = parameterName;
+				List<? extends TypeMirror> typeArguments =
+					((DeclaredType)type).getTypeArguments();
+				if (typeArguments.size() == 1)
+				{
+					request.resultType = typeArguments.get(0);
+				}
+			}
+			else
+			{
+				error(parameter, "Parameter " + parameterName + " needs a "
+					+ "@Path, @Query, @Header or @Body binding.");
+				return null;
+			}
+		}
+
+		// work out the response format and return type
+		if (request.completionParameter == null)
+		{
+			error(method, "The last parameter must be a "
+				+ "ServiceClientCompletion.");
+			return null;
+		}
+		request.formatExpression = request.resultType == null ? null
+			: getFormatExpression(request.resultType);
+		if (request.formatExpression == null)
+		{
+			error(method, "Unsupported completion result type "
+				+ request.resultType + ".");
+			return null;
+		}
+
+		TypeMirror returnType = method.getReturnType();
+		if (returnType.getKind() != TypeKind.VOID)
+		{
+			TypeElement operationElement =
+				_elements.getTypeElement(SERVICE_OPERATION);
+			if (operationElement == null || !_types.isAssignable(
+				_types.getDeclaredType(operationElement, request.resultType,
+					request.resultType), returnType))
+			{
+				error(method, "Service interface methods must return void, "
+					+ "Cancellable or ServiceOperation<" + request.resultType
+					+ ", " + request.resultType + ">.");
+				return null;
+			}
+			request.returnsOperation = true;
+		}
+
+		return buildTemplate(request) ? request : null;
+	}
+
+	/**
+	 * Builds the URI template and the order of its values, which must match
+	 * how ServiceRequestTemplate numbers placeholders: path placeholders
+	 * first, then query values that are a whole placeholder, each name
+	 * counted once.  A query parameter whose placeholder the path already
+	 * has is bound there rather than appended again.
+	 */
+	private boolean buildTemplate(RequestModel request)
+	{
+		StringBuilder template = new StringBuilder(request.path);
+		char separator = request.path.indexOf('?') == -1 ? '?' : '&';
+		for (ParameterModel query : request.queryParameters)
+		{
+			if (request.path.contains("{" + query.name + "}"))
+			{
+				continue;
+			}
+			template.append(separator).append(query.name).append("={")
+				.append(query.name).append('}');
+			separator = '&';
+		}
+		request.template = template.toString();
+
+		List<String> placeholders = new ArrayList<>();
+		int queryStart = request.template.indexOf('?');
+		String path = queryStart == -1 ? request.template
+			: request.template.substring(0, queryStart);
+		int position = 0;
+		while (true)
+		{
+			int open = path.indexOf('{', position);
+			if (open == -1)
+			{
+				break;
+			}
+			int close = path.indexOf('}', open);
+			if (close == -1 || close == open + 1)
+			{
+				error(request.method, "Malformed placeholder in path \""
+					+ request.path + "\".");
+				return false;
+			}
+			addPlaceholder(placeholders, path.substring(open + 1, close));
+			position = close + 1;
+		}
+		if (queryStart != -1)
+		{
+			for (String pair : request.template.substring(queryStart + 1)
+				.split("&"))
+			{
+				int valueStart = pair.indexOf('=') + 1;
+				if (valueStart > 0 && pair.length() - valueStart > 2
+					&& pair.charAt(valueStart) == '{'
+					&& pair.charAt(pair.length() - 1) == '}')
+				{
+					addPlaceholder(placeholders,
+						pair.substring(valueStart + 1, pair.length() - 1));
+				}
+			}
+		}
+
+		// every placeholder needs exactly one parameter
+		for (String placeholder : placeholders)
+		{
+			ParameterModel binding = null;
+			for (ParameterModel parameter : request.pathParameters)
+			{
+				if (parameter.name.equals(placeholder))
+				{
+					binding = check(request, binding, parameter);
+				}
+			}
+			for (ParameterModel parameter : request.queryParameters)
+			{
+				if (parameter.name.equals(placeholder))
+				{
+					binding = check(request, binding, parameter);
+				}
+			}
+			if (binding == null)
+			{
+				error(request.method, "No parameter is bound to {"
+					+ placeholder + "}.");
+				return false;
+			}
+			if (binding == DUPLICATE_BINDING)
+			{
+				return false;
+			}
+			request.templateValues.add(binding);
+		}
+		for (ParameterModel parameter : request.pathParameters)
+		{
+			if (!placeholders.contains(parameter.name))
+			{
+				error(request.method, "Path \"" + request.path
+					+ "\" has no {" + parameter.name + "} placeholder.");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ParameterModel check(RequestModel request, ParameterModel binding,
+		ParameterModel parameter)
+	{
+		if (binding != null)
+		{
+			if (binding != DUPLICATE_BINDING)
+			{
+				error(request.method, "{" + parameter.name
+					+ "} is bound more than once.");
+			}
+			return DUPLICATE_BINDING;
+		}
+		return parameter;
+	}
+
+	private static void addPlaceholder(List<String> placeholders, String name)
+	{
+		if (!placeholders.contains(name))
+		{
+			placeholders.add(name);
+		}
+	}
+
+	private static boolean isValidQueryName(String name)
+	{
+		if (name.isEmpty())
+		{
+			return false;
+		}
+		for (int i = 0; i < name.length(); ++i)
+		{
+			if ("{}&=?#".indexOf(name.charAt(i)) != -1)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// [endregion]
+
+
+	// [region] generation
+
+	private void writeImplementation(ServiceInterfaceModel model)
+	{
+		StringBuilder source = new StringBuilder(4096);
+		if (!model.packageName.isEmpty())
+		{
+			source.append("package ").append(model.packageName)
+				.append(";\n\n");
+		}
+		source.append("import com.nascentdigital.communication.ServiceClient;\n")
+			.append("import com.nascentdigital.communication.ServiceMethod;\n")
+			.append("import com.nascentdigital.communication.ServiceOperationPriority;\n")
+			.append("import com.nascentdigital.communication.ServiceRequestTemplate;\n")
+			.append("import com.nascentdigital.communication.ServiceResponseFormat;\n")
+			.append("import com.nascentdigital.communication.ServiceResponseTransform;\n")
+			.append("\n")
+			.append("import java.util.HashMap;\n")
+			.append("import java.util.LinkedHashMap;\n")
+			.append("import java.util.Map;\n")
+			.append("\n\n")
+			.append("/**\n")
+			.append(" * Implementation of {@link ")
+			.append(model.element.getQualifiedName())
+			.append("} generated by\n")
+			.append(" * ServiceInterfaceProcessor; do not edit.\n")
+			.append(" */\n")
+			.append("@SuppressWarnings(\"unused\")\n")
+			.append(model.isPublic ? "public " : "")
+			.append("final class ").append(model.className)
+			.append(" implements ").append(model.element.getQualifiedName())
+			.append("\n{\n");
+
+		// formats and the shared identity transform
+		source.append("\t// [region] constants\n\n")
+			.append("\tprivate static final ServiceResponseTransform<Object, Object> IDENTITY =\n")
+			.append("\t\tnew ServiceResponseTransform<Object, Object>()\n")
+			.append("\t\t{\n")
+			.append("\t\t\t@Override\n")
+			.append("\t\t\tpublic Object transformResponseData(Object responseData)\n")
+			.append("\t\t\t{\n")
+			.append("\t\t\t\treturn responseData;\n")
+			.append("\t\t\t}\n")
+			.append("\t\t};\n");
+		for (RequestModel request : model.requests)
+		{
+			source.append("\tprivate static final ServiceResponseFormat<")
+				.append(request.resultType).append("> FORMAT_")
+				.append(request.index).append(" =\n\t\t")
+				.append(request.formatExpression).append(";\n");
+		}
+		source.append("\n\t// [endregion]\n\n\n");
+
+		// templates
+		source.append("\t// [region] instance variables\n\n")
+			.append("\tprivate final ServiceClient _serviceClient;\n");
+		for (RequestModel request : model.requests)
+		{
+			source.append("\tprivate final ServiceRequestTemplate _template")
+				.append(request.index).append(";\n");
+		}
+		source.append("\n\t// [endregion]\n\n\n");
+
+		// constructor
+		source.append("\t// [region] constructors\n\n")
+			.append("\t/**\n")
+			.append("\t * @param baseUri prefix of every request path, e.g.\n")
+			.append("\t *                {@code https://api.example.com/v1}.\n")
+			.append("\t */\n")
+			.append("\tpublic ").append(model.className)
+			.append("(ServiceClient serviceClient, String baseUri)\n")
+			.append("\t{\n")
+			.append("\t\t_serviceClient = serviceClient;\n");
+		for (RequestModel request : model.requests)
+		{
+			source.append("\t\t_template").append(request.index)
+				.append(" = new ServiceRequestTemplate(ServiceMethod.")
+				.append(request.httpMethod).append(",\n\t\t\tbaseUri + ")
+				.append(quote(request.template)).append(", ");
+			if (request.headers.isEmpty())
+			{
+				source.append("null");
+			}
+			else
+			{
+				source.append("headers(");
+				for (int i = 0; i < request.headers.size(); ++i)
+				{
+					source.append(i == 0 ? "" : ", ")
+						.append(quote(request.headers.get(i)));
+				}
+				source.append(')');
+			}
+			source.append(");\n");
+		}
+		source.append("\t}\n\n\t// [endregion]\n\n\n");
+
+		// requests
+		source.append("\t// [region] ").append(model.element.getSimpleName())
+			.append(" methods\n");
+		for (RequestModel request : model.requests)
+		{
+			writeMethod(source, model.className, request);
+		}
+		source.append("\n\t// [endregion]\n\n\n");
+
+		// helpers
+		source.append("\t// [region] private methods\n\n")
+			.append("\t@SuppressWarnings(\"unchecked\")\n")
+			.append("\tprivate static <T> ServiceResponseTransform<T, T> identity()\n")
+			.append("\t{\n")
+			.append("\t\treturn (ServiceResponseTransform<T, T>)(Object)IDENTITY;\n")
+			.append("\t}\n\n")
+			.append("\tprivate static Map<String, String> headers(String... namesAndValues)\n")
+			.append("\t{\n")
+			.append("\t\tMap<String, String> headers = new LinkedHashMap<>();\n")
+			.append("\t\tfor (int i = 0; i < namesAndValues.length; i += 2)\n")
+			.append("\t\t{\n")
+			.append("\t\t\theaders.put(namesAndValues[i], namesAndValues[i + 1]);\n")
+			.append("\t\t}\n")
+			.append("\t\treturn headers;\n")
+			.append("\t}\n\n")
+			.append("\t// [endregion]\n\n")
+			.append("} // class ").append(model.className).append('\n');
+
+		String qualifiedName = model.packageName.isEmpty() ? model.className
+			: model.packageName + "." + model.className;
+		try
+		{
+			Writer writer = processingEnv.getFiler().createSourceFile(
+				qualifiedName, model.element).openWriter();
+			try
+			{
+				writer.write(source.toString());
+			}
+			finally
+			{
+				writer.close();
+			}
+		}
+		catch (IOException e)
+		{
+			error(model.element, "Unable to write " + qualifiedName + ": "
+				+ e.getMessage());
+		}
+	}
+
+	private void writeMethod(StringBuilder source, String className,
+		RequestModel request)
+	{
+		ExecutableElement method = request.method;
+		List<? extends VariableElement> parameters = method.getParameters();
+
+		source.append("\n\t@Override\n\tpublic ")
+			.append(method.getReturnType()).append(' ')
+			.append(method.getSimpleName()).append('(');
+		for (int i = 0; i < parameters.size(); ++i)
+		{
+			VariableElement parameter = parameters.get(i);
+			source.append(i == 0 ? "" : ", ").append("final ")
+				.append(parameter.asType()).append(' ')
+				.append(parameter.getSimpleName());
+		}
+		source.append(")\n\t{\n");
+
+		// per-call headers
+		String headersVariable = "null";
+		if (!request.headerParameters.isEmpty())
+		{
+			headersVariable = getLocalName(parameters, "requestHeaders");
+			source.append("\t\tMap<String, String> ").append(headersVariable)
+				.append(" = new HashMap<>(")
+				.append(request.headerParameters.size() * 2).append(");\n");
+			for (ParameterModel header : request.headerParameters)
+			{
+				boolean primitive = header.type.getKind().isPrimitive();
+				String indent = primitive ? "\t\t" : "\t\t\t";
+				if (!primitive)
+				{
+					source.append("\t\tif (").append(header.parameterName)
+						.append(" != null)\n\t\t{\n");
+				}
+				source.append(indent).append(headersVariable).append(".put(")
+					.append(quote(header.name)).append(", ")
+					.append(getStringExpression(header, false)).append(");\n");
+				if (!primitive)
+				{
+					source.append("\t\t}\n");
+				}
+			}
+		}
+
+		// the request itself
+		source.append("\t\t").append(request.returnsOperation ? "return " : "")
+			.append("_serviceClient.beginRequest(_template")
+			.append(request.index).append(",\n\t\t\t");
+		if (request.templateValues.isEmpty())
+		{
+			source.append("null");
+		}
+		else
+		{
+			source.append("new String[] { ");
+			for (int i = 0; i < request.templateValues.size(); ++i)
+			{
+				source.append(i == 0 ? "" : ", ").append(
+					getStringExpression(request.templateValues.get(i), true));
+			}
+			source.append(" }");
+		}
+		source.append(",\n\t\t\t").append(headersVariable).append(", ")
+			.append(request.bodyParameter == null ? "null"
+				: getBodyExpression(request.bodyParameter.parameterName,
+					request.bodyParameter.type))
+			.append(",\n\t\t\tFORMAT_").append(request.index)
+			.append(", ").append(className).append(".<")
+			.append(request.resultType).append(">identity(), ")
+			.append(request.completionParameter)
+			.append(",\n\t\t\tServiceOperationPriority.")
+			.append(request.priority).append(", ").append(request.useCaches)
+			.append(", ").append(request.optionsParameter == null ? "null"
+				: request.optionsParameter)
+			.append(");\n\t}\n");
+	}
+
+	// [endregion]
+
+
+	// [region] type helpers
+
+	private String getFormatExpression(TypeMirror resultType)
+	{
+		switch (resultType.getKind())
+		{
+			case ARRAY:
+				if (((ArrayType)resultType).getComponentType().getKind()
+					== TypeKind.BYTE)
+				{
+					return "ServiceResponseFormat.RAW";
+				}
+				return _types.isSameType(resultType,
+					_types.erasure(resultType))
+					? "ServiceResponseFormat.gson(" + resultType + ".class)"
+					: null;
+
+			case DECLARED:
+				if (isType(resultType, "java.lang.String"))
+				{
+					return "ServiceResponseFormat.STRING";
+				}
+				if (isType(resultType, "org.json.JSONObject"))
+				{
+					return "ServiceResponseFormat.JSON";
+				}
+				if (isType(resultType, "com.google.gson.JsonElement"))
+				{
+					return "ServiceResponseFormat.GSON";
+				}
+				if (isType(resultType, "org.w3c.dom.Document"))
+				{
+					return "ServiceResponseFormat.XML";
+				}
+				if (isType(resultType, "com.nascentdigital.util.IndexedJson"))
+				{
+					return "ServiceResponseFormat.INDEXED_JSON";
+				}
+				if (isStringMap(resultType))
+				{
+					return "ServiceResponseFormat.FORM_ENCODED";
+				}
+				if (isType(resultType, "java.io.InputStream"))
+				{
+					// the stream is closed before the completion runs
+					return null;
+				}
+				if (((DeclaredType)resultType).getTypeArguments().isEmpty())
+				{
+					return "ServiceResponseFormat.gson(" + _types.erasure(
+						resultType) + ".class)";
+				}
+				for (TypeMirror typeArgument
+					: ((DeclaredType)resultType).getTypeArguments())
+				{
+					if (typeArgument.getKind() == TypeKind.TYPEVAR)
+					{
+						return null;
+					}
+				}
+				return "ServiceResponseFormat.gson(\n\t\t\tnew com.google.gson."
+					+ "reflect.TypeToken<" + resultType + ">() {})";
+
+			default:
+				return null;
+		}
+	}
+
+	private String getBodyExpression(String parameterName, TypeMirror type)
+	{
+		if (isType(type, "java.lang.String"))
+		{
+			return parameterName + " == null ? null\n\t\t\t\t: new "
+				+ COMMUNICATION_PACKAGE + ".StringBodyDataProvider("
+				+ parameterName + ")";
+		}
+		if (type.getKind() == TypeKind.ARRAY && ((ArrayType)type)
+			.getComponentType().getKind() == TypeKind.BYTE)
+		{
+			return parameterName + " == null ? null\n\t\t\t\t: new "
+				+ COMMUNICATION_PACKAGE + ".ByteBodyDataProvider("
+				+ parameterName + ")";
+		}
+		TypeElement bodyDataProvider =
+			_elements.getTypeElement(BODY_DATA_PROVIDER);
+		if (bodyDataProvider != null
+			&& _types.isAssignable(type, bodyDataProvider.asType()))
+		{
+			return parameterName;
+		}
+		return null;
+	}
+
+	private String getStringExpression(ParameterModel parameter,
+		boolean nullable)
+	{
+		String name = parameter.parameterName;
+		if (parameter.type.getKind().isPrimitive())
+		{
+			return "String.valueOf(" + name + ")";
+		}
+		if (isType(parameter.type, "java.lang.String"))
+		{
+			return name;
+		}
+		return nullable ? name + " == null ? null : " + name + ".toString()"
+			: name + ".toString()";
+	}
+
+	private boolean isStringMap(TypeMirror type)
+	{
+		TypeElement map = _elements.getTypeElement("java.util.Map");
+		TypeElement string = _elements.getTypeElement("java.lang.String");
+		return _types.isSameType(type, _types.getDeclaredType(map,
+			string.asType(), string.asType()));
+	}
+
+	private boolean isType(TypeMirror type, String qualifiedName)
+	{
+		TypeElement element = _elements.getTypeElement(qualifiedName);
+		return element != null && _types.isSameType(type, element.asType());
+	}
+
+	private boolean isErasureOf(TypeMirror type, String qualifiedName)
+	{
+		TypeElement element = _elements.getTypeElement(qualifiedName);
+		return element != null && type.getKind() == TypeKind.DECLARED
+			&& _types.isSameType(_types.erasure(type),
+				_types.erasure(element.asType()));
+	}
+
+	// [endregion]
+
+
+	// [region] element helpers
+
+	private static AnnotationMirror getAnnotation(Element element,
+		String qualifiedName)
+	{
+		for (AnnotationMirror annotation : element.getAnnotationMirrors())
+		{
+			TypeElement type =
+				(TypeElement)annotation.getAnnotationType().asElement();
+			if (type.getQualifiedName().contentEquals(qualifiedName))
+			{
+				return annotation;
+			}
+		}
+		return null;
+	}
+
+	private static String getAnnotationString(Element element,
+		String qualifiedName)
+	{
+		AnnotationMirror annotation = getAnnotation(element, qualifiedName);
+		if (annotation == null)
+		{
+			return null;
+		}
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue>
+			value : annotation.getElementValues().entrySet())
+		{
+			if (value.getKey().getSimpleName().contentEquals("value"))
+			{
+				return (String)value.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	private static PackageElement getPackage(Element element)
+	{
+		while (element.getKind() != ElementKind.PACKAGE)
+		{
+			element = element.getEnclosingElement();
+		}
+		return (PackageElement)element;
+	}
+
+	/**
+	 * @return the type's name without its package, with nested types joined
+	 *         by underscores.
+	 */
+	private static String getFlatName(TypeElement type)
+	{
+		String name = type.getSimpleName().toString();
+		Element enclosing = type.getEnclosingElement();
+		while (enclosing.getKind() != ElementKind.PACKAGE)
+		{
+			name = enclosing.getSimpleName() + "_" + name;
+			enclosing = enclosing.getEnclosingElement();
+		}
+		return name;
+	}
+
+	private static String getLocalName(
+		List<? extends VariableElement> parameters, String name)
+	{
+		Set<String> parameterNames = new LinkedHashSet<>();
+		for (VariableElement parameter : parameters)
+		{
+			parameterNames.add(parameter.getSimpleName().toString());
+		}
+		String localName = name;
+		for (int i = 1; parameterNames.contains(localName); ++i)
+		{
+			localName = name + i;
+		}
+		return localName;
+	}
+
+	private static String quote(String value)
+	{
+		StringBuilder quoted = new StringBuilder(value.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < value.length(); ++i)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+					quoted.append("\\\"");
+					break;
+				case '\\':
+					quoted.append("\\\\");
+					break;
+				case '\n':
+					quoted.append("\\n");
+					break;
+				case '\r':
+					quoted.append("\\r");
+					break;
+				case '\t':
+					quoted.append("\\t");
+					break;
+				default:
+					if (c < 0x20 || c > 0x7E)
+					{
+						quoted.append(String.format("\\u%04x", (int)c));
+					}
+					else
+					{
+						quoted.append(c);
+					}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private void error(Element element, String message)
+	{
+		_messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	private static final ParameterModel DUPLICATE_BINDING =
+		new ParameterModel(null, null, null);
+
+	private static final class ServiceInterfaceModel
+	{
+		TypeElement element;
+		String packageName;
+		String className;
+		boolean isPublic;
+		final List<RequestModel> requests = new ArrayList<>();
+
+	} // class ServiceInterfaceModel
+
+	private static final class RequestModel
+	{
+		ExecutableElement method;
+		int index;
+		String httpMethod;
+		String path;
+		String template;
+		final List<String> headers = new ArrayList<>();
+		String priority;
+		boolean useCaches;
+		final List<ParameterModel> pathParameters = new ArrayList<>();
+		final List<ParameterModel> queryParameters = new ArrayList<>();
+		final List<ParameterModel> headerParameters = new ArrayList<>();
+		final List<ParameterModel> templateValues = new ArrayList<>();
+		ParameterModel bodyParameter;
+		String optionsParameter;
+		String completionParameter;
+		TypeMirror resultType;
+		String formatExpression;
+		boolean returnsOperation;
+
+	} // class RequestModel
+
+	private static final class ParameterModel
+	{
+		final String name;
+		final String parameterName;
+		final TypeMirror type;
+
+		ParameterModel(String name, String parameterName, TypeMirror type)
+		{
+			this.name = name;
+			this.parameterName = parameterName;
+			this.type = type;
+		}
+
+	} // class ParameterModel
+
+	// [endregion]
+
+} // class ServiceInterfaceProcessor
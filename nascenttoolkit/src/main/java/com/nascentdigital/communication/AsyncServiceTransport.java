@@ -0,0 +1,139 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Transport that runs exchanges without blocking the calling thread.  A
+ * {@link ServiceClient} with an async transport hands supported requests to
+ * it and frees its worker thread until the response has been received in
+ * full, so many slow exchanges don't each pin a thread.
+ * <p>
+ * The callback of every exchange started with
+ * {@link #execute(Request, Callback)} is invoked exactly once, unless the
+ * exchange is successfully cancelled first.
+ */
+public interface AsyncServiceTransport
+{
+	/**
+	 * @return true if exchanges with {@code url} can be executed by this
+	 *         transport; others go through the client's blocking
+	 *         {@link ServiceTransport}.
+	 */
+	boolean supports(URL url);
+
+	/**
+	 * Starts an exchange.  May block briefly, e.g. to resolve the host, but
+	 * must not wait on the network.
+	 *
+	 * @return a handle that stops the exchange and suppresses its callback.
+	 */
+	Cancellable execute(Request request, Callback callback) throws IOException;
+
+
+	// [region] internal data structures
+
+	interface Callback
+	{
+		/**
+		 * Invoked on a transport thread once the response has been received;
+		 * it must not block.
+		 */
+		void onResponse(Response response);
+
+		/**
+		 * Invoked on a transport thread if the exchange failed before a
+		 * complete response was received; it must not block.
+		 */
+		void onFailure(IOException exception);
+	}
+
+	final class Request
+	{
+		// [region] instance variables
+
+		public final URL url;
+		public final String method;
+		public final Map<String, String> headers;
+		public final byte[] body;
+		public final int connectTimeoutInMilliseconds;
+		public final int readTimeoutInMilliseconds;
+		public final int writeTimeoutInMilliseconds;
+		public final long maxResponseBodySize;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		/**
+		 * @param body                         request body, or null for none.
+		 * @param connectTimeoutInMilliseconds maximum time to connect.
+		 * @param readTimeoutInMilliseconds    maximum time to wait for the
+		 *                                     response to make progress.
+		 * @param writeTimeoutInMilliseconds   maximum time to wait for the
+		 *                                     request to make progress.
+		 * @param maxResponseBodySize          largest response body to hold in
+		 *                                     memory; the exchange fails with
+		 *                                     {@link ResponseBodyTooLargeException}
+		 *                                     past it.
+		 */
+		public Request(URL url, String method, Map<String, String> headers,
+			byte[] body, int connectTimeoutInMilliseconds,
+			int readTimeoutInMilliseconds, int writeTimeoutInMilliseconds,
+			long maxResponseBodySize)
+		{
+			this.url = url;
+			this.method = method;
+			this.headers = headers;
+			this.body = body;
+			this.connectTimeoutInMilliseconds = connectTimeoutInMilliseconds;
+			this.readTimeoutInMilliseconds = readTimeoutInMilliseconds;
+			this.writeTimeoutInMilliseconds = writeTimeoutInMilliseconds;
+			this.maxResponseBodySize = maxResponseBodySize;
+		}
+
+		// [endregion]
+
+	} // class Request
+
+	final class Response
+	{
+		// [region] instance variables
+
+		public final int responseCode;
+		public final String responseMessage;
+		public final Map<String, List<String>> headers;
+		public final byte[] body;
+		public final int bodyLength;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		/**
+		 * @param body       the response body as received, still
+		 *                   content-encoded; it may be larger than the body.
+		 * @param bodyLength number of bytes of {@code body} that hold the body.
+		 */
+		public Response(int responseCode, String responseMessage,
+			Map<String, List<String>> headers, byte[] body, int bodyLength)
+		{
+			this.responseCode = responseCode;
+			this.responseMessage = responseMessage;
+			this.headers = headers;
+			this.body = body;
+			this.bodyLength = bodyLength;
+		}
+
+		// [endregion]
+
+	} // class Response
+
+	// [endregion]
+
+} // interface AsyncServiceTransport
@@ -0,0 +1,17 @@
+package com.nascentdigital.communication;
+
+
+/**
+ * Handle to work that can be abandoned before it finishes.
+ */
+public interface Cancellable
+{
+	/**
+	 * Stops the work, or prevents it from starting if it is still queued.
+	 *
+	 * @return false if the work had already finished or been cancelled.
+	 */
+	boolean cancel();
+
+	boolean isCancelled();
+}
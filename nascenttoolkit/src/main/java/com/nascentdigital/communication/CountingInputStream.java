@@ -0,0 +1,75 @@
+package com.nascentdigital.communication;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Stream that counts the bytes read through it.
+ */
+final class CountingInputStream extends FilterInputStream
+{
+	// [region] instance variables
+
+	private volatile long _count;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	CountingInputStream(InputStream in)
+	{
+		super(in);
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	long getCount()
+	{
+		return _count;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int value = super.read();
+		if (value != -1)
+		{
+			++_count;
+		}
+		return value;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException
+	{
+		int read = super.read(buffer, offset, count);
+		if (read > 0)
+		{
+			_count += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long count) throws IOException
+	{
+		long skipped = super.skip(count);
+		_count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	// [endregion]
+
+} // class CountingInputStream
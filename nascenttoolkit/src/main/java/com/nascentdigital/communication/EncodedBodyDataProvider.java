@@ -0,0 +1,21 @@
+package com.nascentdigital.communication;
+
+/**
+ * Body data provider whose data is sent with a {@code Content-Encoding},
+ * e.g. compressed.
+ */
+public interface EncodedBodyDataProvider extends BodyDataProvider {
+
+	/**
+	 * @return the {@code Content-Encoding} of {@link #getBodyData()}, or null
+	 *         if the data is sent as is.
+	 */
+	String getContentEncoding ();
+
+	/**
+	 * @return size of the body before it was encoded.  For streaming bodies
+	 *         this is known once the body has been written.
+	 */
+	long getDecodedLength ();
+
+}
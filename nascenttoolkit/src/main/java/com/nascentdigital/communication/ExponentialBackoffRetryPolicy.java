@@ -0,0 +1,208 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Random;
+
+
+/**
+ * {@link RetryPolicy} using capped exponential backoff with full jitter: the
+ * n-th retry waits a random delay between zero and
+ * {@code min(maxDelay, baseDelay * 2^n)}.
+ * <p>
+ * Network errors and 408, 429, 500, 502, 503 and 504 responses are retried.
+ * A {@code Retry-After} header (seconds or HTTP-date) sets the minimum delay,
+ * and a server asking for longer than the maximum delay is not retried.
+ * Non-idempotent requests (POST) are only retried when the request provably
+ * never reached the server, unless enabled with
+ * {@link #setRetryNonIdempotentRequests(boolean)}.
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy
+{
+	// [region] constants
+
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	public static final long DEFAULT_BASE_DELAY = 500;
+	public static final long DEFAULT_MAX_DELAY = 30 * 1000;
+
+	// [endregion]
+
+
+	// [region] class variables
+
+	private static final Random _random = new Random();
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final int _maxAttempts;
+	private final long _baseDelayInMilliseconds;
+	private final long _maxDelayInMilliseconds;
+	private volatile boolean _retryNonIdempotentRequests;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public ExponentialBackoffRetryPolicy()
+	{
+		this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+	}
+
+	/**
+	 * @param maxAttempts total attempts, including the first one.
+	 */
+	public ExponentialBackoffRetryPolicy(int maxAttempts,
+		long baseDelayInMilliseconds, long maxDelayInMilliseconds)
+	{
+		if (maxAttempts < 1)
+		{
+			throw new IllegalArgumentException("maxAttempts must be at least 1.");
+		}
+
+		_maxAttempts = maxAttempts;
+		_baseDelayInMilliseconds = baseDelayInMilliseconds;
+		_maxDelayInMilliseconds = maxDelayInMilliseconds;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public int getMaxAttempts()
+	{
+		return _maxAttempts;
+	}
+
+	public long getBaseDelayInMilliseconds()
+	{
+		return _baseDelayInMilliseconds;
+	}
+
+	public long getMaxDelayInMilliseconds()
+	{
+		return _maxDelayInMilliseconds;
+	}
+
+	public boolean getRetryNonIdempotentRequests()
+	{
+		return _retryNonIdempotentRequests;
+	}
+
+	public void setRetryNonIdempotentRequests(boolean retryNonIdempotentRequests)
+	{
+		_retryNonIdempotentRequests = retryNonIdempotentRequests;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	@Override
+	public long getRetryDelay(ServiceOperation<?, ?> serviceOperation,
+		int responseCode, Exception error, int retryCount,
+		ServiceResponseHeaders responseHeaders)
+	{
+		if (retryCount + 1 >= _maxAttempts
+			|| !isRetryable(serviceOperation, responseCode, error))
+		{
+			return -1;
+		}
+
+		// full jitter over the capped exponential delay
+		long ceiling = _maxDelayInMilliseconds;
+		if (retryCount < 62 && _baseDelayInMilliseconds < (ceiling >> retryCount))
+		{
+			ceiling = _baseDelayInMilliseconds << retryCount;
+		}
+		long delay = (long)(_random.nextDouble() * ceiling);
+
+		// honour the server's requested delay
+		long retryAfter = getRetryAfter(responseHeaders);
+		if (retryAfter > _maxDelayInMilliseconds)
+		{
+			return -1;
+		}
+		return Math.max(delay, retryAfter);
+	}
+
+	// [endregion]
+
+
+	// [region] protected methods
+
+	protected boolean isRetryable(ServiceOperation<?, ?> serviceOperation,
+		int responseCode, Exception error)
+	{
+		boolean retryableFailure;
+		if (error instanceof InvalidResponseCodeException)
+		{
+			switch (responseCode)
+			{
+				case 408:
+				case 429:
+				case 500:
+				case 502:
+				case 503:
+				case 504:
+					retryableFailure = true;
+					break;
+
+				default:
+					retryableFailure = false;
+					break;
+			}
+		}
+		else
+		{
+			retryableFailure = error instanceof IOException;
+		}
+		if (!retryableFailure)
+		{
+			return false;
+		}
+
+		// a request that never left the device is always safe to send again
+		if (serviceOperation.method != ServiceMethod.POST
+			|| _retryNonIdempotentRequests)
+		{
+			return true;
+		}
+		return error instanceof ConnectException
+			|| error instanceof UnknownHostException;
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private static long getRetryAfter(ServiceResponseHeaders responseHeaders)
+	{
+		String retryAfter = responseHeaders == null ? null
+			: responseHeaders.getHeaderValue("Retry-After");
+		if (retryAfter == null)
+		{
+			return 0;
+		}
+
+		try
+		{
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		}
+		catch (NumberFormatException e)
+		{
+			long date = ServiceResponseHeaders.parseHttpDate(retryAfter);
+			return date == -1 ? 0 : Math.max(0, date - System.currentTimeMillis());
+		}
+	}
+
+	// [endregion]
+
+} // class ExponentialBackoffRetryPolicy
@@ -0,0 +1,87 @@
+package com.nascentdigital.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.nascentdigital.util.Logger;
+
+/**
+ * Streaming body data provider that uploads the contents of a file.
+ *
+ */
+public class FileBodyDataProvider implements StreamingBodyDataProvider
+{
+	// [region] constants
+	static final int BUFFER_SIZE = 8 * 1024;
+	// [endregion]
+
+	// [region] instance variables
+	private final File file;
+	// [endregion]
+
+	// [region] constructors
+	public FileBodyDataProvider (File file)
+	{
+		this.file = file;
+	}
+	// [endregion]
+
+	// [region] public methods
+	@Override
+	public long getContentLength() {
+		return file.length();
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			copy(in, out);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public byte[] getBodyData() {
+		ByteArrayOutputStream body =
+			new ByteArrayOutputStream((int) file.length());
+		try
+		{
+			writeTo(body);
+		}
+		catch (IOException e)
+		{
+			Logger.e(this.getClass().getName(), "Error Reading Request Body", e);
+			return null;
+		}
+		return body.toByteArray();
+	}
+	// [endregion]
+
+	// [region] internal methods
+	static void copy(InputStream in, OutputStream out) throws IOException
+	{
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+		{
+			out.write(buffer, 0, read);
+		}
+	}
+	// [endregion]
+
+
+}
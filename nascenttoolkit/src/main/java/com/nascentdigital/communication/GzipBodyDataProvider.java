@@ -0,0 +1,224 @@
+package com.nascentdigital.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.nascentdigital.util.Logger;
+
+/**
+ * Body data provider that gzip-compresses the body of another provider,
+ * provided it is at least {@code thresholdInBytes} long.  Smaller bodies are
+ * sent as is, since compression wouldn't pay for its overhead.
+ * <p>
+ * A {@link StreamingBodyDataProvider} source is compressed as it is written,
+ * and sent chunked.  Its body is always compressed unless its length is known
+ * to be under the threshold.
+ *
+ */
+public class GzipBodyDataProvider implements EncodedBodyDataProvider,
+	StreamingBodyDataProvider
+{
+	// [region] constants
+	public static final int DEFAULT_THRESHOLD = 1024;
+	private static final String GZIP_ENCODING = "gzip";
+	private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+	// [endregion]
+
+	// [region] instance variables
+	private final BodyDataProvider source;
+	private final int thresholdInBytes;
+	private boolean encoded;
+	private byte[] bodyData;
+	private String contentEncoding;
+	private long decodedLength;
+	// [endregion]
+
+	// [region] constructors
+	public GzipBodyDataProvider (BodyDataProvider source)
+	{
+		this(source, DEFAULT_THRESHOLD);
+	}
+
+	public GzipBodyDataProvider (BodyDataProvider source, int thresholdInBytes)
+	{
+		this.source = source;
+		this.thresholdInBytes = thresholdInBytes;
+	}
+	// [endregion]
+
+	// [region] public methods
+	@Override
+	public synchronized byte[] getBodyData() {
+		if (isStreamingSource())
+		{
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try
+			{
+				writeTo(body);
+			}
+			catch (IOException e)
+			{
+				Logger.e(this.getClass().getName(), "Error Compressing Request", e);
+				return null;
+			}
+			return body.toByteArray();
+		}
+
+		// encode once, so retries resend the same bytes
+		if (!encoded)
+		{
+			encode();
+			encoded = true;
+		}
+		return bodyData;
+	}
+
+	@Override
+	public synchronized String getContentEncoding() {
+		if (isStreamingSource())
+		{
+			return shouldCompressStream() ? GZIP_ENCODING : null;
+		}
+		getBodyData();
+		return contentEncoding;
+	}
+
+	@Override
+	public synchronized long getDecodedLength() {
+		if (!isStreamingSource())
+		{
+			getBodyData();
+		}
+		return decodedLength;
+	}
+
+	@Override
+	public synchronized long getContentLength() {
+		if (isStreamingSource())
+		{
+			return shouldCompressStream() ? -1
+				: ((StreamingBodyDataProvider) source).getContentLength();
+		}
+		byte[] data = getBodyData();
+		return data == null ? -1 : data.length;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		if (!isStreamingSource())
+		{
+			byte[] data = getBodyData();
+			if (data != null)
+			{
+				out.write(data);
+			}
+			return;
+		}
+
+		StreamingBodyDataProvider streamingSource =
+			(StreamingBodyDataProvider) source;
+		if (!shouldCompressStream())
+		{
+			streamingSource.writeTo(out);
+			setDecodedLength(streamingSource.getContentLength());
+			return;
+		}
+
+		// finish (rather than close) so the connection stream stays open
+		GZIPOutputStream gzip = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+		CountingOutputStream counter = new CountingOutputStream(gzip);
+		streamingSource.writeTo(counter);
+		gzip.finish();
+		setDecodedLength(counter.count);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return !isStreamingSource()
+			|| ((StreamingBodyDataProvider) source).isRepeatable();
+	}
+	// [endregion]
+
+	// [region] private methods
+	private boolean isStreamingSource()
+	{
+		return source instanceof StreamingBodyDataProvider;
+	}
+
+	private boolean shouldCompressStream()
+	{
+		long contentLength =
+			((StreamingBodyDataProvider) source).getContentLength();
+		return contentLength == -1 || contentLength >= thresholdInBytes;
+	}
+
+	private synchronized void setDecodedLength(long decodedLength)
+	{
+		this.decodedLength = decodedLength;
+	}
+
+	private void encode()
+	{
+		byte[] data = source.getBodyData();
+		bodyData = data;
+		decodedLength = data == null ? 0 : data.length;
+		if (data == null || data.length < thresholdInBytes)
+		{
+			return;
+		}
+
+		ByteArrayOutputStream compressed =
+			new ByteArrayOutputStream(data.length / 4);
+		try
+		{
+			GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+			gzip.write(data);
+			gzip.close();
+		}
+		catch (IOException e)
+		{
+			// in-memory streams don't fail; send the body uncompressed if so
+			Logger.e(this.getClass().getName(), "Error Compressing Request", e);
+			return;
+		}
+
+		// incompressible data goes as is
+		if (compressed.size() < data.length)
+		{
+			bodyData = compressed.toByteArray();
+			contentEncoding = GZIP_ENCODING;
+		}
+	}
+	// [endregion]
+
+	// [region] internal data structures
+	private static final class CountingOutputStream extends FilterOutputStream
+	{
+		long count;
+
+		CountingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(int value) throws IOException
+		{
+			out.write(value);
+			++count;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException
+		{
+			out.write(buffer, offset, length);
+			count += length;
+		}
+	} // class CountingOutputStream
+	// [endregion]
+
+
+}
@@ -0,0 +1,490 @@
+package com.nascentdigital.communication;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Incremental HTTP/1.1 response parser, fed bytes as they arrive from a
+ * non-blocking socket.  Handles fixed-length, chunked and read-to-close
+ * bodies, and skips interim (1xx) responses.  The body is collected into a
+ * single array, sized up front when the length is known, and the response
+ * fails once it grows past its maximum size.
+ */
+final class HttpResponseParser
+{
+	// [region] constants
+
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+	private static final int INITIAL_BODY_CAPACITY = 4 * 1024;
+	private static final byte[] EMPTY_BODY = new byte[0];
+	private static final String HEADER_ENCODING = "ISO-8859-1";
+
+	private static final int STATE_STATUS_LINE = 0;
+	private static final int STATE_HEADERS = 1;
+	private static final int STATE_FIXED_BODY = 2;
+	private static final int STATE_CHUNK_SIZE = 3;
+	private static final int STATE_CHUNK_DATA = 4;
+	private static final int STATE_CHUNK_END = 5;
+	private static final int STATE_TRAILERS = 6;
+	private static final int STATE_BODY_UNTIL_CLOSE = 7;
+	private static final int STATE_COMPLETE = 8;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final boolean _expectsBody;
+	private final long _maxBodySize;
+	private byte[] _data;
+	private int _position;
+	private int _limit;
+	private int _state;
+	private long _remaining;
+	private boolean _receivedBytes;
+	private int _responseCode;
+	private String _responseMessage;
+	private boolean _http10;
+	private Map<String, List<String>> _headers;
+	private byte[] _body;
+	private int _bodyLength;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	/**
+	 * @param expectsBody false for responses that never carry a body, e.g.
+	 *                    to a HEAD request.
+	 * @param maxBodySize largest body to collect before failing with
+	 *                    {@link ResponseBodyTooLargeException}.
+	 */
+	HttpResponseParser(boolean expectsBody, long maxBodySize)
+	{
+		_expectsBody = expectsBody;
+		_maxBodySize = maxBodySize;
+		_data = new byte[4 * 1024];
+		_state = STATE_STATUS_LINE;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	boolean hasReceivedBytes()
+	{
+		return _receivedBytes;
+	}
+
+	boolean isComplete()
+	{
+		return _state == STATE_COMPLETE;
+	}
+
+	int getResponseCode()
+	{
+		return _responseCode;
+	}
+
+	String getResponseMessage()
+	{
+		return _responseMessage;
+	}
+
+	Map<String, List<String>> getHeaders()
+	{
+		return _headers;
+	}
+
+	/**
+	 * @return the body collected so far, valid up to
+	 *         {@link #getBodyLength()}; not copied.
+	 */
+	byte[] getBody()
+	{
+		return _body == null ? EMPTY_BODY : _body;
+	}
+
+	int getBodyLength()
+	{
+		return _bodyLength;
+	}
+
+	/**
+	 * @return true if the connection can carry another exchange once this
+	 *         response is complete.
+	 */
+	boolean isKeepAlive()
+	{
+		if (_state != STATE_COMPLETE || _position != _limit)
+		{
+			return false;
+		}
+		String connection = ServiceResponseHeaders.getHeaderValue(_headers,
+			"Connection");
+		if (connection != null)
+		{
+			connection = connection.trim().toLowerCase(Locale.US);
+		}
+		return _http10 ? "keep-alive".equals(connection)
+			: !"close".equals(connection);
+	}
+
+	// [endregion]
+
+
+	// [region] methods
+
+	/**
+	 * Consumes the bytes available in {@code buffer}.
+	 *
+	 * @return true once the response is complete.
+	 */
+	boolean feed(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.hasRemaining())
+		{
+			_receivedBytes = true;
+			append(buffer);
+		}
+		parse();
+		return _state == STATE_COMPLETE;
+	}
+
+	/**
+	 * Reports that the server closed the connection.
+	 *
+	 * @return true if that completed the response.
+	 */
+	boolean onEndOfStream() throws IOException
+	{
+		if (_state == STATE_BODY_UNTIL_CLOSE)
+		{
+			_state = STATE_COMPLETE;
+			return true;
+		}
+		if (_state != STATE_COMPLETE)
+		{
+			throw new EOFException("Connection closed before the response "
+				+ "was complete.");
+		}
+		return true;
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private void append(ByteBuffer buffer)
+	{
+		int count = buffer.remaining();
+		if (_limit + count > _data.length)
+		{
+			// compact, then grow if still short
+			System.arraycopy(_data, _position, _data, 0, _limit - _position);
+			_limit -= _position;
+			_position = 0;
+			if (_limit + count > _data.length)
+			{
+				byte[] data = new byte[Math.max(_data.length * 2, _limit + count)];
+				System.arraycopy(_data, 0, data, 0, _limit);
+				_data = data;
+			}
+		}
+		buffer.get(_data, _limit, count);
+		_limit += count;
+	}
+
+	private void parse() throws IOException
+	{
+		while (true)
+		{
+			switch (_state)
+			{
+				case STATE_STATUS_LINE:
+				{
+					String line = readLine();
+					if (line == null)
+					{
+						return;
+					}
+					parseStatusLine(line);
+					_headers = new LinkedHashMap<>();
+					_state = STATE_HEADERS;
+					break;
+				}
+
+				case STATE_HEADERS:
+				{
+					String line = readLine();
+					if (line == null)
+					{
+						return;
+					}
+					if (line.length() > 0)
+					{
+						parseHeader(line, _headers);
+						break;
+					}
+					beginBody();
+					break;
+				}
+
+				case STATE_FIXED_BODY:
+				case STATE_CHUNK_DATA:
+				{
+					int count = (int)Math.min(_remaining, _limit - _position);
+					if (count == 0 && _remaining > 0)
+					{
+						return;
+					}
+					appendBody(count);
+					_position += count;
+					_remaining -= count;
+					if (_remaining == 0)
+					{
+						_state = _state == STATE_FIXED_BODY ? STATE_COMPLETE
+							: STATE_CHUNK_END;
+					}
+					break;
+				}
+
+				case STATE_CHUNK_SIZE:
+				{
+					String line = readLine();
+					if (line == null)
+					{
+						return;
+					}
+					int extension = line.indexOf(';');
+					String size = (extension == -1 ? line
+						: line.substring(0, extension)).trim();
+					try
+					{
+						_remaining = Long.parseLong(size, 16);
+					}
+					catch (NumberFormatException e)
+					{
+						throw new ProtocolException("Invalid chunk size: " + line);
+					}
+					if (_remaining < 0)
+					{
+						throw new ProtocolException("Invalid chunk size: " + line);
+					}
+					_state = _remaining == 0 ? STATE_TRAILERS : STATE_CHUNK_DATA;
+					break;
+				}
+
+				case STATE_CHUNK_END:
+				{
+					String line = readLine();
+					if (line == null)
+					{
+						return;
+					}
+					if (line.length() > 0)
+					{
+						throw new ProtocolException("Missing chunk terminator.");
+					}
+					_state = STATE_CHUNK_SIZE;
+					break;
+				}
+
+				case STATE_TRAILERS:
+				{
+					String line = readLine();
+					if (line == null)
+					{
+						return;
+					}
+					if (line.length() == 0)
+					{
+						_state = STATE_COMPLETE;
+					}
+					break;
+				}
+
+				case STATE_BODY_UNTIL_CLOSE:
+				{
+					appendBody(_limit - _position);
+					_position = _limit;
+					return;
+				}
+
+				default:
+					return;
+			}
+		}
+	}
+
+	private void parseStatusLine(String line) throws ProtocolException
+	{
+		// HTTP/1.1 200 OK
+		if (!line.startsWith("HTTP/1.") || line.length() < 12)
+		{
+			throw new ProtocolException("Invalid status line: " + line);
+		}
+		_http10 = line.charAt(7) == '0';
+		try
+		{
+			_responseCode = Integer.parseInt(line.substring(9, 12));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new ProtocolException("Invalid status line: " + line);
+		}
+		_responseMessage = line.length() > 13 ? line.substring(13) : "";
+	}
+
+	private static void parseHeader(String line,
+		Map<String, List<String>> headers) throws ProtocolException
+	{
+		int separator = line.indexOf(':');
+		if (separator <= 0)
+		{
+			throw new ProtocolException("Invalid header: " + line);
+		}
+		String name = line.substring(0, separator).trim();
+		String value = line.substring(separator + 1).trim();
+		List<String> values = headers.get(name);
+		if (values == null)
+		{
+			values = new ArrayList<>(1);
+			headers.put(name, values);
+		}
+		values.add(value);
+	}
+
+	private void beginBody() throws IOException
+	{
+		// interim responses are followed by the real one
+		if (_responseCode >= 100 && _responseCode < 200)
+		{
+			_state = STATE_STATUS_LINE;
+			return;
+		}
+
+		if (!_expectsBody || _responseCode == 204 || _responseCode == 304)
+		{
+			_state = STATE_COMPLETE;
+			return;
+		}
+
+		String transferEncoding = ServiceResponseHeaders.getHeaderValue(
+			_headers, "Transfer-Encoding");
+		if (transferEncoding != null
+			&& transferEncoding.toLowerCase(Locale.US).contains("chunked"))
+		{
+			_state = STATE_CHUNK_SIZE;
+			return;
+		}
+
+		String contentLength = ServiceResponseHeaders.getHeaderValue(_headers,
+			"Content-Length");
+		if (contentLength != null)
+		{
+			try
+			{
+				_remaining = Long.parseLong(contentLength.trim());
+			}
+			catch (NumberFormatException e)
+			{
+				throw new ProtocolException("Invalid Content-Length: "
+					+ contentLength);
+			}
+			if (_remaining < 0)
+			{
+				throw new ProtocolException("Invalid Content-Length: "
+					+ contentLength);
+			}
+			if (_remaining > _maxBodySize)
+			{
+				throw new ResponseBodyTooLargeException(_maxBodySize);
+			}
+			if (_remaining > 0)
+			{
+				_body = new byte[(int)_remaining];
+			}
+			_state = _remaining == 0 ? STATE_COMPLETE : STATE_FIXED_BODY;
+			return;
+		}
+
+		_state = STATE_BODY_UNTIL_CLOSE;
+	}
+
+	private void appendBody(int count) throws ResponseBodyTooLargeException
+	{
+		int length = _bodyLength + count;
+		if (length > _maxBodySize)
+		{
+			throw new ResponseBodyTooLargeException(_maxBodySize);
+		}
+		if (_body == null || length > _body.length)
+		{
+			// unknown length, so grow geometrically up to the maximum
+			long capacity = _body == null ? INITIAL_BODY_CAPACITY
+				: (long)_body.length * 2;
+			capacity = Math.min(Math.max(capacity, length),
+				Math.min(_maxBodySize, Integer.MAX_VALUE));
+			byte[] body = new byte[(int)capacity];
+			if (_body != null)
+			{
+				System.arraycopy(_body, 0, body, 0, _bodyLength);
+			}
+			_body = body;
+		}
+		System.arraycopy(_data, _position, _body, _bodyLength, count);
+		_bodyLength = length;
+	}
+
+	/**
+	 * @return the next CRLF-terminated line without its terminator, or null
+	 *         if a whole line hasn't arrived yet.
+	 */
+	private String readLine() throws IOException
+	{
+		for (int i = _position; i < _limit; ++i)
+		{
+			if (_data[i] == '\n')
+			{
+				int end = i > _position && _data[i - 1] == '\r' ? i - 1 : i;
+				String line = decode(_data, _position, end - _position);
+				_position = i + 1;
+				return line;
+			}
+		}
+		if (_limit - _position > MAX_LINE_LENGTH)
+		{
+			throw new ProtocolException("Response line too long.");
+		}
+		return null;
+	}
+
+	private static String decode(byte[] data, int offset, int length)
+	{
+		try
+		{
+			return new String(data, offset, length, HEADER_ENCODING);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			// ISO-8859-1 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// [endregion]
+
+} // class HttpResponseParser
@@ -0,0 +1,94 @@
+package com.nascentdigital.communication;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.nascentdigital.util.Logger;
+
+/**
+ * Streaming body data provider that uploads the contents of an input stream,
+ * closing it once written.  The stream can only be read once, so a request
+ * whose body has been sent is not retried.
+ *
+ */
+public class InputStreamBodyDataProvider implements StreamingBodyDataProvider
+{
+	// [region] instance variables
+	private final InputStream in;
+	private final long contentLength;
+	private boolean consumed;
+	// [endregion]
+
+	// [region] constructors
+	/**
+	 * Sends the stream with chunked transfer encoding.
+	 */
+	public InputStreamBodyDataProvider (InputStream in)
+	{
+		this(in, -1);
+	}
+
+	/**
+	 * @param contentLength exact number of bytes the stream holds, or -1 if
+	 *                      unknown.
+	 */
+	public InputStreamBodyDataProvider (InputStream in, long contentLength)
+	{
+		this.in = in;
+		this.contentLength = contentLength;
+	}
+	// [endregion]
+
+	// [region] public methods
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		synchronized (this)
+		{
+			if (consumed)
+			{
+				throw new IOException("Request body stream was already sent.");
+			}
+			consumed = true;
+		}
+
+		try
+		{
+			FileBodyDataProvider.copy(in, out);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return false;
+	}
+
+	@Override
+	public byte[] getBodyData() {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(
+			contentLength > 0 ? (int) contentLength : FileBodyDataProvider.BUFFER_SIZE);
+		try
+		{
+			writeTo(body);
+		}
+		catch (IOException e)
+		{
+			Logger.e(this.getClass().getName(), "Error Reading Request Body", e);
+			return null;
+		}
+		return body.toByteArray();
+	}
+	// [endregion]
+
+
+}
@@ -0,0 +1,175 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Default {@link ServiceTransport}, which asks for HTTP/1.1 keep-alive and
+ * keeps track of how connections are released.  It holds no sockets itself.
+ * <p>
+ * Sockets are pooled by the platform {@link HttpURLConnection}
+ * implementation, which hands a kept-alive socket back out as long as the
+ * previous response was read to the end and closed rather than
+ * disconnected.  The transport only disconnects the connections it is told
+ * can't be reused, and counts both kinds.  The platform pool is sized by
+ * process-wide system properties, which apps can opt into setting with
+ * {@link #configurePlatformPool(int, long)}.
+ * <p>
+ * Opening a connection never waits; cap concurrency to a host with
+ * {@link ServiceClient#setHostLimit(String, ServiceHostLimit)}, whose
+ * requests wait without holding a worker thread.
+ */
+public class KeepAliveServiceTransport implements ServiceTransport
+{
+	// [region] class variables
+
+	private static boolean _platformPoolConfigured;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final AtomicInteger _openConnectionCount;
+	private final AtomicLong _openedCount;
+	private final AtomicLong _reusableCount;
+	private final AtomicLong _discardedCount;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public KeepAliveServiceTransport()
+	{
+		_openConnectionCount = new AtomicInteger();
+		_openedCount = new AtomicLong();
+		_reusableCount = new AtomicLong();
+		_discardedCount = new AtomicLong();
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	/**
+	 * @return number of connections opened and not yet released.
+	 */
+	public int getOpenConnectionCount()
+	{
+		return _openConnectionCount.get();
+	}
+
+	/**
+	 * @return number of connections opened.
+	 */
+	public long getOpenedCount()
+	{
+		return _openedCount.get();
+	}
+
+	/**
+	 * @return number of connections released with their socket left to the
+	 *         platform pool for reuse.
+	 */
+	public long getReusableCount()
+	{
+		return _reusableCount.get();
+	}
+
+	/**
+	 * @return number of connections torn down because their exchange failed
+	 *         or their response wasn't read to the end.
+	 */
+	public long getDiscardedCount()
+	{
+		return _discardedCount.get();
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * Sizes the platform connection pool with
+	 * {@link ServiceClientConstants#DEFAULT_MAX_CONNECTIONS_PER_HOST} and
+	 * {@link ServiceClientConstants#DEFAULT_CONNECTION_IDLE_TIMEOUT}.
+	 *
+	 * @see #configurePlatformPool(int, long)
+	 */
+	public static boolean configurePlatformPool()
+	{
+		return configurePlatformPool(
+			ServiceClientConstants.DEFAULT_MAX_CONNECTIONS_PER_HOST,
+			ServiceClientConstants.DEFAULT_CONNECTION_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Sets the {@code http.keepAlive}, {@code http.maxConnections} and
+	 * {@code http.keepAliveDuration} system properties, which apply to every
+	 * {@link HttpURLConnection} in the process.  The platform reads them when
+	 * the first connection is opened, so call this early, e.g. from
+	 * {@code Application.onCreate()}.  Only the first call has an effect.
+	 *
+	 * @param maxIdleConnections        kept-alive sockets held per host.
+	 * @param idleTimeoutInMilliseconds time a kept-alive socket may sit
+	 *                                  idle before it is closed.
+	 * @return true if this call applied the settings.
+	 */
+	public static synchronized boolean configurePlatformPool(
+		int maxIdleConnections, long idleTimeoutInMilliseconds)
+	{
+		if (maxIdleConnections < 1)
+		{
+			throw new IllegalArgumentException(
+				"maxIdleConnections must be at least 1.");
+		}
+		if (_platformPoolConfigured)
+		{
+			return false;
+		}
+
+		System.setProperty("http.keepAlive", "true");
+		System.setProperty("http.maxConnections",
+			Integer.toString(maxIdleConnections));
+		System.setProperty("http.keepAliveDuration",
+			Long.toString(idleTimeoutInMilliseconds));
+		_platformPoolConfigured = true;
+		return true;
+	}
+
+	@Override
+	public HttpURLConnection openConnection(URL url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+		connection.setRequestProperty("Connection", "keep-alive");
+		_openedCount.incrementAndGet();
+		_openConnectionCount.incrementAndGet();
+		return connection;
+	}
+
+	@Override
+	public void releaseConnection(HttpURLConnection connection,
+		boolean reusable)
+	{
+		_openConnectionCount.decrementAndGet();
+		if (reusable)
+		{
+			_reusableCount.incrementAndGet();
+		}
+		else
+		{
+			connection.disconnect();
+			_discardedCount.incrementAndGet();
+		}
+	}
+
+	// [endregion]
+
+} // class KeepAliveServiceTransport
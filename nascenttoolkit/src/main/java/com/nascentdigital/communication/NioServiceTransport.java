@@ -0,0 +1,1007 @@
+package com.nascentdigital.communication;
+
+import com.nascentdigital.util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * {@link AsyncServiceTransport} that drives plain HTTP/1.1 exchanges over
+ * non-blocking {@link SocketChannel}s from a small number of selector
+ * threads.
+ * <p>
+ * Each host is served by one selector thread, which keeps up to
+ * {@code maxConnectionsPerHost} connections to it; exchanges beyond that wait
+ * for a connection to come free.  Connections are kept alive between
+ * exchanges and closed after {@code idleTimeoutInMilliseconds} unused.  An
+ * exchange that fails on a kept-alive connection before any response arrives
+ * is retried once on a new connection, since the server may simply have
+ * closed the idle socket; a {@code POST} is only retried if it wasn't fully
+ * written, as the server may otherwise have acted on it.
+ * <p>
+ * Only {@code http} URLs are supported; the client sends {@code https}
+ * requests through its blocking transport.
+ */
+public class NioServiceTransport implements AsyncServiceTransport
+{
+	// [region] constants
+
+	public static final int DEFAULT_SELECTOR_THREAD_COUNT = 2;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+
+	private static final long SELECT_TIMEOUT = 100;
+	private static final int READ_BUFFER_SIZE = 16 * 1024;
+	private static final String HEADER_ENCODING = "ISO-8859-1";
+	private static final List<String> IDEMPOTENT_METHODS =
+		Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS", "TRACE");
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final int _maxConnectionsPerHost;
+	private final long _idleTimeoutInMilliseconds;
+	private final SelectorLoop[] _loops;
+	private final AtomicLong _hitCount;
+	private final AtomicLong _missCount;
+	private boolean _shutdown;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public NioServiceTransport()
+	{
+		this(DEFAULT_SELECTOR_THREAD_COUNT, DEFAULT_MAX_CONNECTIONS_PER_HOST,
+			ServiceClientConstants.DEFAULT_CONNECTION_IDLE_TIMEOUT);
+	}
+
+	public NioServiceTransport(int selectorThreadCount,
+		int maxConnectionsPerHost, long idleTimeoutInMilliseconds)
+	{
+		if (selectorThreadCount < 1)
+		{
+			throw new IllegalArgumentException(
+				"selectorThreadCount must be at least 1.");
+		}
+		if (maxConnectionsPerHost < 1)
+		{
+			throw new IllegalArgumentException(
+				"maxConnectionsPerHost must be at least 1.");
+		}
+
+		_maxConnectionsPerHost = maxConnectionsPerHost;
+		_idleTimeoutInMilliseconds = idleTimeoutInMilliseconds;
+		_loops = new SelectorLoop[selectorThreadCount];
+		_hitCount = new AtomicLong();
+		_missCount = new AtomicLong();
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public int getSelectorThreadCount()
+	{
+		return _loops.length;
+	}
+
+	public int getMaxConnectionsPerHost()
+	{
+		return _maxConnectionsPerHost;
+	}
+
+	public long getIdleTimeoutInMilliseconds()
+	{
+		return _idleTimeoutInMilliseconds;
+	}
+
+	/**
+	 * @return number of exchanges that found a kept-alive connection waiting.
+	 */
+	public long getHitCount()
+	{
+		return _hitCount.get();
+	}
+
+	/**
+	 * @return number of exchanges that had to open a new connection.
+	 */
+	public long getMissCount()
+	{
+		return _missCount.get();
+	}
+
+	/**
+	 * @return number of open connections, in use or idle, across all hosts.
+	 */
+	public synchronized int getOpenConnectionCount()
+	{
+		int count = 0;
+		for (SelectorLoop loop : _loops)
+		{
+			if (loop != null)
+			{
+				count += loop.openConnectionCount;
+			}
+		}
+		return count;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	@Override
+	public boolean supports(URL url)
+	{
+		return "http".equalsIgnoreCase(url.getProtocol());
+	}
+
+	@Override
+	public Cancellable execute(Request request, Callback callback)
+		throws IOException
+	{
+		if (!supports(request.url))
+		{
+			throw new IllegalArgumentException("Unsupported URL: "
+				+ request.url);
+		}
+
+		// resolve here, since it blocks and mustn't stall a selector thread
+		String host = request.url.getHost();
+		int port = request.url.getPort() == -1 ? request.url.getDefaultPort()
+			: request.url.getPort();
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (address.isUnresolved())
+		{
+			throw new UnknownHostException(host);
+		}
+
+		String key = host.toLowerCase(Locale.US) + ":" + port;
+		Exchange exchange = new Exchange(key, address, request,
+			formatRequest(request, host, port), callback);
+		while (!getLoop(key).startExchange(exchange))
+		{
+			// the loop stopped as the exchange was handed over; use its
+			// replacement
+		}
+		return exchange;
+	}
+
+	/**
+	 * Fails every pending exchange, closes all connections and stops the
+	 * selector threads.  Exchanges can't be executed afterwards.
+	 */
+	public synchronized void shutdown()
+	{
+		_shutdown = true;
+		for (SelectorLoop loop : _loops)
+		{
+			if (loop != null)
+			{
+				loop.close();
+			}
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private synchronized SelectorLoop getLoop(String key) throws IOException
+	{
+		if (_shutdown)
+		{
+			throw new IOException("Transport has been shut down.");
+		}
+
+		// a loop that has stopped, e.g. on a selector failure, is replaced
+		int index = (key.hashCode() & Integer.MAX_VALUE) % _loops.length;
+		if (_loops[index] == null || _loops[index].isTerminated())
+		{
+			_loops[index] = new SelectorLoop(index);
+			_loops[index].start();
+		}
+		return _loops[index];
+	}
+
+	private static byte[] formatRequest(Request request, String host, int port)
+		throws UnsupportedEncodingException
+	{
+		StringBuilder head = new StringBuilder(256);
+		String path = request.url.getFile();
+		for (int i = 0; i < path.length(); ++i)
+		{
+			char c = path.charAt(i);
+			if (c < ' ' || c == 0x7F)
+			{
+				throw new IllegalArgumentException(String.format(Locale.US,
+					"Unexpected char %#04x at %d in path: %s", (int)c, i, path));
+			}
+		}
+		head.append(request.method).append(' ')
+			.append(path.length() == 0 ? "/" : path)
+			.append(" HTTP/1.1\r\n");
+		head.append("Host: ").append(host);
+		if (port != request.url.getDefaultPort())
+		{
+			head.append(':').append(port);
+		}
+		head.append("\r\n");
+
+		if (request.headers != null)
+		{
+			for (Map.Entry<String, String> header : request.headers.entrySet())
+			{
+				// framing headers are ours to set
+				String name = header.getKey();
+				if (name == null
+					|| header.getValue() == null
+					|| name.equalsIgnoreCase("Host")
+					|| name.equalsIgnoreCase("Content-Length")
+					|| name.equalsIgnoreCase("Transfer-Encoding")
+					|| name.equalsIgnoreCase("Connection"))
+				{
+					continue;
+				}
+				checkHeader(name, header.getValue());
+				head.append(name).append(": ").append(header.getValue())
+					.append("\r\n");
+			}
+		}
+
+		if (request.body != null)
+		{
+			head.append("Content-Length: ").append(request.body.length)
+				.append("\r\n");
+		}
+		head.append("Connection: keep-alive\r\n\r\n");
+
+		byte[] headBytes = head.toString().getBytes(HEADER_ENCODING);
+		if (request.body == null || request.body.length == 0)
+		{
+			return headBytes;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+			headBytes.length + request.body.length);
+		bytes.write(headBytes, 0, headBytes.length);
+		bytes.write(request.body, 0, request.body.length);
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Rejects header text that could end the header early and inject
+	 * headers or a second request, as the platform's connection does.
+	 */
+	private static void checkHeader(String name, String value)
+	{
+		if (name.length() == 0)
+		{
+			throw new IllegalArgumentException("Empty header name.");
+		}
+		for (int i = 0; i < name.length(); ++i)
+		{
+			char c = name.charAt(i);
+			if (c <= ' ' || c >= 0x7F || c == ':')
+			{
+				throw new IllegalArgumentException(String.format(Locale.US,
+					"Unexpected char %#04x at %d in header name: %s",
+					(int)c, i, name));
+			}
+		}
+		for (int i = 0; i < value.length(); ++i)
+		{
+			char c = value.charAt(i);
+			if ((c < ' ' && c != '\t') || c == 0x7F)
+			{
+				throw new IllegalArgumentException(String.format(Locale.US,
+					"Unexpected char %#04x at %d in %s header value",
+					(int)c, i, name));
+			}
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	private static final class Exchange implements Cancellable
+	{
+
+		// [region] instance variables
+
+		final String key;
+		final InetSocketAddress address;
+		final String method;
+		final byte[] requestBytes;
+		final long maxResponseBodySize;
+		final long connectTimeoutInNanos;
+		final long readTimeoutInNanos;
+		final long writeTimeoutInNanos;
+		private final Callback _callback;
+		private SelectorLoop _loop;
+		private boolean _done;
+		private boolean _cancelled;
+
+		// accessed only by the selector thread
+		Connection connection;
+		boolean retried;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		Exchange(String key, InetSocketAddress address, Request request,
+			byte[] requestBytes, Callback callback)
+		{
+			this.key = key;
+			this.address = address;
+			this.method = request.method;
+			this.requestBytes = requestBytes;
+			this.maxResponseBodySize = request.maxResponseBodySize;
+			this.connectTimeoutInNanos =
+				toNanos(request.connectTimeoutInMilliseconds);
+			this.readTimeoutInNanos = toNanos(request.readTimeoutInMilliseconds);
+			this.writeTimeoutInNanos = toNanos(request.writeTimeoutInMilliseconds);
+
+			_callback = callback;
+		}
+
+		// [endregion]
+
+
+		// [region] methods
+
+		synchronized void setLoop(SelectorLoop loop)
+		{
+			_loop = loop;
+		}
+
+		@Override
+		public boolean cancel()
+		{
+			SelectorLoop loop;
+			synchronized (this)
+			{
+				if (_done || _cancelled)
+				{
+					return false;
+				}
+				_cancelled = true;
+				loop = _loop;
+			}
+			if (loop != null)
+			{
+				loop.abortExchange(this);
+			}
+			return true;
+		}
+
+		@Override
+		public synchronized boolean isCancelled()
+		{
+			return _cancelled;
+		}
+
+		void complete(Response response)
+		{
+			if (finish())
+			{
+				try
+				{
+					_callback.onResponse(response);
+				}
+				catch (RuntimeException e)
+				{
+					Logger.e(getClass().getName(), "Exchange callback failed.", e);
+				}
+			}
+		}
+
+		void fail(IOException exception)
+		{
+			if (finish())
+			{
+				try
+				{
+					_callback.onFailure(exception);
+				}
+				catch (RuntimeException e)
+				{
+					Logger.e(getClass().getName(), "Exchange callback failed.", e);
+				}
+			}
+		}
+
+		private static long toNanos(int timeoutInMilliseconds)
+		{
+			return timeoutInMilliseconds > 0
+				? TimeUnit.MILLISECONDS.toNanos(timeoutInMilliseconds)
+				: Long.MAX_VALUE;
+		}
+
+		private synchronized boolean finish()
+		{
+			if (_done || _cancelled)
+			{
+				return false;
+			}
+			_done = true;
+			return true;
+		}
+
+		// [endregion]
+
+	} // class Exchange
+
+	private static final class HostPool
+	{
+		final ArrayDeque<Connection> idle = new ArrayDeque<>();
+		final ArrayDeque<Exchange> waiting = new ArrayDeque<>();
+		int openCount;
+
+	} // class HostPool
+
+	private static final class Connection
+	{
+		final HostPool hostPool;
+		final SocketChannel channel;
+		SelectionKey key;
+		Exchange exchange;
+		HttpResponseParser parser;
+		ByteBuffer output;
+		boolean connecting;
+		boolean reused;
+		boolean closed;
+		long lastActivity;
+
+		Connection(HostPool hostPool, SocketChannel channel)
+		{
+			this.hostPool = hostPool;
+			this.channel = channel;
+		}
+
+	} // class Connection
+
+	private final class SelectorLoop extends Thread
+	{
+
+		// [region] instance variables
+
+		volatile int openConnectionCount;
+		private final Selector _selector;
+		private final ConcurrentLinkedQueue<Runnable> _tasks;
+		private boolean _terminated;
+		private final HashMap<String, HostPool> _hostPools;
+		private final HashSet<Connection> _connections;
+		private final ByteBuffer _readBuffer;
+		private volatile boolean _closed;
+		private long _lastExpiryCheck;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		SelectorLoop(int index) throws IOException
+		{
+			super("NioServiceTransport-" + index);
+			setDaemon(true);
+
+			_selector = Selector.open();
+			_tasks = new ConcurrentLinkedQueue<>();
+			_hostPools = new HashMap<>();
+			_connections = new HashSet<>();
+			_readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		}
+
+		// [endregion]
+
+
+		// [region] methods
+
+		/**
+		 * @return false if the loop has stopped and won't run the exchange.
+		 */
+		boolean startExchange(final Exchange exchange)
+		{
+			exchange.setLoop(this);
+			return post(() -> start(exchange));
+		}
+
+		void abortExchange(final Exchange exchange)
+		{
+			post(() -> abort(exchange));
+		}
+
+		void close()
+		{
+			_closed = true;
+			_selector.wakeup();
+		}
+
+		/**
+		 * @return true once the loop has stopped taking tasks.
+		 */
+		boolean isTerminated()
+		{
+			synchronized (_tasks)
+			{
+				return _terminated;
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (!_closed)
+				{
+					runTasks();
+					_selector.select(SELECT_TIMEOUT);
+
+					Iterator<SelectionKey> keys =
+						_selector.selectedKeys().iterator();
+					while (keys.hasNext())
+					{
+						SelectionKey key = keys.next();
+						keys.remove();
+						handle(key, (Connection)key.attachment());
+					}
+
+					long now = System.nanoTime();
+					if (now - _lastExpiryCheck
+						> TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT))
+					{
+						_lastExpiryCheck = now;
+						expireConnections(now);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				Logger.e(getClass().getName(), "Selector failed.", e);
+			}
+			finally
+			{
+				_closed = true;
+				shutDown();
+			}
+		}
+
+		// [endregion]
+
+
+		// [region] private methods
+
+		private boolean post(Runnable task)
+		{
+			synchronized (_tasks)
+			{
+				if (_terminated)
+				{
+					return false;
+				}
+				_tasks.add(task);
+			}
+			_selector.wakeup();
+			return true;
+		}
+
+		private void runTasks()
+		{
+			Runnable task;
+			while ((task = _tasks.poll()) != null)
+			{
+				try
+				{
+					task.run();
+				}
+				catch (RuntimeException e)
+				{
+					Logger.e(getClass().getName(), "Selector task failed.", e);
+				}
+			}
+		}
+
+		private HostPool getHostPool(String key)
+		{
+			HostPool hostPool = _hostPools.get(key);
+			if (hostPool == null)
+			{
+				hostPool = new HostPool();
+				_hostPools.put(key, hostPool);
+			}
+			return hostPool;
+		}
+
+		private void start(Exchange exchange)
+		{
+			if (exchange.isCancelled())
+			{
+				return;
+			}
+			if (_closed)
+			{
+				exchange.fail(new IOException("Transport has been shut down."));
+				return;
+			}
+
+			// prefer the most recently used connection, as it's least likely
+			// to have been closed by the server
+			HostPool hostPool = getHostPool(exchange.key);
+			Connection connection = hostPool.idle.pollLast();
+			if (connection != null)
+			{
+				_hitCount.incrementAndGet();
+				begin(connection, exchange, true);
+			}
+			else if (hostPool.openCount < _maxConnectionsPerHost)
+			{
+				_missCount.incrementAndGet();
+				open(hostPool, exchange);
+			}
+			else
+			{
+				hostPool.waiting.addLast(exchange);
+			}
+		}
+
+		private void open(HostPool hostPool, Exchange exchange)
+		{
+			Connection connection = null;
+			try
+			{
+				SocketChannel channel = SocketChannel.open();
+				connection = new Connection(hostPool, channel);
+				++hostPool.openCount;
+				++openConnectionCount;
+				_connections.add(connection);
+
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				connection.key = channel.register(_selector, 0, connection);
+				begin(connection, exchange, false);
+				if (!channel.connect(exchange.address))
+				{
+					connection.connecting = true;
+					connection.key.interestOps(SelectionKey.OP_CONNECT);
+				}
+			}
+			catch (IOException e)
+			{
+				if (connection != null)
+				{
+					connection.exchange = null;
+					closeConnection(connection);
+				}
+				exchange.fail(e);
+				dispatchWaiting(hostPool);
+			}
+		}
+
+		private void begin(Connection connection, Exchange exchange,
+			boolean reused)
+		{
+			exchange.connection = connection;
+			connection.exchange = exchange;
+			connection.reused = reused;
+			connection.parser = new HttpResponseParser(
+				!"HEAD".equals(exchange.method), exchange.maxResponseBodySize);
+			connection.output = ByteBuffer.wrap(exchange.requestBytes);
+			connection.lastActivity = System.nanoTime();
+			connection.key.interestOps(SelectionKey.OP_WRITE);
+		}
+
+		private void handle(SelectionKey key, Connection connection)
+		{
+			if (connection.closed || !key.isValid())
+			{
+				return;
+			}
+
+			try
+			{
+				if (key.isConnectable())
+				{
+					if (connection.channel.finishConnect())
+					{
+						connection.connecting = false;
+						connection.lastActivity = System.nanoTime();
+						key.interestOps(SelectionKey.OP_WRITE);
+					}
+				}
+				else if (key.isWritable())
+				{
+					write(connection);
+				}
+				else if (key.isReadable())
+				{
+					read(connection);
+				}
+			}
+			catch (IOException e)
+			{
+				onConnectionFailed(connection, e);
+			}
+			catch (CancelledKeyException e)
+			{
+				onConnectionFailed(connection,
+					new IOException("Connection closed.", e));
+			}
+			catch (RuntimeException e)
+			{
+				// fail this connection's exchange, not the whole loop
+				Logger.e(getClass().getName(), "Connection failed.", e);
+				onConnectionFailed(connection,
+					new IOException("Connection failed.", e));
+			}
+		}
+
+		private void write(Connection connection) throws IOException
+		{
+			connection.channel.write(connection.output);
+			connection.lastActivity = System.nanoTime();
+			if (!connection.output.hasRemaining())
+			{
+				connection.output = null;
+				connection.key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		private void read(Connection connection) throws IOException
+		{
+			_readBuffer.clear();
+			int count = connection.channel.read(_readBuffer);
+
+			// an idle connection only becomes readable when the server closes it
+			if (connection.exchange == null)
+			{
+				closeConnection(connection);
+				return;
+			}
+
+			connection.lastActivity = System.nanoTime();
+			boolean complete;
+			if (count == -1)
+			{
+				complete = connection.parser.onEndOfStream();
+			}
+			else
+			{
+				_readBuffer.flip();
+				complete = connection.parser.feed(_readBuffer);
+			}
+			if (complete)
+			{
+				onResponse(connection);
+			}
+		}
+
+		private void onResponse(Connection connection)
+		{
+			Exchange exchange = connection.exchange;
+			HttpResponseParser parser = connection.parser;
+			connection.exchange = null;
+			connection.parser = null;
+
+			HostPool hostPool = connection.hostPool;
+			if (parser.isKeepAlive() && !_closed)
+			{
+				connection.lastActivity = System.nanoTime();
+				connection.key.interestOps(SelectionKey.OP_READ);
+				hostPool.idle.addLast(connection);
+			}
+			else
+			{
+				closeConnection(connection);
+			}
+
+			exchange.complete(new Response(parser.getResponseCode(),
+				parser.getResponseMessage(), parser.getHeaders(),
+				parser.getBody(), parser.getBodyLength()));
+			dispatchWaiting(hostPool);
+		}
+
+		private void onConnectionFailed(Connection connection,
+			IOException exception)
+		{
+			Exchange exchange = connection.exchange;
+			boolean retry = exchange != null
+				&& connection.reused
+				&& !exchange.retried
+				&& !connection.parser.hasReceivedBytes()
+				&& !(exception instanceof SocketTimeoutException)
+				&& (IDEMPOTENT_METHODS.contains(exchange.method)
+					|| connection.output != null);
+			connection.exchange = null;
+			closeConnection(connection);
+
+			if (exchange != null)
+			{
+				if (retry)
+				{
+					exchange.retried = true;
+					start(exchange);
+				}
+				else
+				{
+					exchange.fail(exception);
+				}
+			}
+			dispatchWaiting(connection.hostPool);
+		}
+
+		private void abort(Exchange exchange)
+		{
+			Connection connection = exchange.connection;
+			if (connection != null && connection.exchange == exchange)
+			{
+				// the connection is mid-exchange, so it can't be reused
+				connection.exchange = null;
+				closeConnection(connection);
+				dispatchWaiting(connection.hostPool);
+			}
+			else
+			{
+				getHostPool(exchange.key).waiting.remove(exchange);
+			}
+		}
+
+		private void dispatchWaiting(HostPool hostPool)
+		{
+			while (!hostPool.waiting.isEmpty()
+				&& (!hostPool.idle.isEmpty()
+					|| hostPool.openCount < _maxConnectionsPerHost))
+			{
+				start(hostPool.waiting.pollFirst());
+			}
+		}
+
+		private void expireConnections(long now)
+		{
+			long idleTimeoutInNanos =
+				TimeUnit.MILLISECONDS.toNanos(_idleTimeoutInMilliseconds);
+			for (Connection connection : new ArrayList<>(_connections))
+			{
+				if (connection.closed)
+				{
+					continue;
+				}
+
+				long inactivity = now - connection.lastActivity;
+				Exchange exchange = connection.exchange;
+				if (exchange == null)
+				{
+					if (inactivity > idleTimeoutInNanos)
+					{
+						closeConnection(connection);
+					}
+				}
+				else if (connection.connecting)
+				{
+					if (inactivity > exchange.connectTimeoutInNanos)
+					{
+						onConnectionFailed(connection,
+							new SocketTimeoutException("Connect timed out."));
+					}
+				}
+				else if (connection.output != null)
+				{
+					if (inactivity > exchange.writeTimeoutInNanos)
+					{
+						onConnectionFailed(connection,
+							new SocketTimeoutException("Write timed out."));
+					}
+				}
+				else if (inactivity > exchange.readTimeoutInNanos)
+				{
+					onConnectionFailed(connection,
+						new SocketTimeoutException("Read timed out."));
+				}
+			}
+		}
+
+		private void closeConnection(Connection connection)
+		{
+			if (connection.closed)
+			{
+				return;
+			}
+			connection.closed = true;
+			if (connection.key != null)
+			{
+				connection.key.cancel();
+			}
+			try
+			{
+				connection.channel.close();
+			}
+			catch (IOException e)
+			{
+				// nothing more to release
+			}
+			_connections.remove(connection);
+			connection.hostPool.idle.remove(connection);
+			--connection.hostPool.openCount;
+			--openConnectionCount;
+		}
+
+		private void shutDown()
+		{
+			// fails any exchanges that were still being handed over; none
+			// are accepted after this
+			synchronized (_tasks)
+			{
+				_terminated = true;
+			}
+			runTasks();
+
+			IOException exception = new IOException("Transport has been shut down.");
+			for (Connection connection : new ArrayList<>(_connections))
+			{
+				Exchange exchange = connection.exchange;
+				connection.exchange = null;
+				closeConnection(connection);
+				if (exchange != null)
+				{
+					exchange.fail(exception);
+				}
+			}
+			for (HostPool hostPool : _hostPools.values())
+			{
+				for (Exchange exchange : hostPool.waiting)
+				{
+					exchange.fail(exception);
+				}
+				hostPool.waiting.clear();
+			}
+			try
+			{
+				_selector.close();
+			}
+			catch (IOException e)
+			{
+				// nothing more to release
+			}
+		}
+
+		// [endregion]
+
+	} // class SelectorLoop
+
+	// [endregion]
+
+} // class NioServiceTransport
@@ -0,0 +1,21 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+
+
+/**
+ * Thrown by an {@link AsyncServiceTransport} when a response body is larger
+ * than the request allows it to hold in memory.
+ */
+public class ResponseBodyTooLargeException extends IOException
+{
+	private static final long serialVersionUID = 1L;
+	public final long maxBodySize;
+
+	public ResponseBodyTooLargeException(long maxBodySize)
+	{
+		super("Response body exceeds " + maxBodySize + " bytes.");
+		this.maxBodySize = maxBodySize;
+	}
+
+}
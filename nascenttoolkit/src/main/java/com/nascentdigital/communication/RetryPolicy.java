@@ -0,0 +1,25 @@
+package com.nascentdigital.communication;
+
+
+/**
+ * Decides whether and when a failed {@link ServiceOperation} is attempted
+ * again.  Retries are re-enqueued on the {@link ServiceClient} request pool
+ * after the delay, so no worker thread is held while waiting.
+ */
+public interface RetryPolicy
+{
+	/**
+	 * @param serviceOperation the operation whose attempt failed.
+	 * @param responseCode     HTTP status of the failed attempt, or -1 if no
+	 *                         response was received.
+	 * @param error            the failure.
+	 * @param retryCount       number of retries already attempted.
+	 * @param responseHeaders  headers of the failed response, or null if no
+	 *                         response was received.
+	 * @return delay in milliseconds before the next attempt, or a negative
+	 *         value to give up and fail the operation.
+	 */
+	long getRetryDelay(ServiceOperation<?, ?> serviceOperation,
+		int responseCode, Exception error, int retryCount,
+		ServiceResponseHeaders responseHeaders);
+}
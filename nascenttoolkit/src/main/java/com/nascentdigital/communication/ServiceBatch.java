@@ -0,0 +1,246 @@
+package com.nascentdigital.communication;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+
+
+/**
+ * Handle to a set of requests started together with
+ * {@link ServiceClient#beginBatch(List, ServiceOperationPriority, long,
+ * ServiceBatchCompletion)}, which raises one completion once every request
+ * has its result.
+ */
+public final class ServiceBatch implements Cancellable
+{
+	// [region] instance variables
+
+	private final ServiceBatchCompletion _completion;
+	private final Executor _completionExecutor;
+	private final ArrayList<ServiceOperation<?, ?>> _operations;
+	private final ServiceResultContainer<?>[] _resultContainers;
+	private int _pendingCount;
+	private ScheduledFuture<?> _deadline;
+	private boolean _cancelled;
+	private boolean _expired;
+	private boolean _completed;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	ServiceBatch(int size, ServiceBatchCompletion completion,
+		Executor completionExecutor)
+	{
+		_completion = completion;
+		_completionExecutor = completionExecutor;
+		_operations = new ArrayList<>(size);
+		_resultContainers = new ServiceResultContainer<?>[size];
+		_pendingCount = size;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	/**
+	 * @return the batch's operations, in the order their requests were
+	 *         given.
+	 */
+	public synchronized List<ServiceOperation<?, ?>> getOperations()
+	{
+		return Collections.unmodifiableList(
+			new ArrayList<ServiceOperation<?, ?>>(_operations));
+	}
+
+	@Override
+	public synchronized boolean isCancelled()
+	{
+		return _cancelled;
+	}
+
+	/**
+	 * @return true if the deadline passed before every request finished.
+	 */
+	public synchronized boolean isExpired()
+	{
+		return _expired;
+	}
+
+	/**
+	 * @return true once the aggregate completion has been raised.
+	 */
+	public synchronized boolean isDone()
+	{
+		return _completed;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * Cancels every request of the batch that hasn't finished yet, and raises
+	 * the aggregate completion straight away with the results gathered so
+	 * far.
+	 *
+	 * @return false if the batch had already completed or been cancelled.
+	 */
+	@Override
+	public boolean cancel()
+	{
+		List<ServiceResultContainer<?>> resultContainers;
+		synchronized (this)
+		{
+			if (_completed || _cancelled)
+			{
+				return false;
+			}
+			_cancelled = true;
+			resultContainers = complete();
+		}
+		raiseCompletion(resultContainers);
+		cancelOperations();
+		return true;
+	}
+
+	// [endregion]
+
+
+	// [region] internal methods
+
+	synchronized void addOperation(ServiceOperation<?, ?> serviceOperation)
+	{
+		_operations.add(serviceOperation);
+	}
+
+	/**
+	 * Called once every operation has been started, so one that started
+	 * after a cancellation or the deadline is stopped too.
+	 */
+	void operationsStarted(ScheduledFuture<?> deadline)
+	{
+		List<ServiceResultContainer<?>> resultContainers = null;
+		boolean stopOperations = false;
+		synchronized (this)
+		{
+			_deadline = deadline;
+			if (_completed)
+			{
+				stopOperations = _cancelled || _expired;
+				if (deadline != null)
+				{
+					deadline.cancel(false);
+				}
+			}
+
+			// an empty batch is complete straight away
+			else if (_pendingCount == 0)
+			{
+				resultContainers = complete();
+			}
+		}
+		if (resultContainers != null)
+		{
+			raiseCompletion(resultContainers);
+		}
+		if (stopOperations)
+		{
+			cancelOperations();
+		}
+	}
+
+	/**
+	 * Completes the batch with the requests still outstanding marked as
+	 * cancelled, then cancels them.
+	 */
+	void expire()
+	{
+		List<ServiceResultContainer<?>> resultContainers;
+		synchronized (this)
+		{
+			if (_completed)
+			{
+				return;
+			}
+			_expired = true;
+			resultContainers = complete();
+		}
+		raiseCompletion(resultContainers);
+		cancelOperations();
+	}
+
+	void operationCompleted(int index,
+		ServiceResultContainer<?> resultContainer)
+	{
+		List<ServiceResultContainer<?>> resultContainers;
+		synchronized (this)
+		{
+			if (_completed)
+			{
+				return;
+			}
+			_resultContainers[index] = resultContainer;
+			if (--_pendingCount > 0)
+			{
+				return;
+			}
+			resultContainers = complete();
+		}
+		raiseCompletion(resultContainers);
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	/**
+	 * Must be called holding the lock.
+	 */
+	private List<ServiceResultContainer<?>> complete()
+	{
+		_completed = true;
+		if (_deadline != null)
+		{
+			_deadline.cancel(false);
+		}
+		for (int i = 0; i < _resultContainers.length; ++i)
+		{
+			if (_resultContainers[i] == null)
+			{
+				_resultContainers[i] = new ServiceResultContainer<>(null,
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED,
+					null, ServiceResultStatus.CANCELLED);
+			}
+		}
+		return Collections.unmodifiableList(Arrays.asList(_resultContainers));
+	}
+
+	private void raiseCompletion(
+		final List<ServiceResultContainer<?>> resultContainers)
+	{
+		if (_completion != null)
+		{
+			_completionExecutor.execute(
+				() -> _completion.onCompletion(resultContainers));
+		}
+	}
+
+	private void cancelOperations()
+	{
+		for (ServiceOperation<?, ?> serviceOperation : getOperations())
+		{
+			serviceOperation.cancel();
+		}
+	}
+
+	// [endregion]
+
+} // class ServiceBatch
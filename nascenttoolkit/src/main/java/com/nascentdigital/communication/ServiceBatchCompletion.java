@@ -0,0 +1,16 @@
+package com.nascentdigital.communication;
+
+import java.util.List;
+
+
+public interface ServiceBatchCompletion
+{
+	/**
+	 * @param resultContainers the result of each request, in the order the
+	 *                         requests were given; requests cut off by the
+	 *                         deadline or by cancellation have a
+	 *                         {@link ServiceResultStatus#CANCELLED} result.
+	 */
+	void onCompletion(List<ServiceResultContainer<?>> resultContainers);
+
+}
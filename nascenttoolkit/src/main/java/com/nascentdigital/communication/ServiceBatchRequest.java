@@ -0,0 +1,101 @@
+package com.nascentdigital.communication;
+
+import java.util.Map;
+
+
+/**
+ * One request of a batch started with
+ * {@link ServiceClient#beginBatch(java.util.List, ServiceOperationPriority,
+ * long, ServiceBatchCompletion)}.
+ */
+public class ServiceBatchRequest<TResponse, TResult>
+{
+	// [region] instance variables
+
+	private final String _uri;
+	private final ServiceMethod _method;
+	private final Map<String, String> _headers;
+	private final Map<String, String> _queryParameters;
+	private final BodyDataProvider _bodyDataProvider;
+	private final ServiceResponseFormat<TResponse> _responseFormat;
+	private final ServiceResponseTransform<TResponse, TResult> _responseTransform;
+	private final boolean _useCaches;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public ServiceBatchRequest(String uri, ServiceMethod method,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform)
+	{
+		this(uri, method, null, null, null, responseFormat, responseTransform,
+			false);
+	}
+
+	public ServiceBatchRequest(String uri, ServiceMethod method,
+		Map<String, String> headers, Map<String, String> queryParameters,
+		BodyDataProvider bodyDataProvider,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform,
+		boolean useCaches)
+	{
+		_uri = uri;
+		_method = method;
+		_headers = headers;
+		_queryParameters = queryParameters;
+		_bodyDataProvider = bodyDataProvider;
+		_responseFormat = responseFormat;
+		_responseTransform = responseTransform;
+		_useCaches = useCaches;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public String getUri()
+	{
+		return _uri;
+	}
+
+	public ServiceMethod getMethod()
+	{
+		return _method;
+	}
+
+	public Map<String, String> getHeaders()
+	{
+		return _headers;
+	}
+
+	public Map<String, String> getQueryParameters()
+	{
+		return _queryParameters;
+	}
+
+	public BodyDataProvider getBodyDataProvider()
+	{
+		return _bodyDataProvider;
+	}
+
+	public ServiceResponseFormat<TResponse> getResponseFormat()
+	{
+		return _responseFormat;
+	}
+
+	public ServiceResponseTransform<TResponse, TResult> getResponseTransform()
+	{
+		return _responseTransform;
+	}
+
+	public boolean getUseCaches()
+	{
+		return _useCaches;
+	}
+
+	// [endregion]
+
+} // class ServiceBatchRequest
@@ -2,11 +2,27 @@
 package com.nascentdigital.communication;
 
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.util.Xml;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.nascentdigital.connectivity.ConnectivityHelper;
+import com.nascentdigital.connectivity.NetworkConnectivityListener;
+import com.nascentdigital.threading.AdaptiveConcurrencyLimiter;
+import com.nascentdigital.threading.AgingPriorityBlockingQueue;
+import com.nascentdigital.threading.DirectExecutor;
+import com.nascentdigital.threading.FrameBatchingExecutor;
+import com.nascentdigital.threading.MainThreadExecutor;
 import com.nascentdigital.threading.PriorityThreadPoolExecutor;
+import com.nascentdigital.util.ByteArrayPool;
+import com.nascentdigital.util.IndexedJson;
 import com.nascentdigital.util.Logger;
 
 import org.apache.http.NameValuePair;
@@ -16,18 +32,36 @@ import org.json.JSONObject;
 import org.json.JSONTokener;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
 import java.net.URI;
-import java.util.Comparator;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -36,16 +70,61 @@ import javax.xml.parsers.ParserConfigurationException;
 public class ServiceClient
 {
 
+	// [region] constants
+
+	private static final int CONNECTIVITY_CHANGED = 1;
+
+	// [endregion]
+
+
 	// [region] class variables
-	
-	private static final Comparator<ServiceOperation<?, ?>> _operationTaskComparator;
+
+	/**
+	 * Configured parsers, one per worker thread, so each response doesn't
+	 * pay for creating and securing a new one.
+	 */
+	private static final ThreadLocal<DocumentBuilder> _documentBuilders =
+		new ThreadLocal<>();
+	private static final ThreadLocal<XmlPullParser> _xmlPullParsers =
+		new ThreadLocal<>();
 
 	// [endregion]
 
+
 	// [region] instance variables
 
 	private final PriorityThreadPoolExecutor<ServiceOperation<?, ?>> _requestPool;
+	private final AgingPriorityBlockingQueue<ServiceOperation<?, ?>> _requestQueue;
+	private final PriorityThreadPoolExecutor<ServiceOperation.ComputeTask> _computePool;
+	private final AgingPriorityBlockingQueue<ServiceOperation.ComputeTask> _computeQueue;
+	private volatile int _computePoolSize;
+	private volatile ServiceSchedulingMode _schedulingMode;
+	private final int _corePoolSize;
+	private final int _maxPoolSize;
+	private volatile AdaptiveConcurrencyLimiter _concurrencyLimiter;
+	private final ScheduledThreadPoolExecutor _scheduler;
 	private int _requestTimeoutInMilliseconds;
+	private volatile int _connectTimeoutInMilliseconds;
+	private volatile int _readTimeoutInMilliseconds;
+	private volatile int _writeTimeoutInMilliseconds;
+	private volatile long _deadlineInMilliseconds;
+	private volatile ServiceTransport _transport;
+	private volatile AsyncServiceTransport _asyncTransport;
+	private volatile ServiceResponseCache _responseCache;
+	private volatile RetryPolicy _retryPolicy;
+	private volatile boolean _requestCoalescingEnabled;
+	private volatile boolean _responseCompressionEnabled;
+	private volatile Executor _completionExecutor;
+	private volatile ServiceEventListener _eventListener;
+	private volatile ByteArrayPool _bufferPool;
+	private volatile TimingSSLSocketFactory _timingSocketFactory;
+	private volatile Set<String> _coalescingHeaderNames;
+	private final HashMap<Object, ServiceOperation<?, ?>> _coalescingOperations;
+	private final Set<ServiceOperation<?, ?>> _activeOperations;
+	private final ConcurrentHashMap<String, ServiceHostThrottle> _hostThrottles;
+	private final ServiceNetworkGate _networkGate;
+	private NetworkConnectivityListener _connectivityListener;
+	private Handler _connectivityHandler;
 	protected SSLContextFactory _sslContextFactory;
 
 	// [endregion]
@@ -57,6 +136,272 @@ public class ServiceClient
 		return _requestPool;
 	}
 
+	/**
+	 * @return number of requests waiting for a request worker.
+	 */
+	public int getRequestQueueDepth()
+	{
+		return _requestQueue.size();
+	}
+
+	/**
+	 * @return number of compute workers parsing or transforming a body.
+	 */
+	public int getComputeActiveCount()
+	{
+		return _computePool.getActiveCount();
+	}
+
+	public int getComputePoolSize()
+	{
+		return _computePoolSize;
+	}
+
+	/**
+	 * Sizes the compute stage, which parses and transforms buffered response
+	 * bodies once a request worker has read them, so CPU-heavy transforms
+	 * don't hold a request slot.  Passing 0 parses on the request worker
+	 * instead.  Streaming formats always parse on the request worker, as
+	 * they read from the network.
+	 */
+	public synchronized void setComputePoolSize(int computePoolSize)
+	{
+		if (computePoolSize < 0)
+		{
+			throw new IllegalArgumentException(
+				"computePoolSize must not be negative.");
+		}
+		if (computePoolSize > 0)
+		{
+			_computePool.setPoolSize(computePoolSize, computePoolSize);
+		}
+		_computePoolSize = computePoolSize;
+	}
+
+	/**
+	 * @return number of response bodies waiting for a compute worker.
+	 */
+	public int getComputeQueueDepth()
+	{
+		return _computeQueue.size();
+	}
+
+	public ServiceSchedulingMode getSchedulingMode()
+	{
+		return _schedulingMode;
+	}
+
+	/**
+	 * Sets how queued requests are ordered.  With
+	 * {@link ServiceSchedulingMode#PRIORITY_AGING}, a waiting request gains
+	 * one priority point every
+	 * {@link ServiceClientConstants#DEFAULT_PRIORITY_AGING_INTERVAL}
+	 * milliseconds.
+	 */
+	public void setSchedulingMode(ServiceSchedulingMode schedulingMode)
+	{
+		setSchedulingMode(schedulingMode,
+			ServiceClientConstants.DEFAULT_PRIORITY_AGING_INTERVAL);
+	}
+
+	/**
+	 * @param agingIntervalInMilliseconds wait that raises a queued request's
+	 *                                    priority by one point, when aging.
+	 */
+	public void setSchedulingMode(ServiceSchedulingMode schedulingMode,
+		long agingIntervalInMilliseconds)
+	{
+		_schedulingMode = schedulingMode;
+		long agingInterval =
+			schedulingMode == ServiceSchedulingMode.PRIORITY_AGING
+				? agingIntervalInMilliseconds : 0;
+		_requestQueue.setAgingIntervalInMilliseconds(agingInterval);
+		_computeQueue.setAgingIntervalInMilliseconds(agingInterval);
+	}
+
+	/**
+	 * @param percentile percentile between 0 and 100.
+	 * @return how long recent requests of {@code priority} waited in the
+	 *         queue before starting, in milliseconds, or -1 if none have
+	 *         queued.  Requests that started on an idle worker immediately
+	 *         aren't counted.
+	 */
+	public double getQueueWaitPercentile(ServiceOperationPriority priority,
+		double percentile)
+	{
+		return _requestQueue.getWaitPercentile(priority.getIntValue(),
+			percentile);
+	}
+
+	/**
+	 * @param percentile percentile between 0 and 100.
+	 * @return how long recent response bodies of {@code priority} waited for
+	 *         a compute worker, in milliseconds, or -1 if none have queued.
+	 */
+	public double getComputeQueueWaitPercentile(
+		ServiceOperationPriority priority, double percentile)
+	{
+		return _computeQueue.getWaitPercentile(priority.getIntValue(),
+			percentile);
+	}
+
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter()
+	{
+		return _concurrencyLimiter;
+	}
+
+	/**
+	 * Lets {@code concurrencyLimiter} size the request pool from the latency
+	 * and failures of completed requests, instead of the fixed concurrency
+	 * given at construction.  Passing null restores the fixed sizes.
+	 */
+	public synchronized void setConcurrencyLimiter(
+		AdaptiveConcurrencyLimiter concurrencyLimiter)
+	{
+		AdaptiveConcurrencyLimiter previousLimiter = _concurrencyLimiter;
+		if (previousLimiter != null)
+		{
+			previousLimiter.setListener(null);
+		}
+
+		_concurrencyLimiter = concurrencyLimiter;
+		if (concurrencyLimiter == null)
+		{
+			_requestPool.setPoolSize(_corePoolSize, _maxPoolSize);
+			return;
+		}
+
+		// the queue is unbounded, so the core size is the concurrency
+		concurrencyLimiter.setListener(
+			limit -> _requestPool.setPoolSize(limit, limit));
+		int limit = concurrencyLimiter.getLimit();
+		_requestPool.setPoolSize(limit, limit);
+	}
+
+	/**
+	 * @return the limit on requests to {@code host}, or null if unlimited.
+	 */
+	public ServiceHostLimit getHostLimit(String host)
+	{
+		ServiceHostThrottle hostThrottle = _hostThrottles.get(getHostKey(host));
+		return hostThrottle == null ? null : hostThrottle.getLimit();
+	}
+
+	/**
+	 * Caps concurrency and request rate to {@code host}.  Requests over the
+	 * limit wait in a per-host queue rather than on a worker thread.  Passing
+	 * a null limit removes it.
+	 */
+	public void setHostLimit(String host, ServiceHostLimit limit)
+	{
+		String hostKey = getHostKey(host);
+		ServiceHostThrottle hostThrottle;
+		if (limit == null)
+		{
+			hostThrottle = _hostThrottles.remove(hostKey);
+			if (hostThrottle != null)
+			{
+				dispatchAdmitted(hostThrottle, hostThrottle.setLimit(
+					new ServiceHostLimit(ServiceHostLimit.UNLIMITED)));
+			}
+			return;
+		}
+
+		hostThrottle = _hostThrottles.get(hostKey);
+		if (hostThrottle == null)
+		{
+			ServiceHostThrottle newHostThrottle = new ServiceHostThrottle(limit);
+			hostThrottle = _hostThrottles.putIfAbsent(hostKey, newHostThrottle);
+			if (hostThrottle == null)
+			{
+				return;
+			}
+		}
+		dispatchAdmitted(hostThrottle, hostThrottle.setLimit(limit));
+		scheduleHostWake(hostThrottle);
+	}
+
+	/**
+	 * @return number of requests to {@code host} parked waiting for capacity.
+	 */
+	public int getParkedRequestCount(String host)
+	{
+		ServiceHostThrottle hostThrottle = _hostThrottles.get(getHostKey(host));
+		return hostThrottle == null ? 0 : hostThrottle.getParkedCount();
+	}
+
+	public boolean isNetworkConnected()
+	{
+		return _networkGate.isConnected();
+	}
+
+	public boolean isNetworkConstrained()
+	{
+		return _networkGate.isConstrained();
+	}
+
+	/**
+	 * Sets the network conditions requests are dispatched under.  While
+	 * disconnected, requests wait without holding a worker thread instead of
+	 * failing and using up their retries; on a constrained (slow or metered)
+	 * link, {@link ServiceOperationPriority#LOW} and
+	 * {@link ServiceOperationPriority#VERY_LOW} requests wait too.  Waiting
+	 * requests start as soon as conditions allow, and fresh cached responses
+	 * are served regardless.
+	 */
+	public void setNetworkConditions(boolean connected, boolean constrained)
+	{
+		for (ServiceOperation<?, ?> serviceOperation
+			: _networkGate.setConditions(connected, connected && constrained))
+		{
+			enqueue(serviceOperation);
+		}
+	}
+
+	/**
+	 * @return number of requests parked waiting for better network
+	 *         conditions.
+	 */
+	public int getNetworkParkedRequestCount()
+	{
+		return _networkGate.getParkedCount();
+	}
+
+	/**
+	 * Keeps the network conditions up to date as
+	 * {@code connectivityListener} reports changes: disconnected while it
+	 * reports {@link NetworkConnectivityListener.State#NOT_CONNECTED}, and
+	 * constrained while the active network isn't
+	 * {@link ConnectivityHelper#isConnectedFast(Context) fast} or is
+	 * {@link ConnectivityHelper#isConnectedMetered(Context) metered}.
+	 * Passing null stops following the listener, leaving the last conditions
+	 * in place.
+	 */
+	public synchronized void setConnectivityListener(Context context,
+		final NetworkConnectivityListener connectivityListener)
+	{
+		if (_connectivityListener != null)
+		{
+			_connectivityListener.unregisterHandler(_connectivityHandler);
+			_connectivityListener = null;
+			_connectivityHandler = null;
+		}
+		if (connectivityListener == null)
+		{
+			return;
+		}
+
+		final Context applicationContext = context.getApplicationContext();
+		_connectivityHandler = new Handler(Looper.getMainLooper(), message -> {
+			updateNetworkConditions(applicationContext, connectivityListener);
+			return true;
+		});
+		_connectivityListener = connectivityListener;
+		connectivityListener.registerHandler(_connectivityHandler,
+			CONNECTIVITY_CHANGED);
+		updateNetworkConditions(applicationContext, connectivityListener);
+	}
+
 	public long getRequestTimeoutInMilliseconds()
 	{
 		return _requestTimeoutInMilliseconds;
@@ -67,31 +412,246 @@ public class ServiceClient
 		this._requestTimeoutInMilliseconds = requestTimeoutInMilliseconds;
 	}
 
-	// [endregion]
+	public int getConnectTimeoutInMilliseconds()
+	{
+		return _connectTimeoutInMilliseconds;
+	}
 
-	// [region] constructors
+	/**
+	 * @param connectTimeoutInMilliseconds time allowed to establish each
+	 *                                     connection, or 0 to use the request
+	 *                                     timeout.
+	 */
+	public void setConnectTimeoutInMilliseconds(int connectTimeoutInMilliseconds)
+	{
+		_connectTimeoutInMilliseconds = connectTimeoutInMilliseconds;
+	}
 
-	static
+	public int getReadTimeoutInMilliseconds()
 	{
-		_operationTaskComparator = (lhs, rhs) -> {
-            int result =
-                rhs.priority.getIntValue() - lhs.priority.getIntValue();
-            if (result == 0)
-            {
-                if (lhs.timestamp < rhs.timestamp)
-                {
-                    return -1;
-                }
-                else if (lhs.timestamp > rhs.timestamp)
-                {
-                    return 1;
-                }
-                return 0;
-            }
-            return result;
-        };
+		return _readTimeoutInMilliseconds;
 	}
 
+	/**
+	 * @param readTimeoutInMilliseconds time allowed for each read of a
+	 *                                  response to make progress, or 0 to use
+	 *                                  the request timeout.
+	 */
+	public void setReadTimeoutInMilliseconds(int readTimeoutInMilliseconds)
+	{
+		_readTimeoutInMilliseconds = readTimeoutInMilliseconds;
+	}
+
+	public int getWriteTimeoutInMilliseconds()
+	{
+		return _writeTimeoutInMilliseconds;
+	}
+
+	/**
+	 * @param writeTimeoutInMilliseconds time allowed for each write of a
+	 *                                   request body to make progress, or 0 to
+	 *                                   use the request timeout.
+	 */
+	public void setWriteTimeoutInMilliseconds(int writeTimeoutInMilliseconds)
+	{
+		_writeTimeoutInMilliseconds = writeTimeoutInMilliseconds;
+	}
+
+	public long getDeadlineInMilliseconds()
+	{
+		return _deadlineInMilliseconds;
+	}
+
+	/**
+	 * Sets the default end-to-end deadline of requests, covering queueing,
+	 * retries and reading the body; see
+	 * {@link ServiceRequestOptions#setDeadlineInMilliseconds(long)}.
+	 *
+	 * @param deadlineInMilliseconds the time allowed, or 0 for no deadline.
+	 */
+	public void setDeadlineInMilliseconds(long deadlineInMilliseconds)
+	{
+		_deadlineInMilliseconds = deadlineInMilliseconds;
+	}
+
+	public ServiceTransport getTransport()
+	{
+		return _transport;
+	}
+
+	/**
+	 * Replaces the transport used to open connections.  Operations already
+	 * running keep the transport they started with.
+	 */
+	public void setTransport(ServiceTransport transport)
+	{
+		if (transport == null)
+		{
+			throw new IllegalArgumentException("transport cannot be null.");
+		}
+		_transport = transport;
+	}
+
+	public AsyncServiceTransport getAsyncTransport()
+	{
+		return _asyncTransport;
+	}
+
+	/**
+	 * Sends requests the async transport supports through it, so they don't
+	 * hold a pool thread while waiting on the network; e.g. a
+	 * {@link NioServiceTransport} drives many long-polls from a couple of
+	 * selector threads.  Requests with a streaming response format or a
+	 * large streamed body still use the blocking {@link ServiceTransport}.
+	 *
+	 * @param asyncTransport the async transport, or null to send every
+	 *                       request through the blocking transport.
+	 */
+	public void setAsyncTransport(AsyncServiceTransport asyncTransport)
+	{
+		_asyncTransport = asyncTransport;
+	}
+
+	public RetryPolicy getRetryPolicy()
+	{
+		return _retryPolicy;
+	}
+
+	/**
+	 * Sets the policy deciding when failed operations are retried.  When null
+	 * (the default), {@link #serviceOperationShouldRetry} decides and retries
+	 * are re-enqueued immediately.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy)
+	{
+		_retryPolicy = retryPolicy;
+	}
+
+	public boolean isRequestCoalescingEnabled()
+	{
+		return _requestCoalescingEnabled;
+	}
+
+	/**
+	 * Enables single-flight coalescing: a GET issued while an identical GET is
+	 * queued or in flight attaches to it instead of hitting the backend again,
+	 * and every caller parses the one response body and runs it through its
+	 * own transform and completion, so transforms never see each other's
+	 * response objects.  Requests are identical when their method,
+	 * URI, query parameters, response format instance, cache flag and
+	 * coalescing headers match.  Streaming formats are never coalesced.
+	 */
+	public void setRequestCoalescingEnabled(boolean requestCoalescingEnabled)
+	{
+		_requestCoalescingEnabled = requestCoalescingEnabled;
+	}
+
+	public Set<String> getCoalescingHeaderNames()
+	{
+		return _coalescingHeaderNames;
+	}
+
+	/**
+	 * Sets the request headers (matched case-insensitively) whose values must
+	 * also match for requests to be coalesced.  Defaults to
+	 * {@code Authorization}, {@code Accept} and {@code Accept-Language}.
+	 */
+	public void setCoalescingHeaderNames(Collection<String> headerNames)
+	{
+		TreeSet<String> coalescingHeaderNames =
+			new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		coalescingHeaderNames.addAll(headerNames);
+		_coalescingHeaderNames =
+			Collections.unmodifiableSet(coalescingHeaderNames);
+	}
+
+	public Executor getCompletionExecutor()
+	{
+		return _completionExecutor;
+	}
+
+	/**
+	 * Sets where completions are delivered unless a request specifies its
+	 * own: {@link MainThreadExecutor} (the default),
+	 * {@link FrameBatchingExecutor} to deliver bursts of completions once per
+	 * frame, {@link DirectExecutor} to deliver on the worker thread, or any
+	 * other executor.
+	 */
+	public void setCompletionExecutor(Executor completionExecutor)
+	{
+		if (completionExecutor == null)
+		{
+			throw new IllegalArgumentException(
+				"completionExecutor can't be null.");
+		}
+		_completionExecutor = completionExecutor;
+	}
+
+	/**
+	 * @return the pool of buffers responses of unknown length are read
+	 *         through; its hit and miss counts show how well it is sized.
+	 */
+	public ByteArrayPool getBufferPool()
+	{
+		return _bufferPool;
+	}
+
+	public void setBufferPool(ByteArrayPool bufferPool)
+	{
+		if (bufferPool == null)
+		{
+			throw new IllegalArgumentException("bufferPool can't be null.");
+		}
+		_bufferPool = bufferPool;
+	}
+
+	public ServiceEventListener getEventListener()
+	{
+		return _eventListener;
+	}
+
+	/**
+	 * Registers an observer of per-phase timing for every operation, or null
+	 * to remove it.  Without a listener no timestamps are taken.
+	 */
+	public void setEventListener(ServiceEventListener eventListener)
+	{
+		_eventListener = eventListener;
+	}
+
+	public boolean isResponseCompressionEnabled()
+	{
+		return _responseCompressionEnabled;
+	}
+
+	/**
+	 * When enabled (the default), requests that don't set their own
+	 * {@code Accept-Encoding} ask for gzip or deflate, and compressed bodies
+	 * are inflated as they stream into the response format.
+	 */
+	public void setResponseCompressionEnabled(
+		boolean responseCompressionEnabled)
+	{
+		_responseCompressionEnabled = responseCompressionEnabled;
+	}
+
+	public ServiceResponseCache getResponseCache()
+	{
+		return _responseCache;
+	}
+
+	/**
+	 * Installs an HTTP response cache consulted by GET requests made with
+	 * {@code useCaches} set, or removes it if null.
+	 */
+	public void setResponseCache(ServiceResponseCache responseCache)
+	{
+		_responseCache = responseCache;
+	}
+
+	// [endregion]
+
+	// [region] constructors
 
 	public ServiceClient()
 	{
@@ -110,14 +670,41 @@ public class ServiceClient
 	public ServiceClient(int maxConcurrentCount, int maxPoolSize,
 		long poolKeepAliveSeconds, int requestTimeoutInMilliseconds)
 	{
+		_requestQueue = new AgingPriorityBlockingQueue<>(
+			serviceOperation -> serviceOperation.priority.getIntValue());
 		_requestPool =
 				new PriorityThreadPoolExecutor<>(
 						maxConcurrentCount, maxPoolSize, poolKeepAliveSeconds,
-						TimeUnit.SECONDS,
-						new PriorityBlockingQueue<>(
-								ServiceClientConstants.DEFAULT_QUEUE_SIZE,
-								_operationTaskComparator));
+						TimeUnit.SECONDS, _requestQueue);
+		_computeQueue = new AgingPriorityBlockingQueue<>(
+			computeTask -> computeTask.serviceOperation.priority.getIntValue());
+		_computePoolSize = ServiceClientConstants.DEFAULT_COMPUTE_POOL_SIZE;
+		_computePool =
+				new PriorityThreadPoolExecutor<>(
+						_computePoolSize, _computePoolSize, poolKeepAliveSeconds,
+						TimeUnit.SECONDS, _computeQueue);
+		_schedulingMode = ServiceSchedulingMode.STRICT_PRIORITY;
+		_corePoolSize = maxConcurrentCount;
+		_maxPoolSize = maxPoolSize;
 		_requestTimeoutInMilliseconds = requestTimeoutInMilliseconds;
+		_scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "ServiceClient-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		_transport = new KeepAliveServiceTransport();
+		_responseCompressionEnabled = true;
+		_completionExecutor = MainThreadExecutor.getInstance();
+		_bufferPool = new ByteArrayPool(
+			ServiceClientConstants.DEFAULT_BUFFER_POOL_SIZE);
+		_coalescingOperations = new HashMap<>();
+		_hostThrottles = new ConcurrentHashMap<>();
+		_networkGate = new ServiceNetworkGate();
+		_activeOperations =
+			Collections.newSetFromMap(
+				new ConcurrentHashMap<ServiceOperation<?, ?>, Boolean>());
+		setCoalescingHeaderNames(Arrays.asList("Authorization", "Accept",
+			"Accept-Language"));
 	}
 
 	// [endregion]
@@ -212,17 +799,244 @@ public class ServiceClient
 		ServiceOperationPriority priority, 
 		boolean useCaches)
 	{
+		return this.beginRequest(uri, method, headers, queryParameters,
+			bodyDataProvider, responseFormat, responseTransform, completion,
+			priority, useCaches, null);
+	}
+
+	public <TResponse, TResult> ServiceOperation<TResponse, TResult> beginRequest(
+		String uri, 
+		ServiceMethod method, 
+		Map<String, String> headers,
+		Map<String, String> queryParameters,
+		BodyDataProvider bodyDataProvider,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform,
+		ServiceClientCompletion<TResult> completion,
+		ServiceOperationPriority priority, 
+		boolean useCaches,
+		ServiceRequestOptions options)
+	{
 
 		ServiceOperation<TResponse, TResult> serviceOperation =
 				new ServiceOperation<>(uri, method, headers,
 						queryParameters, bodyDataProvider, responseFormat,
 						responseTransform, completion, priority, useCaches,
-						this._requestTimeoutInMilliseconds, this, _sslContextFactory);
-		this._requestPool.execute(serviceOperation);
+						this._requestTimeoutInMilliseconds, this, _sslContextFactory,
+						options);
+		_activeOperations.add(serviceOperation);
+
+		// the deadline runs from now, so it covers time spent queued
+		long deadlineInMilliseconds =
+			serviceOperation.getDeadlineInMilliseconds();
+		if (deadlineInMilliseconds > 0)
+		{
+			serviceOperation.setDeadlineTimer(_scheduler.schedule(
+				serviceOperation::expireDeadline, deadlineInMilliseconds,
+				TimeUnit.MILLISECONDS));
+		}
+
+		// piggyback on an identical request that is already underway
+		if (_requestCoalescingEnabled && serviceOperation.isCoalescable())
+		{
+			Object coalescingKey = getCoalescingKey(serviceOperation,
+				responseFormat, useCaches);
+			synchronized (_coalescingOperations)
+			{
+				ServiceOperation<?, ?> leader =
+					_coalescingOperations.get(coalescingKey);
+				if (leader != null && leader.attachFollower(serviceOperation))
+				{
+					return serviceOperation;
+				}
+				_coalescingOperations.put(coalescingKey, serviceOperation);
+				serviceOperation.beginCoalescing(coalescingKey);
+			}
+		}
+
+		enqueue(serviceOperation);
 
 		return serviceOperation;
 	}
 
+	/**
+	 * Starts a request to a precompiled endpoint.
+	 *
+	 * @param parameterValues a value for each of the template's placeholders,
+	 *                        in the order of
+	 *                        {@link ServiceRequestTemplate#getParameterNames()}.
+	 */
+	public <TResponse, TResult> ServiceOperation<TResponse, TResult> beginRequest(
+		ServiceRequestTemplate template,
+		String[] parameterValues,
+		BodyDataProvider bodyDataProvider,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform,
+		ServiceClientCompletion<TResult> completion)
+	{
+		return this.beginRequest(template, parameterValues, null,
+			bodyDataProvider, responseFormat, responseTransform, completion,
+			ServiceOperationPriority.NORMAL, false, null);
+	}
+
+	/**
+	 * @param headers headers added to the template's own for this request
+	 *                only, or null.
+	 */
+	public <TResponse, TResult> ServiceOperation<TResponse, TResult> beginRequest(
+		ServiceRequestTemplate template,
+		String[] parameterValues,
+		Map<String, String> headers,
+		BodyDataProvider bodyDataProvider,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform,
+		ServiceClientCompletion<TResult> completion,
+		ServiceOperationPriority priority,
+		boolean useCaches,
+		ServiceRequestOptions options)
+	{
+		// the template's headers are shared as is unless some are added
+		Map<String, String> requestHeaders = template.getHeaders();
+		if (headers != null && !headers.isEmpty())
+		{
+			if (requestHeaders == null)
+			{
+				requestHeaders = headers;
+			}
+			else
+			{
+				requestHeaders = new HashMap<>(requestHeaders);
+				requestHeaders.putAll(headers);
+			}
+		}
+
+		return this.beginRequest(template.expand(parameterValues),
+			template.getMethod(), requestHeaders, null, bodyDataProvider,
+			responseFormat, responseTransform, completion, priority, useCaches,
+			options);
+	}
+
+	/**
+	 * Starts a set of requests together, with one completion raised once all
+	 * of them have their result.
+	 *
+	 * @param deadlineInMilliseconds time from now by which every request must
+	 *                               finish; those still outstanding are
+	 *                               cancelled. Zero for no deadline.
+	 */
+	public ServiceBatch beginBatch(List<ServiceBatchRequest<?, ?>> requests,
+		ServiceOperationPriority priority, long deadlineInMilliseconds,
+		ServiceBatchCompletion completion)
+	{
+		return beginBatch(requests, priority, deadlineInMilliseconds,
+			completion, null);
+	}
+
+	/**
+	 * @param options tags every request of the batch and sets its timeouts,
+	 *                and sets where the batch completion is delivered.  The
+	 *                deadline of each request is the batch deadline if there
+	 *                is one.
+	 */
+	public ServiceBatch beginBatch(List<ServiceBatchRequest<?, ?>> requests,
+		ServiceOperationPriority priority, long deadlineInMilliseconds,
+		ServiceBatchCompletion completion, ServiceRequestOptions options)
+	{
+		if (deadlineInMilliseconds < 0)
+		{
+			throw new IllegalArgumentException(
+				"deadlineInMilliseconds can't be negative.");
+		}
+
+		Executor completionExecutor = options != null
+			&& options.getCompletionExecutor() != null
+			? options.getCompletionExecutor() : _completionExecutor;
+		final ServiceBatch batch = new ServiceBatch(requests.size(),
+			completion, completionExecutor);
+		if (requests.isEmpty())
+		{
+			batch.operationsStarted(null);
+			return batch;
+		}
+
+		// item results go straight to the batch, which delivers them together;
+		// the batch deadline also bounds each exchange and its retries
+		ServiceRequestOptions itemOptions = new ServiceRequestOptions();
+		itemOptions.setCompletionExecutor(DirectExecutor.getInstance());
+		itemOptions.setDeadlineInMilliseconds(deadlineInMilliseconds);
+		if (options != null)
+		{
+			itemOptions.setTag(options.getTag());
+			if (deadlineInMilliseconds == 0)
+			{
+				itemOptions.setDeadlineInMilliseconds(
+					options.getDeadlineInMilliseconds());
+			}
+			itemOptions.setConnectTimeoutInMilliseconds(
+				options.getConnectTimeoutInMilliseconds());
+			itemOptions.setReadTimeoutInMilliseconds(
+				options.getReadTimeoutInMilliseconds());
+			itemOptions.setWriteTimeoutInMilliseconds(
+				options.getWriteTimeoutInMilliseconds());
+		}
+		for (int i = 0; i < requests.size(); ++i)
+		{
+			final int index = i;
+			batch.addOperation(beginBatchRequest(requests.get(i), priority,
+				itemOptions,
+				resultContainer -> batch.operationCompleted(index,
+					resultContainer)));
+		}
+
+		batch.operationsStarted(deadlineInMilliseconds == 0 ? null
+			: _scheduler.schedule(batch::expire, deadlineInMilliseconds,
+				TimeUnit.MILLISECONDS));
+		return batch;
+	}
+
+	/**
+	 * Cancels every outstanding request whose options carried {@code tag},
+	 * e.g. all requests started by a screen that is going away.
+	 *
+	 * @return number of requests cancelled.
+	 */
+	public int cancelRequests(Object tag)
+	{
+		if (tag == null)
+		{
+			return 0;
+		}
+
+		int cancelledCount = 0;
+		for (ServiceOperation<?, ?> serviceOperation : _activeOperations)
+		{
+			if (tag.equals(serviceOperation.getTag())
+				&& serviceOperation.cancel())
+			{
+				++cancelledCount;
+			}
+		}
+		return cancelledCount;
+	}
+
+	/**
+	 * Cancels every outstanding request.
+	 *
+	 * @return number of requests cancelled.
+	 */
+	public int cancelAllRequests()
+	{
+		int cancelledCount = 0;
+		for (ServiceOperation<?, ?> serviceOperation : _activeOperations)
+		{
+			if (serviceOperation.cancel())
+			{
+				++cancelledCount;
+			}
+		}
+		return cancelledCount;
+	}
+
 	
 	
 	
@@ -259,6 +1073,10 @@ public class ServiceClient
 					case XML:
 						data = deserializeXml(responseData);
 						break;
+
+					case INDEXED_JSON:
+						data = deserializeIndexedJson(responseData);
+						break;
 	
 					default:
 						throw new UnsupportedOperationException(
@@ -295,8 +1113,64 @@ public class ServiceClient
 		TResponse result = (TResponse) data;
 		return result;
 	}
-	
+
+	public <TResponse> TResponse transformStreamIntoResponseFormat (ServiceOperation<TResponse, ?> serviceOperation,
+			InputStream responseStream,
+			ServiceResponseFormat<TResponse> format) throws IOException
+	{
+		// bind the response directly from the connection stream
+		Object data = null;
+		switch (format.type)
+		{
+			case STREAM:
+				data = responseStream;
+				break;
+
+			case GSON_TYPED:
+			{
+				@SuppressWarnings("unchecked")
+				ServiceResponseFormat.TypedGsonFormat<TResponse> typedGsonFormat =
+					(ServiceResponseFormat.TypedGsonFormat<TResponse>) format;
+				data = deserializeTypedGson(responseStream, typedGsonFormat);
+				break;
+			}
+
+			case XML_PULL:
+			{
+				@SuppressWarnings("unchecked")
+				ServiceResponseFormat.XmlPullFormat<TResponse> xmlPullFormat =
+					(ServiceResponseFormat.XmlPullFormat<TResponse>) format;
+				data = deserializeXmlPull(responseStream, xmlPullFormat);
+				break;
+			}
+
+			default:
+				throw new UnsupportedOperationException(
+					"Unexpected streaming response format: " + format);
+		}
+
+		@SuppressWarnings("unchecked")
+		TResponse result = (TResponse) data;
+		return result;
+	}
+
 	private static final Document deserializeXml(byte[] responseData) throws ParserConfigurationException, SAXException, IOException
+	{
+		// reuse this thread's builder; reset() keeps the factory's features
+		DocumentBuilder documentBuilder = _documentBuilders.get();
+		if (documentBuilder == null)
+		{
+			documentBuilder = newDocumentBuilder();
+			_documentBuilders.set(documentBuilder);
+		}
+		else
+		{
+			documentBuilder.reset();
+		}
+		return documentBuilder.parse(new ByteArrayInputStream(responseData));
+	}
+
+	private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException
 	{
 		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
 		try {
@@ -327,18 +1201,13 @@ public class ServiceClient
 			// of service attacks (such as billion laughs or decompression bombs via "jar:") are a risk."
 
 			// remaining parser logic
-            DocumentBuilder documentBuilder = dbf.newDocumentBuilder();
-            Document document = documentBuilder.parse(new ByteArrayInputStream(responseData));
-
-            return document;
+            return dbf.newDocumentBuilder();
 		}
-        catch (Exception e) {
+        catch (ParserConfigurationException e) {
             // This should catch a failed setFeature feature
             Log.e("ServiceClient", "error setting up parser: ", e);
             throw e;
         }
-
-
 	}
 
 	private static final Map<String, String> deserializeQueryString(byte[] responseData) throws UnsupportedEncodingException
@@ -369,11 +1238,467 @@ public class ServiceClient
 	private static final JsonElement deserializeGson(byte[] responseData) 
 		throws UnsupportedEncodingException
 	{
-		String json = new String(responseData, ServiceClientConstants.UTF8_ENCODING);
+		// parse straight from the bytes rather than through an interim String
+		Reader json = new InputStreamReader(
+			new ByteArrayInputStream(responseData),
+			ServiceClientConstants.UTF8_ENCODING);
 		JsonParser jsonParser = new JsonParser();
 		return jsonParser.parse(json);
 	}
 
+	private static final IndexedJson deserializeIndexedJson(byte[] responseData)
+	{
+		try
+		{
+			return IndexedJson.parse(responseData);
+		}
+		catch (JsonSyntaxException e)
+		{
+			Logger.e(ServiceClient.class.getName(), "Error Parsing JSON", e);
+			return null;
+		}
+	}
+
+	private static final Object deserializeTypedGson(InputStream responseStream,
+		ServiceResponseFormat.TypedGsonFormat<?> format) throws IOException
+	{
+		JsonReader jsonReader = new JsonReader(new InputStreamReader(
+			responseStream, ServiceClientConstants.UTF8_ENCODING));
+		try
+		{
+			return format.gson.fromJson(jsonReader, format.modelType);
+		}
+		catch (JsonIOException e)
+		{
+			// surface read failures (and cancellation) as I/O errors
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException)e.getCause();
+			}
+			throw new IOException(e);
+		}
+		catch (JsonSyntaxException e)
+		{
+			// Gson reports a failed read from the reader as a syntax error
+			if (e.getCause() instanceof IOException)
+			{
+				throw (IOException)e.getCause();
+			}
+			Logger.e(ServiceClient.class.getName(), "Error Parsing JSON", e);
+			return null;
+		}
+	}
+
+	private static final Object deserializeXmlPull(InputStream responseStream,
+		ServiceResponseFormat.XmlPullFormat<?> format) throws IOException
+	{
+		// borrow this thread's parser, so a parse nested in the binder gets
+		// a parser of its own
+		XmlPullParser parser = _xmlPullParsers.get();
+		_xmlPullParsers.set(null);
+		try
+		{
+			if (parser == null)
+			{
+				parser = Xml.newPullParser();
+				parser.setFeature(XmlPullParser.FEATURE_PROCESS_DOCDECL, false);
+			}
+			parser.setInput(responseStream, null);
+
+			// same protection as the DOM format: refuse any DOCTYPE, so no
+			// entity is ever declared, then start the binder at the root
+			int eventType = parser.getEventType();
+			while (eventType != XmlPullParser.START_TAG)
+			{
+				if (eventType == XmlPullParser.DOCDECL)
+				{
+					throw new XmlPullParserException(
+						"DOCTYPE declarations are not allowed.");
+				}
+				if (eventType == XmlPullParser.END_DOCUMENT)
+				{
+					throw new XmlPullParserException("No root element.");
+				}
+				eventType = parser.nextToken();
+			}
+			return format.binder.bind(parser);
+		}
+		catch (XmlPullParserException e)
+		{
+			Logger.e(ServiceClient.class.getName(), "Error Parsing XML", e);
+			return null;
+		}
+		finally
+		{
+			_xmlPullParsers.set(parser);
+		}
+	}
+
+	// [endregion]
+
+	// [region] internal methods
+
+	/**
+	 * @return delay before retrying a failed attempt, or -1 to fail the
+	 *         operation.
+	 */
+	long getRetryDelay(ServiceOperation<?, ?> serviceOperation,
+		int responseCode, Exception error, int retryCount,
+		ServiceResponseHeaders responseHeaders)
+	{
+		// a one-shot body stream has already been used up
+		if (!serviceOperation.canResendRequestBody())
+		{
+			return -1;
+		}
+
+		long retryDelay;
+		RetryPolicy retryPolicy = _retryPolicy;
+		if (retryPolicy != null)
+		{
+			retryDelay = retryPolicy.getRetryDelay(serviceOperation,
+				responseCode, error, retryCount, responseHeaders);
+		}
+		else
+		{
+			retryDelay = serviceOperationShouldRetry(serviceOperation,
+				responseCode, retryCount) ? 0 : -1;
+		}
+
+		// don't start an attempt the deadline would cut off at once
+		if (retryDelay >= serviceOperation.getRemainingTimeInMilliseconds())
+		{
+			return -1;
+		}
+		return retryDelay;
+	}
+
+	/**
+	 * Watches a request body being written, and aborts the exchange once a
+	 * single write has been stuck for longer than the write timeout, since
+	 * the platform connection has no write timeout of its own.
+	 *
+	 * @return the watchdog, to cancel once the body has been written.
+	 */
+	ScheduledFuture<?> watchRequestBody(final ServiceRequestOutputStream out,
+		final HttpURLConnection connection, int writeTimeoutInMilliseconds)
+	{
+		final long writeTimeoutInNanos =
+			TimeUnit.MILLISECONDS.toNanos(writeTimeoutInMilliseconds);
+		long period = Math.max(writeTimeoutInMilliseconds / 4, 1);
+		return _scheduler.scheduleWithFixedDelay(() -> {
+			if (out.checkWriteTimeout(writeTimeoutInNanos))
+			{
+				connection.disconnect();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return a socket factory reporting TLS timing to {@code eventListener}.
+	 *         The wrapper around the platform default factory is reused, so
+	 *         pooled connections keep matching.
+	 */
+	SSLSocketFactory getTimingSocketFactory(SSLSocketFactory socketFactory,
+		ServiceEventListener eventListener)
+	{
+		if (socketFactory != HttpsURLConnection.getDefaultSSLSocketFactory())
+		{
+			return new TimingSSLSocketFactory(socketFactory, eventListener);
+		}
+
+		TimingSSLSocketFactory timingSocketFactory = _timingSocketFactory;
+		if (timingSocketFactory == null
+			|| timingSocketFactory.getDelegate() != socketFactory
+			|| timingSocketFactory.getEventListener() != eventListener)
+		{
+			timingSocketFactory =
+				new TimingSSLSocketFactory(socketFactory, eventListener);
+			_timingSocketFactory = timingSocketFactory;
+		}
+		return timingSocketFactory;
+	}
+
+	/**
+	 * Admits an operation to its host, or parks it until the host has
+	 * capacity, at which point it is put back on the request pool.
+	 *
+	 * @return false if the operation was parked and must give up its thread.
+	 */
+	boolean admitToHost(ServiceOperation<?, ?> serviceOperation, URL url)
+	{
+		// admitted when it was taken off the parked queue
+		if (serviceOperation.getHostThrottle() != null)
+		{
+			return true;
+		}
+
+		ServiceHostThrottle hostThrottle =
+			_hostThrottles.get(getHostKey(url.getHost()));
+		if (hostThrottle == null)
+		{
+			return true;
+		}
+		if (hostThrottle.admitOrPark(serviceOperation))
+		{
+			serviceOperation.setHostThrottle(hostThrottle);
+			return true;
+		}
+		scheduleHostWake(hostThrottle);
+		return false;
+	}
+
+	/**
+	 * Admits an operation to the network, or parks it until network
+	 * conditions suit it, at which point it is put back on the request pool.
+	 *
+	 * @return false if the operation was parked and must give up its thread.
+	 */
+	boolean admitToNetwork(ServiceOperation<?, ?> serviceOperation)
+	{
+		// decided under the gate's lock, so conditions can't change between
+		// the check and parking
+		synchronized (_networkGate)
+		{
+			if (_networkGate.canAdmit(serviceOperation))
+			{
+				return true;
+			}
+
+			// don't hold a host slot while waiting on the network
+			releaseHost(serviceOperation);
+			_networkGate.park(serviceOperation);
+			return false;
+		}
+	}
+
+	void releaseHost(ServiceOperation<?, ?> serviceOperation)
+	{
+		ServiceHostThrottle hostThrottle = serviceOperation.getHostThrottle();
+		if (hostThrottle == null)
+		{
+			return;
+		}
+		serviceOperation.setHostThrottle(null);
+		dispatchAdmitted(hostThrottle, hostThrottle.release());
+		scheduleHostWake(hostThrottle);
+	}
+
+	/**
+	 * Reports the round trip of one request/response exchange to the
+	 * concurrency limiter.
+	 *
+	 * @param responseCode HTTP status, or -1 if no response arrived.
+	 */
+	void serviceOperationDidExchange(ServiceOperation<?, ?> serviceOperation,
+		long durationInNanos, int responseCode)
+	{
+		AdaptiveConcurrencyLimiter concurrencyLimiter = _concurrencyLimiter;
+		if (concurrencyLimiter == null)
+		{
+			return;
+		}
+
+		boolean overloaded = responseCode == -1 || responseCode == 429
+			|| responseCode >= 500;
+		concurrencyLimiter.onSample(durationInNanos, TimeUnit.NANOSECONDS,
+			_requestPool.getActiveCount(), overloaded);
+	}
+
+	/**
+	 * Puts an operation back on the request pool once the delay has passed.
+	 */
+	void scheduleRetry(final ServiceOperation<?, ?> serviceOperation,
+		long delayInMilliseconds)
+	{
+		if (delayInMilliseconds <= 0)
+		{
+			enqueue(serviceOperation);
+			return;
+		}
+		serviceOperation.setScheduledRetry(_scheduler.schedule(
+			() -> enqueue(serviceOperation),
+			delayInMilliseconds, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Takes an operation that hasn't started yet off the request pool queue,
+	 * the parked queues, the compute queue or the retry scheduler.
+	 *
+	 * @return true if the operation was removed and will never run.
+	 */
+	boolean removeQueuedOperation(ServiceOperation<?, ?> serviceOperation)
+	{
+		if (_requestPool.remove(serviceOperation))
+		{
+			// give back a host slot it was admitted into while parked
+			releaseHost(serviceOperation);
+			return true;
+		}
+		if (_networkGate.removeParked(serviceOperation))
+		{
+			releaseHost(serviceOperation);
+			return true;
+		}
+		ServiceOperation.ComputeTask computeTask =
+			serviceOperation.getComputeTask();
+		if (computeTask != null && _computePool.remove(computeTask))
+		{
+			return true;
+		}
+		for (ServiceHostThrottle hostThrottle : _hostThrottles.values())
+		{
+			if (hostThrottle.removeParked(serviceOperation))
+			{
+				return true;
+			}
+		}
+
+		ScheduledFuture<?> scheduledRetry = serviceOperation.getScheduledRetry();
+		if (scheduledRetry != null && scheduledRetry.cancel(false))
+		{
+			_scheduler.purge();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Puts an operation whose async exchange has finished back on the request
+	 * pool to process the response.
+	 */
+	void resumeOperation(ServiceOperation<?, ?> serviceOperation)
+	{
+		enqueue(serviceOperation);
+	}
+
+	/**
+	 * Queues a response body read by a request worker for parsing and
+	 * transforming on the compute stage.
+	 */
+	void executeCompute(ServiceOperation.ComputeTask computeTask)
+	{
+		_computePool.execute(computeTask);
+	}
+
+	void serviceOperationDidComplete(ServiceOperation<?, ?> serviceOperation)
+	{
+		_activeOperations.remove(serviceOperation);
+	}
+
+	/**
+	 * Stops new requests from attaching to a coalescing operation that has
+	 * reached its outcome.
+	 *
+	 * @return the requests that attached to it, or null if there were none.
+	 */
+	List<ServiceOperation<?, ?>> endCoalescing(ServiceOperation<?, ?> leader,
+		Object coalescingKey)
+	{
+		synchronized (_coalescingOperations)
+		{
+			if (_coalescingOperations.get(coalescingKey) == leader)
+			{
+				_coalescingOperations.remove(coalescingKey);
+			}
+			return leader.closeFollowers();
+		}
+	}
+
+	private <TResponse, TResult> ServiceOperation<TResponse, TResult>
+		beginBatchRequest(ServiceBatchRequest<TResponse, TResult> request,
+			ServiceOperationPriority priority, ServiceRequestOptions options,
+			ServiceClientCompletion<TResult> completion)
+	{
+		return beginRequest(request.getUri(), request.getMethod(),
+			request.getHeaders(), request.getQueryParameters(),
+			request.getBodyDataProvider(), request.getResponseFormat(),
+			request.getResponseTransform(), completion, priority,
+			request.getUseCaches(), options);
+	}
+
+	private void enqueue(ServiceOperation<?, ?> serviceOperation)
+	{
+		ServiceEventListener eventListener = _eventListener;
+		if (eventListener != null)
+		{
+			eventListener.operationEnqueued(serviceOperation, System.nanoTime());
+		}
+		_requestPool.execute(serviceOperation);
+	}
+
+	private void dispatchAdmitted(ServiceHostThrottle hostThrottle,
+		List<ServiceOperation<?, ?>> serviceOperations)
+	{
+		for (ServiceOperation<?, ?> serviceOperation : serviceOperations)
+		{
+			serviceOperation.setHostThrottle(hostThrottle);
+			enqueue(serviceOperation);
+		}
+	}
+
+	/**
+	 * Wakes operations parked on a host's rate limit once a token refills.
+	 */
+	private void scheduleHostWake(final ServiceHostThrottle hostThrottle)
+	{
+		long delayInNanos = hostThrottle.scheduleWake();
+		if (delayInNanos < 0)
+		{
+			return;
+		}
+		_scheduler.schedule(() -> {
+			dispatchAdmitted(hostThrottle, hostThrottle.wake());
+			scheduleHostWake(hostThrottle);
+		}, delayInNanos, TimeUnit.NANOSECONDS);
+	}
+
+	private void updateNetworkConditions(Context context,
+		NetworkConnectivityListener connectivityListener)
+	{
+		// an unknown state isn't a reason to hold requests back
+		boolean connected = connectivityListener.getState()
+			!= NetworkConnectivityListener.State.NOT_CONNECTED;
+		setNetworkConditions(connected, connected
+			&& (!ConnectivityHelper.isConnectedFast(context)
+				|| ConnectivityHelper.isConnectedMetered(context)));
+	}
+
+	private static String getHostKey(String host)
+	{
+		return host.toLowerCase(Locale.US);
+	}
+
+	private Object getCoalescingKey(ServiceOperation<?, ?> serviceOperation,
+		ServiceResponseFormat<?> responseFormat, boolean useCaches)
+	{
+		TreeMap<String, String> queryParameters = new TreeMap<>();
+		if (serviceOperation.queryParameters != null)
+		{
+			queryParameters.putAll(serviceOperation.queryParameters);
+		}
+
+		TreeMap<String, String> headers =
+			new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		if (serviceOperation.headers != null)
+		{
+			Set<String> coalescingHeaderNames = _coalescingHeaderNames;
+			for (Map.Entry<String, String> header
+				: serviceOperation.headers.entrySet())
+			{
+				if (coalescingHeaderNames.contains(header.getKey()))
+				{
+					headers.put(header.getKey(), header.getValue());
+				}
+			}
+		}
+
+		// formats compare by identity, so only requests sharing a format
+		// instance coalesce
+		return Arrays.asList(serviceOperation.method, serviceOperation.uri,
+			queryParameters, headers, responseFormat, useCaches);
+	}
+
 	// [endregion]
 
 	// [region] protected methods
@@ -6,9 +6,18 @@ public class ServiceClientConstants {
 	public static final int MAX_ACTIVE_REQUESTS = 1;
 	public static final int MAX_POOL_SIZE = MAX_ACTIVE_REQUESTS;
 	public static final int POOL_KEEP_ALIVE_SECONDS = 30;
+	public static final int DEFAULT_COMPUTE_POOL_SIZE = 2;
 	public static final int DEFAULT_QUEUE_SIZE = 16;
+	public static final long DEFAULT_PRIORITY_AGING_INTERVAL = 250;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+	public static final long DEFAULT_CONNECTION_IDLE_TIMEOUT = 5 * 60 * 1000;
+	public static final long DEFAULT_BUFFER_POOL_SIZE = 1024 * 1024;
+	public static final int DEFAULT_OUTBOX_BATCH_SIZE = 10;
 	public static final String UTF8_ENCODING = "UTF-8";
+	public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 	
+	public static final int SERVICE_RESPONSE_STATUS_CODE_ARCHIVE_FAILED = -600;
+	public static final int SERVICE_RESPONSE_STATUS_CODE_DEADLINE_EXCEEDED = -500;
 	public static final int SERVICE_RESPONSE_STATUS_CODE_ALERT_MESSAGE = -400;
 	public static final int SERVICE_RESPONSE_STATUS_CODE_CANCELLED = -300;
 	public static final int SERVICE_RESPONSE_STATUS_CODE_BAD_DATA = -200;
@@ -0,0 +1,165 @@
+package com.nascentdigital.communication;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+
+/**
+ * Decodes {@code gzip} and {@code deflate} response bodies as they are read,
+ * so response formats consume the inflated bytes without the compressed body
+ * ever being buffered.
+ */
+final class ServiceContentDecoder
+{
+	// [region] constants
+
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+
+	private static final int DRAIN_BUFFER_SIZE = 512;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	private ServiceContentDecoder()
+	{
+	}
+
+	// [endregion]
+
+
+	// [region] methods
+
+	/**
+	 * @return a stream of the decoded body, or {@code in} itself if the
+	 *         encoding is absent or not one we decode.
+	 */
+	static InputStream decode(InputStream in, String contentEncoding)
+		throws IOException
+	{
+		if (contentEncoding == null)
+		{
+			return in;
+		}
+
+		String encoding = contentEncoding.trim().toLowerCase(Locale.US);
+		if (encoding.equals("gzip") || encoding.equals("x-gzip"))
+		{
+			GZIPInputStream gzip;
+			try
+			{
+				gzip = new GZIPInputStream(in);
+			}
+			catch (EOFException e)
+			{
+				// an empty body carries no gzip header
+				return in;
+			}
+			return new DecodedInputStream(gzip, in, null);
+		}
+		if (encoding.equals("deflate"))
+		{
+			// servers disagree on whether deflate has a zlib header
+			BufferedInputStream buffered = new BufferedInputStream(in);
+			Inflater inflater = new Inflater(!hasZlibHeader(buffered));
+			return new DecodedInputStream(
+				new InflaterInputStream(buffered, inflater), buffered, inflater);
+		}
+		return in;
+	}
+
+	private static boolean hasZlibHeader(BufferedInputStream in)
+		throws IOException
+	{
+		in.mark(2);
+		int cmf = in.read();
+		int flg = in.read();
+		in.reset();
+		return cmf != -1 && flg != -1 && (cmf & 0x0F) == 8
+			&& ((cmf << 8) | flg) % 31 == 0;
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	/**
+	 * Reads the encoded stream through to its end once the decoded body is
+	 * exhausted.  Decoders stop at their trailer, but the response cache only
+	 * commits (and the connection is only reusable) at end of stream.
+	 */
+	private static final class DecodedInputStream extends FilterInputStream
+	{
+		private final InputStream _encoded;
+		private final Inflater _inflater;
+
+		DecodedInputStream(InputStream decoded, InputStream encoded,
+			Inflater inflater)
+		{
+			super(decoded);
+
+			_encoded = encoded;
+			_inflater = inflater;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int value = super.read();
+			if (value == -1)
+			{
+				drainEncoded();
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count)
+			throws IOException
+		{
+			int read = super.read(buffer, offset, count);
+			if (read == -1)
+			{
+				drainEncoded();
+			}
+			return read;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				super.close();
+			}
+			finally
+			{
+				if (_inflater != null)
+				{
+					_inflater.end();
+				}
+			}
+		}
+
+		private void drainEncoded() throws IOException
+		{
+			byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+			while (_encoded.read(buffer) != -1)
+			{
+			}
+		}
+
+	} // class DecodedInputStream
+
+	// [endregion]
+
+} // class ServiceContentDecoder
@@ -0,0 +1,135 @@
+package com.nascentdigital.communication;
+
+
+/**
+ * Observer of the phases a {@link ServiceOperation} goes through, registered
+ * with {@link ServiceClient#setEventListener(ServiceEventListener)}.
+ * <p>
+ * Every callback receives a {@link System#nanoTime()} timestamp, so the
+ * difference between two callbacks for the same operation is the time spent
+ * in that phase.  Callbacks are made synchronously on the thread doing the
+ * work (usually a request pool worker) and must return quickly.  Phases
+ * repeat for each retry, and phases that don't apply (e.g. connecting, for a
+ * response served from the cache) are skipped.
+ */
+public abstract class ServiceEventListener
+{
+	// [region] queue events
+
+	/**
+	 * The operation was put on the request pool queue, at first or for a
+	 * retry or after waiting for host capacity.
+	 */
+	public void operationEnqueued(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * A worker thread took the operation off the queue.
+	 */
+	public void operationDequeued(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	// [endregion]
+
+
+	// [region] network events
+
+	public void connectStart(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The TLS handshake began.  Only reported for HTTPS connections that
+	 * needed a new socket.
+	 */
+	public void secureConnectStart(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The TLS handshake finished.  Depending on the platform this may be
+	 * reported from another thread, shortly after {@link #connectEnd}.
+	 */
+	public void secureConnectEnd(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	public void connectEnd(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The request body was written.  Requests without a body report this
+	 * once connected, as their headers go out when the response is awaited.
+	 */
+	public void requestSent(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The response status line arrived.
+	 */
+	public void responseFirstByte(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The response body was read to the end.  For streaming formats the body
+	 * is read while it is parsed, so this coincides with
+	 * {@link #parseComplete}.
+	 */
+	public void responseBodyComplete(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	// [endregion]
+
+
+	// [region] processing events
+
+	/**
+	 * The response format finished turning the body into its response type.
+	 */
+	public void parseComplete(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * The response transform finished producing the result.
+	 */
+	public void transformComplete(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	/**
+	 * An attempt failed; the operation may still be retried.
+	 */
+	public void attemptFailed(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime, Exception error)
+	{
+	}
+
+	/**
+	 * The completion was handed to the completion executor.
+	 */
+	public void completionDispatched(ServiceOperation<?, ?> serviceOperation,
+		long nanoTime)
+	{
+	}
+
+	// [endregion]
+
+} // class ServiceEventListener
@@ -0,0 +1,88 @@
+package com.nascentdigital.communication;
+
+
+/**
+ * Caps on the requests a {@link ServiceClient} sends to one host, set with
+ * {@link ServiceClient#setHostLimit(String, ServiceHostLimit)}.
+ * <p>
+ * Requests beyond either cap are parked until the host has capacity again,
+ * without holding a worker thread, so a slow host can't starve requests to
+ * other hosts.
+ */
+public final class ServiceHostLimit
+{
+	// [region] constants
+
+	public static final int UNLIMITED = 0;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final int _maxConcurrentRequests;
+	private final double _requestsPerSecond;
+	private final int _burstSize;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	/**
+	 * @param maxConcurrentRequests requests allowed in flight at once, or
+	 *                              {@link #UNLIMITED}.
+	 */
+	public ServiceHostLimit(int maxConcurrentRequests)
+	{
+		this(maxConcurrentRequests, UNLIMITED, 1);
+	}
+
+	/**
+	 * @param maxConcurrentRequests requests allowed in flight at once, or
+	 *                              {@link #UNLIMITED}.
+	 * @param requestsPerSecond     sustained request rate (token bucket refill
+	 *                              rate), or {@link #UNLIMITED}.
+	 * @param burstSize             requests that may be sent back to back
+	 *                              after an idle period (token bucket size).
+	 */
+	public ServiceHostLimit(int maxConcurrentRequests, double requestsPerSecond,
+		int burstSize)
+	{
+		if (maxConcurrentRequests < 0 || requestsPerSecond < 0)
+		{
+			throw new IllegalArgumentException("Limits can't be negative.");
+		}
+		if (burstSize < 1)
+		{
+			throw new IllegalArgumentException("burstSize must be at least 1.");
+		}
+
+		_maxConcurrentRequests = maxConcurrentRequests;
+		_requestsPerSecond = requestsPerSecond;
+		_burstSize = burstSize;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public int getMaxConcurrentRequests()
+	{
+		return _maxConcurrentRequests;
+	}
+
+	public double getRequestsPerSecond()
+	{
+		return _requestsPerSecond;
+	}
+
+	public int getBurstSize()
+	{
+		return _burstSize;
+	}
+
+	// [endregion]
+
+} // class ServiceHostLimit
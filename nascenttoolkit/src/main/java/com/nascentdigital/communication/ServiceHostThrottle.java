@@ -0,0 +1,172 @@
+package com.nascentdigital.communication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Admission state for one host: the requests in flight, a token bucket and
+ * the requests parked waiting for either.
+ */
+final class ServiceHostThrottle
+{
+	// [region] instance variables
+
+	private final ArrayDeque<ServiceOperation<?, ?>> _parkedOperations;
+	private ServiceHostLimit _limit;
+	private int _inFlightCount;
+	private double _tokens;
+	private long _refilledAt;
+	private boolean _wakeScheduled;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	ServiceHostThrottle(ServiceHostLimit limit)
+	{
+		_parkedOperations = new ArrayDeque<>();
+		_limit = limit;
+		_tokens = limit.getBurstSize();
+		_refilledAt = System.nanoTime();
+	}
+
+	// [endregion]
+
+
+	// [region] methods
+
+	synchronized ServiceHostLimit getLimit()
+	{
+		return _limit;
+	}
+
+	/**
+	 * @return requests that can now be admitted under the new limit.
+	 */
+	synchronized List<ServiceOperation<?, ?>> setLimit(ServiceHostLimit limit)
+	{
+		_limit = limit;
+		_tokens = Math.min(_tokens, limit.getBurstSize());
+		return admitParked();
+	}
+
+	synchronized int getParkedCount()
+	{
+		return _parkedOperations.size();
+	}
+
+	/**
+	 * Admits the operation if the host has capacity, otherwise parks it.
+	 *
+	 * @return true if admitted.
+	 */
+	synchronized boolean admitOrPark(ServiceOperation<?, ?> serviceOperation)
+	{
+		if (_parkedOperations.isEmpty() && tryAdmit())
+		{
+			return true;
+		}
+		_parkedOperations.addLast(serviceOperation);
+		return false;
+	}
+
+	/**
+	 * @return parked requests admitted into the freed slot.
+	 */
+	synchronized List<ServiceOperation<?, ?>> release()
+	{
+		--_inFlightCount;
+		return admitParked();
+	}
+
+	synchronized boolean removeParked(ServiceOperation<?, ?> serviceOperation)
+	{
+		return _parkedOperations.remove(serviceOperation);
+	}
+
+	/**
+	 * Claims the single pending wake-up for requests parked on the rate limit.
+	 *
+	 * @return delay in nanoseconds until a token is available, or -1 if no
+	 *         wake-up is needed or one is already scheduled.
+	 */
+	synchronized long scheduleWake()
+	{
+		if (_wakeScheduled || _parkedOperations.isEmpty()
+			|| _limit.getRequestsPerSecond() == ServiceHostLimit.UNLIMITED
+			|| !hasConcurrency())
+		{
+			return -1;
+		}
+
+		_wakeScheduled = true;
+		refill();
+		double missingTokens = Math.max(0, 1 - _tokens);
+		return (long)Math.ceil(missingTokens / _limit.getRequestsPerSecond()
+			* 1000000000L);
+	}
+
+	/**
+	 * @return parked requests admitted now that tokens have refilled.
+	 */
+	synchronized List<ServiceOperation<?, ?>> wake()
+	{
+		_wakeScheduled = false;
+		return admitParked();
+	}
+
+	private List<ServiceOperation<?, ?>> admitParked()
+	{
+		List<ServiceOperation<?, ?>> admitted = null;
+		while (!_parkedOperations.isEmpty() && tryAdmit())
+		{
+			if (admitted == null)
+			{
+				admitted = new ArrayList<>();
+			}
+			admitted.add(_parkedOperations.pollFirst());
+		}
+		return admitted == null
+			? Collections.<ServiceOperation<?, ?>>emptyList() : admitted;
+	}
+
+	private boolean tryAdmit()
+	{
+		if (!hasConcurrency())
+		{
+			return false;
+		}
+		if (_limit.getRequestsPerSecond() != ServiceHostLimit.UNLIMITED)
+		{
+			refill();
+			if (_tokens < 1)
+			{
+				return false;
+			}
+			_tokens -= 1;
+		}
+		++_inFlightCount;
+		return true;
+	}
+
+	private boolean hasConcurrency()
+	{
+		return _limit.getMaxConcurrentRequests() == ServiceHostLimit.UNLIMITED
+			|| _inFlightCount < _limit.getMaxConcurrentRequests();
+	}
+
+	private void refill()
+	{
+		long now = System.nanoTime();
+		_tokens = Math.min(_limit.getBurstSize(), _tokens
+			+ (now - _refilledAt) / 1000000000.0 * _limit.getRequestsPerSecond());
+		_refilledAt = now;
+	}
+
+	// [endregion]
+
+} // class ServiceHostThrottle
@@ -0,0 +1,114 @@
+package com.nascentdigital.communication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Admission state for the network as a whole: the requests parked while
+ * there is no connectivity, or while the link is slow or metered and they
+ * can wait for a better one.
+ */
+final class ServiceNetworkGate
+{
+	// [region] instance variables
+
+	private final ArrayDeque<ServiceOperation<?, ?>> _parkedOperations;
+	private boolean _connected;
+	private boolean _constrained;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	ServiceNetworkGate()
+	{
+		_parkedOperations = new ArrayDeque<>();
+		_connected = true;
+	}
+
+	// [endregion]
+
+
+	// [region] methods
+
+	synchronized boolean isConnected()
+	{
+		return _connected;
+	}
+
+	synchronized boolean isConstrained()
+	{
+		return _constrained;
+	}
+
+	/**
+	 * @return parked requests that can now be admitted.
+	 */
+	synchronized List<ServiceOperation<?, ?>> setConditions(boolean connected,
+		boolean constrained)
+	{
+		_connected = connected;
+		_constrained = constrained;
+		return admitParked();
+	}
+
+	synchronized int getParkedCount()
+	{
+		return _parkedOperations.size();
+	}
+
+	/**
+	 * Parks an operation until the network suits it.  Callers hold the
+	 * gate's lock from {@link #canAdmit(ServiceOperation)} through to here,
+	 * so an operation is never parked on conditions that have since changed.
+	 */
+	synchronized void park(ServiceOperation<?, ?> serviceOperation)
+	{
+		_parkedOperations.addLast(serviceOperation);
+	}
+
+	synchronized boolean removeParked(ServiceOperation<?, ?> serviceOperation)
+	{
+		return _parkedOperations.remove(serviceOperation);
+	}
+
+	/**
+	 * Nothing goes out while disconnected; on a constrained link only
+	 * requests above {@link ServiceOperationPriority#LOW} do.
+	 */
+	synchronized boolean canAdmit(ServiceOperation<?, ?> serviceOperation)
+	{
+		return _connected && (!_constrained
+			|| serviceOperation.priority.getIntValue()
+				> ServiceOperationPriority.LOW.getIntValue());
+	}
+
+	private List<ServiceOperation<?, ?>> admitParked()
+	{
+		List<ServiceOperation<?, ?>> admitted = null;
+		Iterator<ServiceOperation<?, ?>> iterator = _parkedOperations.iterator();
+		while (iterator.hasNext())
+		{
+			ServiceOperation<?, ?> serviceOperation = iterator.next();
+			if (canAdmit(serviceOperation))
+			{
+				if (admitted == null)
+				{
+					admitted = new ArrayList<>();
+				}
+				admitted.add(serviceOperation);
+				iterator.remove();
+			}
+		}
+		return admitted == null
+			? Collections.<ServiceOperation<?, ?>>emptyList() : admitted;
+	}
+
+	// [endregion]
+
+} // class ServiceNetworkGate
@@ -1,32 +1,39 @@
 package com.nascentdigital.communication;
 
-import android.os.Handler;
-import android.os.Looper;
-
+import com.nascentdigital.util.ByteArrayPool;
 import com.nascentdigital.util.Logger;
 
-import org.apache.http.util.ByteArrayBuffer;
-
-import java.io.BufferedInputStream;
-import java.io.DataOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.HttpRetryException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 
-public final class ServiceOperation<TResponse, TResult> implements Runnable {
+public final class ServiceOperation<TResponse, TResult> implements Runnable,
+		Cancellable {
 	// [region] constants
 	private static final int HTTP_OK_STATUS_CODE = 200;
 	private static final int HTTP_MULTIPLE_CHOICES_CODE = 300;
-	private static final int RESPONSE_BUFFER_SIZE = 512;
+	private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_PRESIZED_BODY_SIZE = 16 * 1024 * 1024;
+	private static final int MAX_ASYNC_BODY_SIZE = 1024 * 1024;
 	// [endregion]
 
 	// [region] instance variables
@@ -46,10 +53,38 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 	private final ServiceClientCompletion<TResult> _completion;
 	private final boolean _useCaches;
 	private final ServiceClient _serviceClient;
-	private final int _requestTimeoutInMilliseconds;
+	private final int _connectTimeoutInMilliseconds;
+	private final int _readTimeoutInMilliseconds;
+	private final int _writeTimeoutInMilliseconds;
+	private final long _deadlineInMilliseconds;
+	private final long _deadlineAt;
+	private volatile boolean _deadlineExceeded;
+	private ScheduledFuture<?> _deadlineTimer;
+	private volatile HttpURLConnection _connection;
 	private Thread _currentThread;
 	private final SSLContextFactory _sslContextFactory;
-
+	private Object _coalescingKey;
+	private ArrayList<ServiceOperation<?, ?>> _followers;
+	private boolean _followersClosed;
+	private byte[] _responseBody;
+	private int _retryCount;
+	private final Object _tag;
+	private final Executor _completionExecutor;
+	private ServiceOperation<?, ?> _leader;
+	private ScheduledFuture<?> _scheduledRetry;
+	private volatile boolean _cancelled;
+	private volatile boolean _completed;
+	private volatile ServiceHostThrottle _hostThrottle;
+	private volatile long _requestBytesOnWire;
+	private volatile long _requestBytesDecoded;
+	private boolean _requestBodyWritten;
+	private boolean _responseTooLargeToBuffer;
+	private boolean _errorBodyDrained;
+	private volatile CountingInputStream _responseWireStream;
+	private volatile CountingInputStream _responseDecodedStream;
+	private ServiceEventListener _eventListener;
+	private PendingExchange _pendingExchange;
+	private ComputeTask _computeTask;
 
 	// [endregion]
 
@@ -64,6 +99,22 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 			ServiceOperationPriority priority, boolean useCaches,
 			int requestTimeoutInMilliseconds, ServiceClient serviceClient,
 							SSLContextFactory sslContextFactory) {
+		this(uri, method, headers, queryParameters, bodyDataProvider,
+				responseFormat, responseTransform, completion, priority,
+				useCaches, requestTimeoutInMilliseconds, serviceClient,
+				sslContextFactory, null);
+	}
+
+	public ServiceOperation(String uri, ServiceMethod method,
+			Map<String, String> headers, Map<String, String> queryParameters,
+			BodyDataProvider bodyDataProvider,
+			ServiceResponseFormat<TResponse> responseFormat,
+			ServiceResponseTransform<TResponse, TResult> responseTransform,
+			ServiceClientCompletion<TResult> completion,
+			ServiceOperationPriority priority, boolean useCaches,
+			int requestTimeoutInMilliseconds, ServiceClient serviceClient,
+			SSLContextFactory sslContextFactory,
+			ServiceRequestOptions options) {
 		this.priority = priority;
 		this.timestamp = (new Date().getTime());
 		this.uri = uri;
@@ -78,202 +129,818 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 		_completion = completion;
 		_useCaches = useCaches;
 		_serviceClient = serviceClient;
-		_requestTimeoutInMilliseconds = requestTimeoutInMilliseconds;
+		_tag = options == null ? null : options.getTag();
+		_completionExecutor = options == null ? null
+				: options.getCompletionExecutor();
+
+		// request options win over client defaults, which fall back to the
+		// request timeout
+		_connectTimeoutInMilliseconds = resolveTimeout(options == null ? 0
+				: options.getConnectTimeoutInMilliseconds(),
+				serviceClient.getConnectTimeoutInMilliseconds(),
+				requestTimeoutInMilliseconds);
+		_readTimeoutInMilliseconds = resolveTimeout(options == null ? 0
+				: options.getReadTimeoutInMilliseconds(),
+				serviceClient.getReadTimeoutInMilliseconds(),
+				requestTimeoutInMilliseconds);
+		_writeTimeoutInMilliseconds = resolveTimeout(options == null ? 0
+				: options.getWriteTimeoutInMilliseconds(),
+				serviceClient.getWriteTimeoutInMilliseconds(),
+				requestTimeoutInMilliseconds);
+		_deadlineInMilliseconds = options != null
+				&& options.getDeadlineInMilliseconds() > 0
+				? options.getDeadlineInMilliseconds()
+				: serviceClient.getDeadlineInMilliseconds();
+		_deadlineAt = _deadlineInMilliseconds > 0 ? System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(_deadlineInMilliseconds)
+				: Long.MAX_VALUE;
+
+		// the live stream is closed once the operation finishes, so it can't
+		// be handed out as a result
+		if (responseFormat == ServiceResponseFormat.STREAM
+				&& responseTransform == null) {
+			throw new IllegalArgumentException(
+					"The STREAM response format requires a response transform.");
+		}
 	}
 
 	// [endregion]
 
 	// [region] public methods
 
+	/**
+	 * @return the tag from the request options, used to cancel groups of
+	 *         requests with {@link ServiceClient#cancelRequests(Object)}.
+	 */
+	public Object getTag() {
+		return _tag;
+	}
+
 	@Override
-	public void run() {
-		_currentThread = Thread.currentThread();
-		boolean requestInProgress = true;
-		int retryCount = 0;
-		do {
-			boolean isConnected = false;
-			HttpURLConnection connection = null;
-			int responseCode = -1;
-			InputStream in = null;
-			DataOutputStream wr = null;
-			try {
-				// Check for cancellation
-				throwIfInterrupted();
+	public boolean isCancelled() {
+		return _cancelled;
+	}
 
-				// Add query string params to uri
-				String uriWithQueryParams = addQueryStringParametersToUri(
-						this.uri, this.queryParameters);
+	/**
+	 * @return the end-to-end deadline measured from when the request was
+	 *         started, or 0 if it has none.
+	 */
+	public long getDeadlineInMilliseconds() {
+		return _deadlineInMilliseconds;
+	}
 
-				URL url = new URL(uriWithQueryParams);
+	/**
+	 * @return true if the request was aborted because its deadline passed.
+	 */
+	public boolean isDeadlineExceeded() {
+		return _deadlineExceeded;
+	}
 
-				// Create and open request/connection
-				_serviceClient.serviceOperationDidBegin(this);
+	/**
+	 * @return true once the operation's completion has been raised.
+	 */
+	public boolean isDone() {
+		return _completed;
+	}
 
-				connection = (HttpURLConnection) url.openConnection();
+	/**
+	 * Cancels the request.  A request still waiting in the queue (or for a
+	 * retry) is removed without ever running; a running request is
+	 * interrupted.  Either way the completion is raised with
+	 * {@link ServiceResultStatus#CANCELLED}.
+	 *
+	 * @return false if the request had already completed or been cancelled.
+	 */
+	@Override
+	public boolean cancel() {
+		ServiceOperation<?, ?> leader;
+		synchronized (this) {
+			if (_completed || _cancelled) {
+				return false;
+			}
+			_cancelled = true;
+			leader = _leader;
+		}
 
-				if(_sslContextFactory != null && connection instanceof HttpsURLConnection) {
-					((HttpsURLConnection)connection).setHostnameVerifier(new HostNameVerifier());
-                    SSLContext sslContext = _sslContextFactory.makeContext(connection.getURL().getHost());
-                    ((HttpsURLConnection) connection).setSSLSocketFactory(sslContext.getSocketFactory());
+		// a coalesced request just stops waiting on its leader
+		if (leader != null) {
+			raiseCompletion(ServiceResultStatus.CANCELLED,
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED,
+					null);
+			leader.followerCancelled(this);
+			return true;
+		}
+
+		// keep the exchange going for requests coalesced onto this one
+		if (hasFollowers()) {
+			dispatchCompletion(ServiceResultStatus.CANCELLED,
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED,
+					null);
+			return true;
+		}
+
+		abandon();
+		return true;
+	}
+
+	/**
+	 * @return bytes of request body sent in the last attempt, after any
+	 *         compression.
+	 */
+	public long getRequestBytesOnWire() {
+		return _requestBytesOnWire;
+	}
+
+	/**
+	 * @return bytes of request body in the last attempt, before any
+	 *         compression.
+	 */
+	public long getRequestBytesDecoded() {
+		return _requestBytesDecoded;
+	}
+
+	/**
+	 * @return bytes of response body received over the network in the last
+	 *         attempt, before decompression (0 when served from the cache).
+	 */
+	public long getResponseBytesOnWire() {
+		CountingInputStream wireStream = _responseWireStream;
+		return wireStream == null ? 0 : wireStream.getCount();
+	}
+
+	/**
+	 * @return bytes of response body handed to the response format in the
+	 *         last attempt, after decompression.
+	 */
+	public long getResponseBytesDecoded() {
+		CountingInputStream decodedStream = _responseDecodedStream;
+		return decodedStream == null ? 0 : decodedStream.getCount();
+	}
+
+	/**
+	 * @return number of retries attempted so far.
+	 */
+	public int getRetryCount() {
+		return _retryCount;
+	}
+
+	@Override
+	public void run() {
+		synchronized (this) {
+			_currentThread = Thread.currentThread();
+			_scheduledRetry = null;
+		}
+		try {
+			PendingExchange pendingExchange = takeFinishedExchange();
+			if (pendingExchange != null) {
+				completeAsyncExchange(pendingExchange);
+			} else {
+				attempt();
+			}
+		} finally {
+			// don't leave a late cancellation on the pool thread (a parked
+			// operation may already be running again elsewhere)
+			synchronized (this) {
+				if (_currentThread == Thread.currentThread()) {
+					_currentThread = null;
 				}
+				Thread.interrupted();
+			}
+		}
+	}
 
-				connection.setRequestMethod(method.name());
+	private void attempt() {
+		ServiceEventListener eventListener = _serviceClient.getEventListener();
+		if (eventListener != null) {
+			eventListener.operationDequeued(this, System.nanoTime());
+		}
+		_eventListener = eventListener;
+		_responseHeaders = null;
+		_requestBytesOnWire = 0;
+		_requestBytesDecoded = 0;
+		_responseWireStream = null;
+		_responseDecodedStream = null;
+		ServiceTransport transport = _serviceClient.getTransport();
+		long retryDelay = -1;
+		long exchangeStartedAt = -1;
+		boolean hostAdmitted = false;
+		HttpURLConnection connection = null;
+		int responseCode = -1;
+		InputStream in = null;
+		OutputStream wr = null;
+		try {
+			// Check for cancellation
+			throwIfInterrupted();
 
-				// Set headers
-				if (this.headers != null) {
-					for (String field : this.headers.keySet()) {
-						connection.setRequestProperty(field,
-								this.headers.get(field));
+			// Add query string params to uri
+			String uriWithQueryParams = addQueryStringParametersToUri(
+					this.uri, this.queryParameters);
+
+			URL url = new URL(uriWithQueryParams);
+
+			// Create and open request/connection
+			_serviceClient.serviceOperationDidBegin(this);
+
+			// serve fresh responses straight from the cache
+			ServiceResponseCache responseCache = _serviceClient
+					.getResponseCache();
+			ServiceResponseCache.Entry cacheEntry = null;
+			if (responseCache != null && _useCaches
+					&& method == ServiceMethod.GET) {
+				cacheEntry = responseCache.get(uriWithQueryParams,
+						this.headers);
+				if (cacheEntry != null && cacheEntry.isFresh(this.headers,
+						System.currentTimeMillis())) {
+					in = responseCache.openBody(cacheEntry);
+					if (in != null) {
+						responseCache.recordHit();
+						responseCode = cacheEntry.responseCode;
+						_responseHeaders = new ServiceResponseHeaders(
+								cacheEntry.responseHeaders);
+						completeWithResponse(in, null, null, responseCode);
+						in = null;
+						return;
 					}
+
+					// evicted since the lookup, so fetch it again
+					cacheEntry = null;
+				}
+				if (cacheEntry != null && !cacheEntry.hasValidators()) {
+					cacheEntry = null;
 				}
+			}
 
-				connection.setReadTimeout(_requestTimeoutInMilliseconds);
-				connection.setConnectTimeout(_requestTimeoutInMilliseconds);
-				connection.setUseCaches(_useCaches);
-				connection.setDoInput(true);
+			// wait for a usable network without holding a thread
+			if (!_serviceClient.admitToNetwork(this)) {
+				return;
+			}
 
-				// create and send body data to request
-				byte[] bodyData = _bodyDataProvider == null ? null
-						: _bodyDataProvider.getBodyData();
+			// wait for capacity on a throttled host without holding a thread
+			if (!_serviceClient.admitToHost(this, url)) {
+				return;
+			}
+			hostAdmitted = true;
 
-				// check for cancellation
+			// let the async transport drive the exchange without this thread;
+			// the host slot is released once it finishes
+			AsyncServiceTransport asyncTransport =
+					_serviceClient.getAsyncTransport();
+			if (canExchangeAsync(asyncTransport, url)) {
 				throwIfInterrupted();
+				exchangeStartedAt = System.nanoTime();
+				beginAsyncExchange(asyncTransport, url, uriWithQueryParams,
+						cacheEntry, exchangeStartedAt);
+				hostAdmitted = false;
+				return;
+			}
+
+			connection = transport.openConnection(url);
+			_connection = connection;
+
+			if(_sslContextFactory != null && connection instanceof HttpsURLConnection) {
+				((HttpsURLConnection)connection).setHostnameVerifier(new HostNameVerifier());
+                    SSLContext sslContext = _sslContextFactory.makeContext(connection.getURL().getHost());
+                    ((HttpsURLConnection) connection).setSSLSocketFactory(sslContext.getSocketFactory());
+			}
+
+			// time TLS handshakes on sockets created by this thread
+			if (eventListener != null
+					&& connection instanceof HttpsURLConnection) {
+				HttpsURLConnection httpsConnection =
+						(HttpsURLConnection) connection;
+				httpsConnection.setSSLSocketFactory(_serviceClient
+						.getTimingSocketFactory(
+								httpsConnection.getSSLSocketFactory(),
+								eventListener));
+				TimingSSLSocketFactory.setCurrentOperation(this);
+			}
 
-				if (bodyData != null) {
-					connection.setRequestProperty("Content-Length", ""
-							+ bodyData.length);
-					connection.setDoOutput(true);
+			connection.setRequestMethod(method.name());
 
-					wr = new DataOutputStream(
-							connection.getOutputStream());
-					wr.write(bodyData);
-					wr.flush();
-					wr.close();
+			// Set headers
+			if (this.headers != null) {
+				for (Map.Entry<String, String> header
+						: this.headers.entrySet()) {
+					connection.setRequestProperty(header.getKey(),
+							header.getValue());
+				}
+			}
+
+			// ask for a compressed body and inflate it ourselves, so the
+			// format reads straight from the inflater and wire bytes are known
+			if (_serviceClient.isResponseCompressionEnabled()
+					&& connection.getRequestProperty("Accept-Encoding") == null) {
+				connection.setRequestProperty("Accept-Encoding",
+						ServiceContentDecoder.ACCEPT_ENCODING);
+			}
+
+			// revalidate a stale cached response
+			if (cacheEntry != null) {
+				cacheEntry.addValidators(connection);
+			}
 
-					// Verify the responseCode after sending output
-					responseCode = verifyResponseCode(connection);
+			connection.setReadTimeout(
+					limitToDeadline(_readTimeoutInMilliseconds));
+			connection.setConnectTimeout(
+					limitToDeadline(_connectTimeoutInMilliseconds));
+			connection.setUseCaches(_useCaches && responseCache == null);
+			connection.setDoInput(true);
+
+			// create and send body data to request
+			StreamingBodyDataProvider streamingBody =
+					_bodyDataProvider instanceof StreamingBodyDataProvider
+							? (StreamingBodyDataProvider) _bodyDataProvider
+							: null;
+			byte[] bodyData = _bodyDataProvider == null || streamingBody != null
+					? null : _bodyDataProvider.getBodyData();
+			boolean hasBody = streamingBody != null || bodyData != null;
+			boolean bodyEncoded = false;
+
+			// check for cancellation
+			throwIfInterrupted();
+
+			long requestTime = System.currentTimeMillis();
+			exchangeStartedAt = System.nanoTime();
+			if (hasBody) {
+				if (_bodyDataProvider instanceof EncodedBodyDataProvider) {
+					String contentEncoding =
+							((EncodedBodyDataProvider) _bodyDataProvider)
+									.getContentEncoding();
+					if (contentEncoding != null) {
+						connection.setRequestProperty("Content-Encoding",
+								contentEncoding);
+						bodyEncoded = true;
+					}
+				}
+
+				// stream the body to the socket rather than letting the
+				// connection buffer a second copy of it
+				long contentLength = streamingBody != null
+						? streamingBody.getContentLength() : bodyData.length;
+				if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+					connection.setFixedLengthStreamingMode((int) contentLength);
 				} else {
-					connection.setDoOutput(false);
+					connection.setChunkedStreamingMode(0);
 				}
+				connection.setDoOutput(true);
+			} else {
+				connection.setDoOutput(false);
+			}
 
-				// check for cancellation
-				throwIfInterrupted();
+			// connect up front so setup is timed apart from the exchange
+			if (eventListener != null) {
+				eventListener.connectStart(this, System.nanoTime());
+				connection.connect();
+				eventListener.connectEnd(this, System.nanoTime());
+			}
 
-				// Verify the responseCode before reading from the stream (only
-				// if not read after output)
-				if (responseCode == -1) {
-					responseCode = verifyResponseCode(connection);
+			if (hasBody) {
+				ServiceRequestOutputStream out = new ServiceRequestOutputStream(
+						connection.getOutputStream(), _currentThread);
+				wr = out;
+				ScheduledFuture<?> writeWatchdog = _writeTimeoutInMilliseconds > 0
+						? _serviceClient.watchRequestBody(out, connection,
+								_writeTimeoutInMilliseconds)
+						: null;
+				try {
+					if (streamingBody != null) {
+						_requestBodyWritten = true;
+						streamingBody.writeTo(out);
+					} else {
+						out.write(bodyData);
+					}
+					out.flush();
+					out.close();
+				} finally {
+					if (writeWatchdog != null) {
+						writeWatchdog.cancel(false);
+					}
+				}
+				_requestBytesOnWire = out.getCount();
+				_requestBytesDecoded = bodyEncoded
+						? ((EncodedBodyDataProvider) _bodyDataProvider)
+								.getDecodedLength()
+						: out.getCount();
+				if (eventListener != null) {
+					eventListener.requestSent(this, System.nanoTime());
 				}
 
+				// Verify the responseCode after sending output
+				responseCode = verifyResponseCode(connection, false);
+			} else if (eventListener != null) {
+				eventListener.requestSent(this, System.nanoTime());
+			}
+
+			// check for cancellation
+			throwIfInterrupted();
+
+			// Verify the responseCode before reading from the stream (only
+			// if not read after output)
+			if (responseCode == -1) {
+				responseCode = verifyResponseCode(connection,
+						cacheEntry != null);
+			}
+			long responseTime = System.currentTimeMillis();
+			if (eventListener != null) {
+				eventListener.responseFirstByte(this, System.nanoTime());
+			}
+			_serviceClient.serviceOperationDidExchange(this,
+					System.nanoTime() - exchangeStartedAt, responseCode);
+			exchangeStartedAt = -1;
+
+			// Check for cancellation
+			throwIfInterrupted();
+
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				// the stored body is still current
+				Map<String, List<String>> notModifiedHeaders =
+						connection.getHeaderFields();
+				transport.releaseConnection(connection,
+						drainAndClose(connection));
+				connection = null;
+				in = responseCache.openBody(cacheEntry);
+				if (in == null) {
+					// evicted since the lookup; ask again without validators
+					retryDelay = 0;
+				} else {
+					responseCache.recordConditionalHit();
+					cacheEntry = responseCache.update(cacheEntry,
+							notModifiedHeaders, requestTime,
+							responseTime);
+					responseCode = cacheEntry.responseCode;
+					_responseHeaders = new ServiceResponseHeaders(
+							cacheEntry.responseHeaders);
+					completeWithResponse(in, null, null, responseCode);
+					in = null;
+				}
+			} else {
 				// Get response
-				in = connection.getInputStream();
+				_responseWireStream = new CountingInputStream(
+						connection.getInputStream());
+				in = _responseWireStream;
 
 				_responseHeaders = new ServiceResponseHeaders(connection.getHeaderFields());
 
-				// Check for cancellation
-				throwIfInterrupted();
+				if (responseCache != null) {
+					if (method == ServiceMethod.GET) {
+						// store the body as it is read
+						if (_useCaches) {
+							responseCache.recordMiss();
+							in = responseCache.storeWhileReading(
+									uriWithQueryParams, this.headers,
+									responseCode, _responseHeaders.headers,
+									in, requestTime, responseTime);
+						}
+					} else {
+						// unsafe methods invalidate the stored response
+						responseCache.remove(uriWithQueryParams);
+					}
+				}
 
-				byte[] responseBody = readFromStream(in);
-				connection.disconnect();
+				completeWithResponse(in, transport, connection, responseCode);
+				in = null;
 				connection = null;
-				_serviceClient.serviceOperationDidEnd(this);
+			}
+		} catch (InterruptedException ie) {
+			Logger.e(getClass().getName(),
+					"Service Operation Task Cancelled.", ie);
+			raiseInterrupted(responseCode);
+		} catch (FileNotFoundException fnfe) {
+			Logger.e(getClass().getName(), "File not found.", fnfe);
+			raiseCompletion(ServiceResultStatus.FAILED, ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_NOT_FOUND, null);
+		} catch (ServiceResponseTransformException te) {
+			if (_currentThread.isInterrupted()) {
+				// a streaming transform was cut off by cancellation
+				raiseInterrupted(responseCode);
+			} else {
+				Logger.e(getClass().getName(),
+						"Error transforming response data.", te);
+				raiseCompletion(ServiceResultStatus.FAILED, responseCode,
+						null);
+			}
+		} catch (InvalidResponseCodeException ire) {
+			// the socket can only be reused once the error body is drained
+			transport.releaseConnection(connection, _errorBodyDrained);
+			connection = null;
+
+			responseCode = ire.responseCode;
+			_serviceClient.serviceOperationDidExchange(this,
+					System.nanoTime() - exchangeStartedAt, responseCode);
+			Logger.e(getClass().getName(),
+					"Error: Service Request Failed.", ire);
+
+			retryDelay = failed(ire, responseCode);
+		} 
+		catch (Exception ex) {
+			// reads from a streaming response fail once cancelled
+			if (_currentThread.isInterrupted()) {
+				Logger.e(getClass().getName(),
+						"Service Operation Task Cancelled.", ex);
+				raiseInterrupted(responseCode);
+				return;
+			}
 
-				// Check for cancellation
-				throwIfInterrupted();
+			// a request that never got a response counts against the limit
+			if (exchangeStartedAt != -1) {
+				_serviceClient.serviceOperationDidExchange(this,
+						System.nanoTime() - exchangeStartedAt, -1);
+			}
+			Logger.e(getClass().getName(),
+					"Error: Service Request Failed.", ex);
 
-				// process response
-				TResponse data = _serviceClient
-						.transformDataIntoResponseFormat(this, responseBody,
-								_responseFormat);
-
-				TResult result = null;
-				if (_responseTransform != null) {
-					result = _responseTransform.transformResponseData(data);
-				} else
-				// since there is no transform, set data to be the result
-				{
-					@SuppressWarnings("unchecked")
-					TResult resultTemp = (TResult) data;
-					result = resultTemp;
+			retryDelay = failed(ex, responseCode);
+		} finally {
+			_connection = null;
+
+			// tear down the connection if the exchange didn't complete
+			if (connection != null) {
+				transport.releaseConnection(connection, false);
+			}
+			if (in != null)
+			{
+				safeClose(in);
+			}
+			if (wr != null)
+			{
+				safeClose(wr);
+			}
+			if (hostAdmitted) {
+				_serviceClient.releaseHost(this);
+			}
+			if (eventListener != null) {
+				TimingSSLSocketFactory.setCurrentOperation(null);
+			}
+		}
+
+		retry(retryDelay);
+	}
+
+	/**
+	 * Hands the exchange to the async transport, to be picked up again by
+	 * {@link #completeAsyncExchange(PendingExchange)} on a pool thread once
+	 * the response has arrived.
+	 */
+	private void beginAsyncExchange(AsyncServiceTransport asyncTransport,
+			URL url, String uriWithQueryParams,
+			ServiceResponseCache.Entry cacheEntry, long exchangeStartedAt)
+			throws IOException {
+		Map<String, String> requestHeaders = new LinkedHashMap<>();
+		if (this.headers != null) {
+			requestHeaders.putAll(this.headers);
+		}
+		if (_serviceClient.isResponseCompressionEnabled()
+				&& !containsHeader(requestHeaders, "Accept-Encoding")) {
+			requestHeaders.put("Accept-Encoding",
+					ServiceContentDecoder.ACCEPT_ENCODING);
+		}
+		if (cacheEntry != null) {
+			cacheEntry.addValidators(requestHeaders);
+		}
+
+		byte[] bodyData = null;
+		if (_bodyDataProvider != null) {
+			bodyData = _bodyDataProvider.getBodyData();
+			if (_bodyDataProvider instanceof StreamingBodyDataProvider) {
+				_requestBodyWritten = true;
+			}
+			if (bodyData != null && _bodyDataProvider
+					instanceof EncodedBodyDataProvider) {
+				EncodedBodyDataProvider encodedBody =
+						(EncodedBodyDataProvider) _bodyDataProvider;
+				if (encodedBody.getContentEncoding() != null) {
+					requestHeaders.put("Content-Encoding",
+							encodedBody.getContentEncoding());
+					_requestBytesDecoded = encodedBody.getDecodedLength();
 				}
+			}
+		}
+		if (bodyData != null) {
+			_requestBytesOnWire = bodyData.length;
+			if (_requestBytesDecoded == 0) {
+				_requestBytesDecoded = bodyData.length;
+			}
+		}
 
-				// Check for cancellation
-				throwIfInterrupted();
+		final PendingExchange pendingExchange = new PendingExchange(
+				uriWithQueryParams, cacheEntry, System.currentTimeMillis(),
+				exchangeStartedAt);
+		synchronized (this) {
+			_pendingExchange = pendingExchange;
+		}
+		Cancellable handle;
+		try {
+			handle = asyncTransport.execute(new AsyncServiceTransport.Request(
+					url, method.name(), requestHeaders, bodyData,
+					limitToDeadline(_connectTimeoutInMilliseconds),
+					limitToDeadline(_readTimeoutInMilliseconds),
+					_writeTimeoutInMilliseconds, MAX_ASYNC_BODY_SIZE),
+					new AsyncServiceTransport.Callback() {
+						@Override
+						public void onResponse(
+								AsyncServiceTransport.Response response) {
+							asyncExchangeFinished(pendingExchange, response,
+									null);
+						}
+
+						@Override
+						public void onFailure(IOException exception) {
+							asyncExchangeFinished(pendingExchange, null,
+									exception);
+						}
+					});
+		} catch (IOException e) {
+			synchronized (this) {
+				_pendingExchange = null;
+			}
+			throw e;
+		}
+		synchronized (this) {
+			pendingExchange.handle = handle;
+		}
+		if (_eventListener != null) {
+			_eventListener.requestSent(this, System.nanoTime());
+		}
+	}
 
-				raiseCompletion(ServiceResultStatus.SUCCESS, responseCode,
-						result);
+	private void asyncExchangeFinished(PendingExchange pendingExchange,
+			AsyncServiceTransport.Response response, IOException failure) {
+		synchronized (this) {
+			pendingExchange.response = response;
+			pendingExchange.failure = failure;
+			pendingExchange.finished = true;
+			pendingExchange.finishedAt = System.nanoTime();
+			pendingExchange.responseTime = System.currentTimeMillis();
+		}
+		_serviceClient.resumeOperation(this);
+	}
 
-				requestInProgress = false;
-			} catch (InterruptedException ie) {
-				Logger.e(getClass().getName(),
-						"Service Operation Task Cancelled.", ie);
-				raiseCompletion(ServiceResultStatus.CANCELLED, responseCode,
-						null);
+	private synchronized PendingExchange takeFinishedExchange() {
+		PendingExchange pendingExchange = _pendingExchange;
+		if (pendingExchange == null || !pendingExchange.finished) {
+			return null;
+		}
+		_pendingExchange = null;
+		return pendingExchange;
+	}
 
-				requestInProgress = false;
-			} catch (FileNotFoundException fnfe) {
-				Logger.e(getClass().getName(), "File not found.", fnfe);
-				raiseCompletion(ServiceResultStatus.FAILED, ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_NOT_FOUND, null);
-				requestInProgress = false;
-			} catch (ServiceResponseTransformException te) {
-				Logger.e(getClass().getName(),
-						"Error transforming response data.", te);
-				raiseCompletion(ServiceResultStatus.FAILED, responseCode, null);
+	/**
+	 * Processes the outcome of an exchange driven by the async transport,
+	 * the same way {@link #attempt()} processes a blocking one.
+	 */
+	private void completeAsyncExchange(PendingExchange pendingExchange) {
+		ServiceResponseCache responseCache = _serviceClient.getResponseCache();
+		long retryDelay = -1;
+		int responseCode = -1;
+		try {
+			if (pendingExchange.failure != null) {
+				_serviceClient.serviceOperationDidExchange(this,
+						pendingExchange.finishedAt - pendingExchange.startedAt,
+						-1);
+				throw pendingExchange.failure;
+			}
 
-				requestInProgress = false;
-			} catch (InvalidResponseCodeException ire) {
-				responseCode = ire.responseCode;
-				Logger.e(getClass().getName(),
-						"Error: Service Request Failed.", ire);
-
-				_serviceClient.serviceOperationFailed(this, ire);
-				boolean retryRequired = _serviceClient
-						.serviceOperationShouldRetry(this, responseCode,
-								retryCount);
-				if (retryRequired) {
-					++retryCount;
-				} else {
-					raiseCompletion(ServiceResultStatus.FAILED, responseCode,
-							null);
+			AsyncServiceTransport.Response response = pendingExchange.response;
+			responseCode = response.responseCode;
+			_responseHeaders = new ServiceResponseHeaders(response.headers);
+			if (_eventListener != null) {
+				_eventListener.responseFirstByte(this, pendingExchange.finishedAt);
+			}
+			_serviceClient.serviceOperationDidExchange(this,
+					pendingExchange.finishedAt - pendingExchange.startedAt,
+					responseCode);
 
-					requestInProgress = false;
-				}
-			} 
-			catch (Exception ex) {
-				Logger.e(getClass().getName(),
-						"Error: Service Request Failed.", ex);
+			// Check for cancellation
+			throwIfInterrupted();
 
-				_serviceClient.serviceOperationFailed(this, ex);
-				boolean retryRequired = _serviceClient
-						.serviceOperationShouldRetry(this, responseCode,
-								retryCount);
-				if (retryRequired) {
-					++retryCount;
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+					&& pendingExchange.cacheEntry != null) {
+				// the stored body is still current
+				InputStream in = responseCache.openBody(
+						pendingExchange.cacheEntry);
+				if (in == null) {
+					// evicted since the lookup; ask again without validators
+					retryDelay = 0;
 				} else {
-					raiseCompletion(ServiceResultStatus.FAILED, responseCode,
-							null);
-
-					requestInProgress = false;
+					responseCache.recordConditionalHit();
+					ServiceResponseCache.Entry cacheEntry = responseCache.update(
+							pendingExchange.cacheEntry, response.headers,
+							pendingExchange.requestTime,
+							pendingExchange.responseTime);
+					responseCode = cacheEntry.responseCode;
+					_responseHeaders = new ServiceResponseHeaders(
+							cacheEntry.responseHeaders);
+					completeWithResponse(in, null, null, responseCode);
 				}
-			} finally {
-				// close the connection if it hasn't been closed already
-				if (connection != null && isConnected) {
-					connection.disconnect();
-				}
-				if (in != null)
-				{
-					safeClose(in);
-				}
-				if (wr != null)
-				{
-					safeClose(wr);
+			} else if (responseCode < HTTP_OK_STATUS_CODE
+					|| responseCode >= HTTP_MULTIPLE_CHOICES_CODE) {
+				throw new InvalidResponseCodeException(responseCode,
+						response.responseMessage, new String(response.body, 0,
+								response.bodyLength,
+								ServiceClientConstants.UTF8_ENCODING));
+			} else {
+				_responseWireStream = new CountingInputStream(
+						new ByteArrayInputStream(response.body, 0,
+								response.bodyLength));
+				InputStream in = _responseWireStream;
+				if (responseCache != null) {
+					if (method == ServiceMethod.GET) {
+						// store the body as it is read
+						if (_useCaches) {
+							responseCache.recordMiss();
+							in = responseCache.storeWhileReading(
+									pendingExchange.uri, this.headers,
+									responseCode, _responseHeaders.headers,
+									in, pendingExchange.requestTime,
+									pendingExchange.responseTime);
+						}
+					} else {
+						// unsafe methods invalidate the stored response
+						responseCache.remove(pendingExchange.uri);
+					}
 				}
+				completeWithResponse(in, null, null, responseCode);
 			}
+		} catch (InterruptedException ie) {
+			Logger.e(getClass().getName(),
+					"Service Operation Task Cancelled.", ie);
+			raiseInterrupted(responseCode);
+		} catch (ServiceResponseTransformException te) {
+			Logger.e(getClass().getName(),
+					"Error transforming response data.", te);
+			raiseCompletion(ServiceResultStatus.FAILED, responseCode, null);
+		} catch (InvalidResponseCodeException ire) {
+			Logger.e(getClass().getName(),
+					"Error: Service Request Failed.", ire);
+			retryDelay = failed(ire, ire.responseCode);
+		} catch (ResponseBodyTooLargeException le) {
+			// stream it over the blocking transport instead; a POST is only
+			// sent again if the retry policy allows it
+			Logger.e(getClass().getName(),
+					"Response too large to buffer.", le);
+			_responseTooLargeToBuffer = true;
+			retryDelay = method == ServiceMethod.POST
+					? failed(le, responseCode) : 0;
+		} catch (Exception ex) {
+			Logger.e(getClass().getName(),
+					"Error: Service Request Failed.", ex);
+			retryDelay = failed(ex, responseCode);
+		} finally {
+			_serviceClient.releaseHost(this);
+		}
 
-		} while (requestInProgress);
+		retry(retryDelay);
 	}
 
-	private static void safeClose(DataOutputStream s) {
+	/**
+	 * Tries again later without holding on to this worker thread.
+	 *
+	 * @param retryDelay delay from {@link #failed(Exception, int)}, or -1 if
+	 *                   the operation isn't being retried.
+	 */
+	private void retry(long retryDelay) {
+		if (retryDelay >= 0) {
+			if ((_cancelled && !hasFollowers()) || _deadlineExceeded) {
+				raiseInterrupted(
+						ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED);
+			} else {
+				_serviceClient.scheduleRetry(this, retryDelay);
+			}
+		}
+	}
+
+	/**
+	 * @return true if the async transport can run this attempt: it must
+	 *         support the URL, and both the request body and the response
+	 *         must be small enough to hold in memory.
+	 */
+	private boolean canExchangeAsync(AsyncServiceTransport asyncTransport,
+			URL url) {
+		if (asyncTransport == null || _responseFormat.isStreaming()
+				|| _responseTooLargeToBuffer
+				|| !asyncTransport.supports(url)) {
+			return false;
+		}
+		if (_bodyDataProvider instanceof StreamingBodyDataProvider) {
+			StreamingBodyDataProvider streamingBody =
+					(StreamingBodyDataProvider) _bodyDataProvider;
+			long contentLength = streamingBody.getContentLength();
+			return streamingBody.isRepeatable() && contentLength >= 0
+					&& contentLength <= MAX_ASYNC_BODY_SIZE;
+		}
+		return true;
+	}
+
+	private static boolean containsHeader(Map<String, String> headers,
+			String name) {
+		for (String field : headers.keySet()) {
+			if (name.equalsIgnoreCase(field)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void safeClose(OutputStream s) {
 		if (s != null) {
 			try {
 				s.close();
@@ -293,35 +960,298 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 		}
 	}
 
-	private byte[] readFromStream(InputStream in) throws InterruptedException,
-			IOException {
-		BufferedInputStream bis = new BufferedInputStream(in);
-		ByteArrayBuffer baf = new ByteArrayBuffer(RESPONSE_BUFFER_SIZE);
-		int read = 0;
-		byte[] buffer = new byte[RESPONSE_BUFFER_SIZE];
-		while (true) {
+	/**
+	 * Reads what is left of a response that has no body to hand out, e.g. a
+	 * 304, so its socket can go back to the platform pool.
+	 *
+	 * @return true if the response was read to the end.
+	 */
+	private static boolean drainAndClose(HttpURLConnection connection) {
+		InputStream in = null;
+		try {
+			in = connection.getInputStream();
+			byte[] buffer = new byte[512];
+			while (in.read(buffer) != -1) {
+				// discard
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			safeClose(in);
+		}
+	}
+
+	/**
+	 * Reads a body into an array of exactly its size, closing the stream.  A
+	 * body of known length is read straight into its own array; otherwise it
+	 * grows through buffers borrowed from the client's buffer pool.
+	 *
+	 * @param contentLength expected length, or -1 if unknown.
+	 */
+	private byte[] readFromStream(InputStream in, long contentLength)
+			throws InterruptedException, IOException {
+		if (in == null) {
+			return new byte[0];
+		}
+
+		try {
+			ByteArrayPool bufferPool = _serviceClient.getBufferPool();
+			byte[] buffer;
+			int length;
+			if (contentLength >= 0 && contentLength <= MAX_PRESIZED_BODY_SIZE) {
+				byte[] body = new byte[(int) contentLength];
+				length = readInto(in, body, 0);
+				if (length < body.length) {
+					return Arrays.copyOf(body, length);
+				}
+				int next = in.read();
+				if (next == -1) {
+					return body;
+				}
+
+				// longer than advertised; carry on in a pooled buffer
+				buffer = bufferPool.acquire(length * 2 + 1);
+				System.arraycopy(body, 0, buffer, 0, length);
+				buffer[length++] = (byte) next;
+			} else {
+				buffer = bufferPool.acquire(RESPONSE_BUFFER_SIZE);
+				length = 0;
+			}
+
+			try {
+				while (true) {
+					if (length == buffer.length) {
+						byte[] larger = bufferPool.acquire(buffer.length * 2);
+						System.arraycopy(buffer, 0, larger, 0, length);
+						bufferPool.release(buffer);
+						buffer = larger;
+					}
+					int read = readInto(in, buffer, length);
+					if (read == length) {
+						break;
+					}
+					length = read;
+				}
+				return Arrays.copyOf(buffer, length);
+			} finally {
+				bufferPool.release(buffer);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Fills {@code buffer} from {@code offset} until it is full or the stream
+	 * ends.
+	 *
+	 * @return the offset reached.
+	 */
+	private int readInto(InputStream in, byte[] buffer, int offset)
+			throws InterruptedException, IOException {
+		while (offset < buffer.length) {
 			throwIfInterrupted();
-			read = bis.read(buffer);
+			int read = in.read(buffer, offset, buffer.length - offset);
 			if (read == -1) {
 				break;
 			}
-			baf.append(buffer, 0, read);
+			offset += read;
+		}
+		return offset;
+	}
+
+	/**
+	 * @return the length of the body as the response format will see it, or
+	 *         -1 if unknown (e.g. compressed).
+	 */
+	private long getBodyLength() {
+		if (_responseHeaders == null || _responseHeaders
+				.getHeaderValue("Content-Encoding") != null) {
+			return -1;
+		}
+		String contentLength = _responseHeaders.getHeaderValue("Content-Length");
+		if (contentLength == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentLength.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Reads the response body, runs it through the response format and
+	 * transform and completes the operation, closing the stream and releasing
+	 * the connection (if any) once the body has been consumed.  A buffered
+	 * body is handed to the client's compute stage, when it has one, so this
+	 * worker is free for the next exchange while it is parsed.
+	 */
+	private void completeWithResponse(InputStream in,
+			ServiceTransport transport, HttpURLConnection connection,
+			int responseCode) throws InterruptedException, IOException,
+			ServiceResponseTransformException {
+		// the cache keeps bodies as they came off the wire, so cached
+		// responses are decoded here too
+		try {
+			in = ServiceContentDecoder.decode(in,
+					_responseHeaders.getHeaderValue("Content-Encoding"));
+		} catch (IOException e) {
+			safeClose(in);
+			throw e;
+		}
+		_responseDecodedStream = new CountingInputStream(in);
+		in = _responseDecodedStream;
+
+		if (_responseFormat.isStreaming()) {
+			// bind straight from the body so parsing overlaps with the
+			// download instead of buffering the whole body
+			TResult result;
+			try {
+				TResponse data = _serviceClient
+						.transformStreamIntoResponseFormat(this,
+								new ServiceResponseInputStream(in,
+										_currentThread), _responseFormat);
+				if (_eventListener != null) {
+					long now = System.nanoTime();
+					_eventListener.responseBodyComplete(this, now);
+					_eventListener.parseComplete(this, now);
+				}
+				result = transformResponse(data);
+			} finally {
+				safeClose(in);
+			}
+			if (connection != null) {
+				transport.releaseConnection(connection, true);
+			}
+			_serviceClient.serviceOperationDidEnd(this);
+			completeWithResult(result, responseCode);
+			return;
+		}
+
+		byte[] responseBody;
+		try {
+			responseBody = readFromStream(in, getBodyLength());
+		} finally {
+			safeClose(in);
+		}
+		if (_eventListener != null) {
+			_eventListener.responseBodyComplete(this, System.nanoTime());
+		}
+		if (connection != null) {
+			transport.releaseConnection(connection, true);
 		}
-		buffer = null;
+		_serviceClient.serviceOperationDidEnd(this);
 
-		byte[] responseBody = baf.toByteArray();
+		// Check for cancellation
+		throwIfInterrupted();
 
-		// Disconnect to release resources
-		bis.close();
-		baf.clear();
-		return responseBody;
+		if (_serviceClient.getComputePoolSize() > 0) {
+			ComputeTask computeTask = new ComputeTask(this, responseBody,
+					responseCode);
+			synchronized (this) {
+				_computeTask = computeTask;
+			}
+			_serviceClient.executeCompute(computeTask);
+			return;
+		}
+		completeWithBody(responseBody, responseCode);
+	}
+
+	/**
+	 * Parses and transforms a buffered response body, then completes the
+	 * operation.
+	 */
+	private void completeWithBody(byte[] responseBody, int responseCode)
+			throws InterruptedException, ServiceResponseTransformException {
+		// kept for coalesced requests to parse themselves; a raw body is
+		// handed to the transform as is, so it is copied first
+		if (_coalescingKey != null) {
+			_responseBody = _responseFormat.type == ServiceResponseFormat.Type.RAW
+					? responseBody.clone() : responseBody;
+		}
+
+		TResponse data = _serviceClient.transformDataIntoResponseFormat(this,
+				responseBody, _responseFormat);
+		if (_eventListener != null) {
+			_eventListener.parseComplete(this, System.nanoTime());
+		}
+		completeWithResult(transformResponse(data), responseCode);
+	}
+
+	private void completeWithResult(TResult result, int responseCode)
+			throws InterruptedException {
+		if (_eventListener != null) {
+			_eventListener.transformComplete(this, System.nanoTime());
+		}
+
+		// Check for cancellation
+		throwIfInterrupted();
+
+		raiseCompletion(ServiceResultStatus.SUCCESS, responseCode, result);
+	}
+
+	/**
+	 * Runs on the compute stage: processes a body read by a request worker,
+	 * handling failures the same way {@link #attempt()} does.
+	 */
+	private void compute(ComputeTask computeTask) {
+		synchronized (this) {
+			_computeTask = null;
+			_currentThread = Thread.currentThread();
+		}
+		long retryDelay = -1;
+		try {
+			// Check for cancellation
+			throwIfInterrupted();
+
+			completeWithBody(computeTask.responseBody,
+					computeTask.responseCode);
+		} catch (InterruptedException ie) {
+			Logger.e(getClass().getName(),
+					"Service Operation Task Cancelled.", ie);
+			raiseInterrupted(computeTask.responseCode);
+		} catch (ServiceResponseTransformException te) {
+			if (_currentThread.isInterrupted()) {
+				raiseInterrupted(computeTask.responseCode);
+			} else {
+				Logger.e(getClass().getName(),
+						"Error transforming response data.", te);
+				raiseCompletion(ServiceResultStatus.FAILED,
+						computeTask.responseCode, null);
+			}
+		} catch (Exception ex) {
+			if (_currentThread.isInterrupted()) {
+				Logger.e(getClass().getName(),
+						"Service Operation Task Cancelled.", ex);
+				raiseInterrupted(computeTask.responseCode);
+			} else {
+				Logger.e(getClass().getName(),
+						"Error: Service Request Failed.", ex);
+				retryDelay = failed(ex, computeTask.responseCode);
+			}
+		} finally {
+			synchronized (this) {
+				if (_currentThread == Thread.currentThread()) {
+					_currentThread = null;
+				}
+				Thread.interrupted();
+			}
+		}
+
+		retry(retryDelay);
 	}
 
-	private int verifyResponseCode(HttpURLConnection connection)
+	private int verifyResponseCode(HttpURLConnection connection,
+			boolean allowNotModified)
 			throws IOException, InvalidResponseCodeException {
 		int responseCode;
 		try {
 			responseCode = connection.getResponseCode();
+		} catch (HttpRetryException e) {
+			// streamed bodies can't be resent for an auth challenge/redirect
+			responseCode = e.responseCode();
 		} catch (IOException e) {
 			// Older Android versions have trouble handling 401 errors.
 			if (e.getMessage().contains("authentication challenge")) { 				
@@ -330,15 +1260,25 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 				throw e;
 			}
 		}
+		if (allowNotModified
+				&& responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			return responseCode;
+		}
 		if (responseCode < HTTP_OK_STATUS_CODE
 				|| responseCode >= HTTP_MULTIPLE_CHOICES_CODE) {
+			// keep the headers for retry decisions (e.g. Retry-After)
+			_responseHeaders = new ServiceResponseHeaders(
+					connection.getHeaderFields());
+
 			String statusMessage = connection.getResponseMessage();
 			String errorMessage = "";
 			InputStream in = null;
+			_errorBodyDrained = false;
 			try {
 				// try to read the error stream.
 				in = connection.getErrorStream();
-				byte[] errorBody = readFromStream(in);
+				byte[] errorBody = readFromStream(in, getBodyLength());
+				_errorBodyDrained = true;
 				errorMessage = new String(errorBody,
 						ServiceClientConstants.UTF8_ENCODING);
 			} catch (Exception ex) {
@@ -360,11 +1300,224 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 
 	// [endregion]
 
-	// [region] protected methods
+	// [region] internal methods
+
+	/**
+	 * @return false once a body that can only be written once has been sent,
+	 *         so the request can't be retried.
+	 */
+	boolean canResendRequestBody() {
+		return !_requestBodyWritten
+				|| !(_bodyDataProvider instanceof StreamingBodyDataProvider)
+				|| ((StreamingBodyDataProvider) _bodyDataProvider).isRepeatable();
+	}
+
+	/**
+	 * @return true if identical requests can share this operation's response,
+	 *         which rules out streaming formats since the body can only be
+	 *         consumed once.
+	 */
+	boolean isCoalescable() {
+		return method == ServiceMethod.GET && _bodyDataProvider == null
+				&& !_responseFormat.isStreaming();
+	}
+
+	void beginCoalescing(Object coalescingKey) {
+		_coalescingKey = coalescingKey;
+	}
+
+	/**
+	 * Attaches an identical request to this in-flight operation, which will
+	 * complete it with its own response.
+	 *
+	 * @return false if this operation already has its outcome and can no
+	 *         longer take followers.
+	 */
+	synchronized boolean attachFollower(ServiceOperation<?, ?> follower) {
+		if (_followersClosed) {
+			return false;
+		}
+		if (_followers == null) {
+			_followers = new ArrayList<>();
+		}
+		_followers.add(follower);
+		follower._leader = this;
+		return true;
+	}
+
+	void setDeadlineTimer(ScheduledFuture<?> deadlineTimer) {
+		synchronized (this) {
+			_deadlineTimer = deadlineTimer;
+		}
+	}
 
-	protected void cancel() {
-		if (_currentThread != null) {
-			_currentThread.interrupt();
+	/**
+	 * @return time left before the deadline, or {@link Long#MAX_VALUE} if
+	 *         there is none.
+	 */
+	long getRemainingTimeInMilliseconds() {
+		if (_deadlineAt == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return TimeUnit.NANOSECONDS.toMillis(_deadlineAt - System.nanoTime());
+	}
+
+	/**
+	 * Called by the deadline timer: fails the operation with
+	 * {@link ServiceClientConstants#SERVICE_RESPONSE_STATUS_CODE_DEADLINE_EXCEEDED},
+	 * aborting the exchange if it is underway.
+	 */
+	void expireDeadline() {
+		ServiceOperation<?, ?> leader;
+		synchronized (this) {
+			if (_completed || _cancelled) {
+				return;
+			}
+			_deadlineExceeded = true;
+			leader = _leader;
+		}
+
+		// a coalesced request just stops waiting on its leader
+		if (leader != null) {
+			raiseInterrupted(
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_DEADLINE_EXCEEDED);
+			leader.followerCancelled(this);
+			return;
+		}
+		abandon();
+	}
+
+	void setScheduledRetry(ScheduledFuture<?> scheduledRetry) {
+		synchronized (this) {
+			_scheduledRetry = scheduledRetry;
+		}
+	}
+
+	ServiceHostThrottle getHostThrottle() {
+		return _hostThrottle;
+	}
+
+	void setHostThrottle(ServiceHostThrottle hostThrottle) {
+		_hostThrottle = hostThrottle;
+	}
+
+	synchronized ScheduledFuture<?> getScheduledRetry() {
+		return _scheduledRetry;
+	}
+
+	/**
+	 * @return the body waiting on the compute stage, or null if there is
+	 *         none.
+	 */
+	synchronized ComputeTask getComputeTask() {
+		return _computeTask;
+	}
+
+	private synchronized boolean hasFollowers() {
+		return _followers != null && !_followers.isEmpty();
+	}
+
+	private void followerCancelled(ServiceOperation<?, ?> follower) {
+		synchronized (this) {
+			if (_followers != null) {
+				_followers.remove(follower);
+			}
+		}
+
+		// nobody is waiting on a cancelled leader any more
+		if (_cancelled && !hasFollowers()) {
+			abandon();
+		}
+	}
+
+	/**
+	 * Stops work on a cancelled or expired operation: drops it from the queue
+	 * if it hasn't started, otherwise aborts the running attempt.
+	 */
+	private void abandon() {
+		if (_serviceClient.removeQueuedOperation(this)) {
+			raiseInterrupted(
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED);
+			return;
+		}
+		Cancellable asyncExchange;
+		synchronized (this) {
+			if (_currentThread != null) {
+				_currentThread.interrupt();
+			}
+			asyncExchange = _pendingExchange == null ? null
+					: _pendingExchange.handle;
+		}
+
+		// closing the socket unblocks a read or write the interrupt can't
+		HttpURLConnection connection = _connection;
+		if (connection != null) {
+			connection.disconnect();
+		}
+
+		// an exchange on the async transport holds no thread to interrupt
+		if (asyncExchange != null && asyncExchange.cancel()) {
+			synchronized (this) {
+				_pendingExchange = null;
+			}
+			_serviceClient.releaseHost(this);
+			raiseInterrupted(
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_CANCELLED);
+		}
+	}
+
+	synchronized List<ServiceOperation<?, ?>> closeFollowers() {
+		_followersClosed = true;
+		List<ServiceOperation<?, ?>> followers = _followers;
+		_followers = null;
+		return followers;
+	}
+
+	private void completeAsFollower(ServiceResultStatus resultStatus,
+			int responseCode, ServiceResponseHeaders responseHeaders,
+			byte[] responseBody) {
+		_responseHeaders = responseHeaders;
+		if (resultStatus != ServiceResultStatus.SUCCESS) {
+			raiseCompletion(resultStatus, responseCode, null);
+			return;
+		}
+
+		// each follower parses the body itself, so transforms never share a
+		// response object; on the compute stage when there is one
+		if (_responseFormat.type == ServiceResponseFormat.Type.RAW) {
+			responseBody = responseBody.clone();
+		}
+		if (_serviceClient.getComputePoolSize() > 0) {
+			_serviceClient.executeCompute(new ComputeTask(this, responseBody,
+					responseCode, true));
+		} else {
+			parseAsFollower(responseBody, responseCode);
+		}
+	}
+
+	/**
+	 * Parses and transforms the leader's body for this follower.  Runs on
+	 * whatever thread it's given, e.g. the leader's, so it takes none of
+	 * that thread's state, and a failure fails only this follower: it is
+	 * never sent again on its own.
+	 */
+	private void parseAsFollower(byte[] responseBody, int responseCode) {
+		if (_cancelled) {
+			return;
+		}
+		try {
+			TResponse data = _serviceClient.transformDataIntoResponseFormat(
+					this, responseBody, _responseFormat);
+			raiseCompletion(ServiceResultStatus.SUCCESS, responseCode,
+					transformResponse(data));
+		} catch (ServiceResponseTransformException te) {
+			Logger.e(getClass().getName(),
+					"Error transforming response data.", te);
+			raiseCompletion(ServiceResultStatus.FAILED, responseCode, null);
+		} catch (RuntimeException ex) {
+			Logger.e(getClass().getName(),
+					"Error: Service Request Failed.", ex);
+			raiseCompletion(ServiceResultStatus.FAILED, responseCode, null);
 		}
 	}
 
@@ -374,21 +1527,132 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 
 	private void raiseCompletion(final ServiceResultStatus resultStatus,
 			final int responseCode, final TResult result) {
+		// share the outcome with any coalesced requests
+		if (_coalescingKey != null) {
+			List<ServiceOperation<?, ?>> followers =
+					_serviceClient.endCoalescing(this, _coalescingKey);
+			if (followers != null) {
+				for (ServiceOperation<?, ?> follower : followers) {
+					follower.completeAsFollower(resultStatus, responseCode,
+							_responseHeaders, _responseBody);
+				}
+			}
+			_responseBody = null;
+		}
+
+		dispatchCompletion(resultStatus, responseCode, result);
+	}
+
+	private void dispatchCompletion(final ServiceResultStatus resultStatus,
+			final int responseCode, final TResult result) {
+		// completion is raised at most once (cancellation may race the outcome)
+		synchronized (this) {
+			if (_completed) {
+				return;
+			}
+			_completed = true;
+			if (_deadlineTimer != null) {
+				_deadlineTimer.cancel(false);
+			}
+		}
+		_serviceClient.serviceOperationDidComplete(this);
+
 		// raise completion
 		if (_completion != null) {
-			Handler handler = new Handler(Looper.getMainLooper());
-			_resultContainer = new ServiceResultContainer(_responseHeaders,
-					responseCode,
-					result,
-					resultStatus);
-			handler.post(() -> _completion
-                    .onCompletion(_resultContainer));// end runOnUiThread
+			Executor completionExecutor = _completionExecutor != null
+					? _completionExecutor
+					: _serviceClient.getCompletionExecutor();
+			final ServiceResultContainer<TResult> resultContainer =
+					new ServiceResultContainer<>(_responseHeaders,
+							responseCode, result, resultStatus);
+			_resultContainer = resultContainer;
+			completionExecutor.execute(() -> _completion
+                    .onCompletion(resultContainer));
+
+			ServiceEventListener eventListener =
+					_serviceClient.getEventListener();
+			if (eventListener != null) {
+				eventListener.completionDispatched(this, System.nanoTime());
+			}
+
+		}
+	}
+
+	/**
+	 * Reports a failed attempt and decides whether to retry it.
+	 *
+	 * @return delay before the next attempt, or -1 if the operation failed
+	 *         and its completion has been raised.
+	 */
+	private long failed(Exception error, int responseCode) {
+		if (_eventListener != null) {
+			_eventListener.attemptFailed(this, System.nanoTime(), error);
+		}
+		if (_deadlineExceeded) {
+			raiseInterrupted(responseCode);
+			return -1;
+		}
+		_serviceClient.serviceOperationFailed(this, error);
+		long retryDelay = _serviceClient.getRetryDelay(this, responseCode,
+				error, _retryCount, _responseHeaders);
+		if (retryDelay >= 0) {
+			++_retryCount;
+		} else {
+			raiseCompletion(ServiceResultStatus.FAILED, responseCode, null);
+		}
+		return retryDelay;
+	}
+
+	private TResult transformResponse(TResponse data)
+			throws ServiceResponseTransformException {
+		if (_responseTransform != null) {
+			return _responseTransform.transformResponseData(data);
+		}
+
+		// since there is no transform, set data to be the result
+		@SuppressWarnings("unchecked")
+		TResult result = (TResult) data;
+		return result;
+	}
+
+	/**
+	 * Raises the completion of an attempt that was cut off, either by
+	 * cancellation or by the deadline.
+	 */
+	private void raiseInterrupted(int responseCode) {
+		if (_deadlineExceeded) {
+			raiseCompletion(ServiceResultStatus.FAILED,
+					ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_DEADLINE_EXCEEDED,
+					null);
+		} else {
+			raiseCompletion(ServiceResultStatus.CANCELLED, responseCode, null);
+		}
+	}
 
+	/**
+	 * @return {@code timeout} shortened to the time left before the deadline
+	 *         (0 meaning no timeout).
+	 */
+	private int limitToDeadline(int timeout) {
+		long remaining = getRemainingTimeInMilliseconds();
+		if (remaining == Long.MAX_VALUE) {
+			return timeout;
 		}
+		remaining = Math.max(1, remaining);
+		return timeout == 0 || timeout > remaining ? (int) remaining : timeout;
+	}
+
+	private static int resolveTimeout(int requestTimeout, int clientTimeout,
+			int defaultTimeout) {
+		if (requestTimeout > 0) {
+			return requestTimeout;
+		}
+		return clientTimeout > 0 ? clientTimeout : defaultTimeout;
 	}
 
 	private void throwIfInterrupted() throws InterruptedException {
-		if (_currentThread.isInterrupted()) {
+		if (_currentThread.isInterrupted() || (_cancelled && !hasFollowers())
+				|| _deadlineExceeded) {
 			throw new InterruptedException();
 		}
 	}
@@ -396,24 +1660,91 @@ public final class ServiceOperation<TResponse, TResult> implements Runnable {
 	private static String addQueryStringParametersToUri(String uri,
 			Map<String, String> queryParameters)
 			throws UnsupportedEncodingException {
-		String uriWithQueryParams = uri;
-		if (queryParameters != null && !queryParameters.isEmpty()) {
-			uriWithQueryParams += "?";
-			boolean addAmperstand = false;
-			for (String field : queryParameters.keySet()) {
-				if (addAmperstand) {
-					uriWithQueryParams += "&";
-				}
-				uriWithQueryParams += field
-						+ "="
-						+ URLEncoder.encode(queryParameters.get(field),
-								ServiceClientConstants.UTF8_ENCODING);
-				addAmperstand = true;
-			}
+		if (queryParameters == null || queryParameters.isEmpty()) {
+			return uri;
+		}
+		StringBuilder uriWithQueryParams = new StringBuilder(uri.length()
+				+ queryParameters.size() * 24);
+		uriWithQueryParams.append(uri);
+		char separator = '?';
+		for (Map.Entry<String, String> parameter
+				: queryParameters.entrySet()) {
+			uriWithQueryParams.append(separator)
+					.append(parameter.getKey())
+					.append('=')
+					.append(URLEncoder.encode(parameter.getValue(),
+							ServiceClientConstants.UTF8_ENCODING));
+			separator = '&';
 		}
-		return uriWithQueryParams;
+		return uriWithQueryParams.toString();
 	}
 
 	// [endregion]
 
+
+	// [region] internal data structures
+
+	/**
+	 * An attempt handed to the async transport, carried over to the pool
+	 * thread that processes its outcome.
+	 */
+	private static final class PendingExchange {
+		final String uri;
+		final ServiceResponseCache.Entry cacheEntry;
+		final long requestTime;
+		final long startedAt;
+		Cancellable handle;
+		AsyncServiceTransport.Response response;
+		IOException failure;
+		boolean finished;
+		long finishedAt;
+		long responseTime;
+
+		PendingExchange(String uri, ServiceResponseCache.Entry cacheEntry,
+				long requestTime, long startedAt) {
+			this.uri = uri;
+			this.cacheEntry = cacheEntry;
+			this.requestTime = requestTime;
+			this.startedAt = startedAt;
+		}
+	} // class PendingExchange
+
+	/**
+	 * A response body read by a request worker, waiting on the client's
+	 * compute stage to be parsed and transformed.
+	 */
+	static final class ComputeTask implements Runnable {
+		final ServiceOperation<?, ?> serviceOperation;
+		final byte[] responseBody;
+		final int responseCode;
+		final boolean follower;
+
+		ComputeTask(ServiceOperation<?, ?> serviceOperation,
+				byte[] responseBody, int responseCode) {
+			this(serviceOperation, responseBody, responseCode, false);
+		}
+
+		/**
+		 * @param follower true to parse a coalesced leader's body for
+		 *                 {@code serviceOperation}, which then only completes.
+		 */
+		ComputeTask(ServiceOperation<?, ?> serviceOperation,
+				byte[] responseBody, int responseCode, boolean follower) {
+			this.serviceOperation = serviceOperation;
+			this.responseBody = responseBody;
+			this.responseCode = responseCode;
+			this.follower = follower;
+		}
+
+		@Override
+		public void run() {
+			if (follower) {
+				serviceOperation.parseAsFollower(responseBody, responseCode);
+			} else {
+				serviceOperation.compute(this);
+			}
+		}
+	} // class ComputeTask
+
+	// [endregion]
 }
\ No newline at end of file
@@ -0,0 +1,631 @@
+package com.nascentdigital.communication;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.nascentdigital.connectivity.NetworkConnectivityListener;
+import com.nascentdigital.threading.DirectExecutor;
+import com.nascentdigital.util.Logger;
+import com.nascentdigital.util.StorageHelper;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Durable queue of mutating requests on top of a {@link ServiceClient}.
+ * Requests started through the outbox while there is no connectivity are
+ * saved to encrypted internal storage (see {@link StorageHelper}) instead of
+ * failing, and are replayed in the order they were made once the
+ * {@link NetworkConnectivityListener} reports
+ * {@link NetworkConnectivityListener.State#CONNECTED}, including after the
+ * app has restarted.
+ * <p>
+ * Stored requests are replayed in batches of {@link #getBatchSize()}: the
+ * requests of a batch are sent one after another, so a later mutation never
+ * overtakes an earlier one, and storage is rewritten and the
+ * {@link Listener} notified once per batch.  Replay stops at the first
+ * request that gets no response or a server error, leaving it and those after
+ * it for the next reconnect; a request the server rejects with a client
+ * error is dropped, as sending it again wouldn't help.
+ * <p>
+ * Storage is replaced as a whole through a temporary file, so a failed
+ * write leaves the previous contents in place.
+ * <p>
+ * Every request made through the outbox carries a
+ * {@link ServiceClientConstants#IDEMPOTENCY_KEY_HEADER} header, unless it
+ * already has one, that stays the same when it is replayed.  A request that
+ * loses connectivity midway may have reached the server, so servers should
+ * use the key to apply it only once.
+ */
+public final class ServiceOutbox
+{
+	// [region] constants
+
+	private static final int CONNECTIVITY_CHANGED = 1;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final Context _context;
+	private final String _filename;
+	private final ServiceClient _serviceClient;
+	private final NetworkConnectivityListener _connectivityListener;
+	private final Handler _connectivityHandler;
+	private final ThreadPoolExecutor _executor;
+	private final ArrayList<Entry> _entries;
+	private final AtomicInteger _pendingCount;
+	private final AtomicInteger _inFlightCount;
+	private final AtomicLong _nextSequence;
+	private volatile boolean _loaded;
+	private volatile int _batchSize;
+	private volatile Listener _listener;
+	private boolean _replaying;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	/**
+	 * Loads the requests stored under {@code filename} and starts replaying
+	 * them if there is connectivity.
+	 *
+	 * @param filename internal storage file holding the queued requests; each
+	 *                 outbox needs its own.
+	 */
+	public ServiceOutbox(Context context, String filename,
+		ServiceClient serviceClient,
+		NetworkConnectivityListener connectivityListener)
+	{
+		_context = context.getApplicationContext();
+		_filename = filename;
+		_serviceClient = serviceClient;
+		_connectivityListener = connectivityListener;
+		_batchSize = ServiceClientConstants.DEFAULT_OUTBOX_BATCH_SIZE;
+		_entries = new ArrayList<>();
+		_pendingCount = new AtomicInteger();
+		_inFlightCount = new AtomicInteger();
+		_nextSequence = new AtomicLong(1);
+		_executor = new ThreadPoolExecutor(1, 1,
+			ServiceClientConstants.POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), runnable -> {
+				Thread thread = new Thread(runnable, "ServiceOutbox");
+				thread.setDaemon(true);
+				return thread;
+			});
+		_executor.allowCoreThreadTimeOut(true);
+		_connectivityHandler = new Handler(Looper.getMainLooper(), message -> {
+			if (message.what == CONNECTIVITY_CHANGED && isConnected())
+			{
+				replay();
+			}
+			return true;
+		});
+
+		_executor.execute(this::load);
+		connectivityListener.registerHandler(_connectivityHandler,
+			CONNECTIVITY_CHANGED);
+		replay();
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	/**
+	 * @return number of requests stored and not yet replayed.
+	 */
+	public int getPendingCount()
+	{
+		return _pendingCount.get();
+	}
+
+	public int getBatchSize()
+	{
+		return _batchSize;
+	}
+
+	/**
+	 * @param batchSize number of stored requests replayed between writes to
+	 *                  storage.
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		if (batchSize < 1)
+		{
+			throw new IllegalArgumentException("batchSize must be positive.");
+		}
+		_batchSize = batchSize;
+	}
+
+	public Listener getListener()
+	{
+		return _listener;
+	}
+
+	/**
+	 * @param listener notified of the outcome of replayed requests, whose
+	 *                 original completions are gone.
+	 */
+	public void setListener(Listener listener)
+	{
+		_listener = listener;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * Starts a request, or stores it for later if there is no connectivity.
+	 * A request that fails without a response because connectivity was lost
+	 * while it was underway is stored too, and replayed with the same
+	 * idempotency key in case it reached the server.
+	 * <p>
+	 * A request that is stored raises its completion with
+	 * {@link ServiceResultStatus#FAILED} and
+	 * {@link ServiceClientConstants#SERVICE_RESPONSE_STATUS_CODE_ARCHIVED}
+	 * once it has been written to storage; its eventual outcome goes to the
+	 * {@link Listener}.  If it can't be written, the completion gets
+	 * {@link ServiceClientConstants#SERVICE_RESPONSE_STATUS_CODE_ARCHIVE_FAILED}
+	 * instead and the request is dropped.
+	 * <p>
+	 * Only requests that change state and whose body can be held in memory
+	 * are stored: GET requests and {@link StreamingBodyDataProvider} bodies
+	 * that can't be repeated or are of unknown length, e.g. compressed as
+	 * they are written, are always started right away.  An
+	 * {@link EncodedBodyDataProvider} body is stored encoded, along with its
+	 * {@code Content-Encoding}.  Requests queue behind any that are
+	 * already stored, or that may be until storage has been read, to keep
+	 * their order.  A request that is stored after being started keeps its
+	 * place ahead of those made while it was underway, and stored requests
+	 * aren't replayed until it has finished.
+	 *
+	 * @return the started operation, or null if the request was stored.
+	 */
+	public <TResponse, TResult> ServiceOperation<TResponse, TResult> beginRequest(
+		String uri,
+		ServiceMethod method,
+		Map<String, String> headers,
+		Map<String, String> queryParameters,
+		BodyDataProvider bodyDataProvider,
+		ServiceResponseFormat<TResponse> responseFormat,
+		ServiceResponseTransform<TResponse, TResult> responseTransform,
+		final ServiceClientCompletion<TResult> completion)
+	{
+		if (method == ServiceMethod.GET || !isStorable(bodyDataProvider))
+		{
+			return _serviceClient.beginRequest(uri, method, headers,
+				queryParameters, bodyDataProvider, responseFormat,
+				responseTransform, completion, ServiceOperationPriority.NORMAL,
+				false);
+		}
+
+		byte[] bodyData = null;
+		Map<String, String> entryHeaders = headers;
+		if (bodyDataProvider != null)
+		{
+			// sent as stored, so the encoding has to go with it
+			bodyData = bodyDataProvider.getBodyData();
+			String contentEncoding =
+				bodyDataProvider instanceof EncodedBodyDataProvider
+					? ((EncodedBodyDataProvider) bodyDataProvider)
+						.getContentEncoding()
+					: null;
+			if (bodyData != null && contentEncoding != null)
+			{
+				entryHeaders = headers == null ? new HashMap<String, String>()
+					: new HashMap<>(headers);
+				entryHeaders.put("Content-Encoding", contentEncoding);
+			}
+		}
+		final Entry entry = new Entry(uri, method, entryHeaders,
+			queryParameters, bodyData, _nextSequence.getAndIncrement());
+		if (!isConnected() || !_loaded || _pendingCount.get() > 0)
+		{
+			store(entry, completion, false);
+			return null;
+		}
+
+		// holds back replay of requests stored meanwhile, which may have to
+		// go after this one
+		_inFlightCount.incrementAndGet();
+		return _serviceClient.beginRequest(uri, method, entry.getHeaders(),
+			queryParameters, entry.getBodyData() == null ? null
+				: new ByteBodyDataProvider(entry.getBodyData()),
+			responseFormat, responseTransform, resultContainer -> {
+				// no response because the connection went away: keep it; it
+				// may have got through, which its idempotency key covers
+				if (resultContainer.serviceResultStatus
+					== ServiceResultStatus.FAILED
+					&& resultContainer.serviceResponseCode <= 0
+					&& _connectivityListener.getState()
+						== NetworkConnectivityListener.State.NOT_CONNECTED)
+				{
+					store(entry, completion, true);
+					return;
+				}
+
+				_inFlightCount.decrementAndGet();
+				replay();
+				if (completion != null)
+				{
+					completion.onCompletion(resultContainer);
+				}
+			}, ServiceOperationPriority.NORMAL, false);
+	}
+
+	/**
+	 * Replays stored requests now if there is connectivity, e.g. after a
+	 * replay stopped on a server error.  Does nothing if a replay is already
+	 * underway.
+	 */
+	public void replay()
+	{
+		_executor.execute(this::replayNextBatch);
+	}
+
+	/**
+	 * Stops replaying on reconnect.  Stored requests stay in storage for the
+	 * next outbox opened on the same file.
+	 */
+	public void close()
+	{
+		_connectivityListener.unregisterHandler(_connectivityHandler);
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	/**
+	 * @return false only if the listener knows there is no connectivity.
+	 */
+	private boolean isConnected()
+	{
+		return _connectivityListener.getState()
+			!= NetworkConnectivityListener.State.NOT_CONNECTED;
+	}
+
+	/**
+	 * @return true if the body can be read into memory and sent again as is.
+	 */
+	private static boolean isStorable(BodyDataProvider bodyDataProvider)
+	{
+		if (!(bodyDataProvider instanceof StreamingBodyDataProvider))
+		{
+			return true;
+		}
+		StreamingBodyDataProvider streamingBody =
+			(StreamingBodyDataProvider) bodyDataProvider;
+		return streamingBody.isRepeatable()
+			&& streamingBody.getContentLength() >= 0;
+	}
+
+	private static <TResult> void raiseArchived(
+		ServiceClientCompletion<TResult> completion, boolean stored)
+	{
+		if (completion != null)
+		{
+			completion.onCompletion(new ServiceResultContainer<TResult>(null,
+				stored ? ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_ARCHIVED
+					: ServiceClientConstants.SERVICE_RESPONSE_STATUS_CODE_ARCHIVE_FAILED,
+				null, ServiceResultStatus.FAILED));
+		}
+	}
+
+	/**
+	 * @param started whether the request was started before being stored,
+	 *                i.e. counted in {@link #_inFlightCount}.
+	 */
+	private <TResult> void store(final Entry entry,
+		final ServiceClientCompletion<TResult> completion, final boolean started)
+	{
+		// counted right away, so requests made next queue behind it
+		_pendingCount.incrementAndGet();
+		_executor.execute(() -> {
+			// in the order the requests were made, which a started one may
+			// be behind by now
+			int index = _entries.size();
+			while (index > 0
+				&& _entries.get(index - 1).getSequence() > entry.getSequence())
+			{
+				--index;
+			}
+			_entries.add(index, entry);
+			final boolean stored = save();
+			if (!stored)
+			{
+				_entries.remove(entry);
+				_pendingCount.decrementAndGet();
+			}
+			if (started)
+			{
+				_inFlightCount.decrementAndGet();
+			}
+			_serviceClient.getCompletionExecutor().execute(
+				() -> raiseArchived(completion, stored));
+			replayNextBatch();
+		});
+	}
+
+	/**
+	 * Runs on the outbox thread, like every method below that touches the
+	 * entries.
+	 */
+	private void load()
+	{
+		ArrayList<Entry> entries =
+			StorageHelper.loadFromInternalStorage(_filename, _context);
+		if (entries != null && !entries.isEmpty())
+		{
+			// stored ones were made first
+			_entries.addAll(0, entries);
+			_pendingCount.addAndGet(entries.size());
+		}
+		_loaded = true;
+	}
+
+	/**
+	 * @return false if storage couldn't be updated, in which case it still
+	 *         holds what it did before.
+	 */
+	private boolean save()
+	{
+		try
+		{
+			if (_entries.isEmpty())
+			{
+				if (!_context.deleteFile(_filename)
+					&& _context.getFileStreamPath(_filename).exists())
+				{
+					throw new IOException("Unable to delete " + _filename);
+				}
+			}
+			else
+			{
+				StorageHelper.writeToInternalStorage(_filename, _entries,
+					_context);
+			}
+			return true;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			Logger.e(getClass().getName(), "Unable to save outbox.", e);
+			return false;
+		}
+	}
+
+	private void replayNextBatch()
+	{
+		if (_replaying || _entries.isEmpty() || !isConnected()
+			|| _inFlightCount.get() > 0)
+		{
+			return;
+		}
+		_replaying = true;
+
+		List<Entry> batch = new ArrayList<>(_entries.subList(0,
+			Math.min(_batchSize, _entries.size())));
+		replayEntry(batch, new ArrayList<ServiceResultContainer<?>>(
+			batch.size()));
+	}
+
+	private void replayEntry(final List<Entry> batch,
+		final List<ServiceResultContainer<?>> resultContainers)
+	{
+		Entry entry = batch.get(resultContainers.size());
+		ServiceRequestOptions options = new ServiceRequestOptions();
+		options.setCompletionExecutor(DirectExecutor.getInstance());
+		_serviceClient.<byte[], byte[]>beginRequest(entry.getUri(),
+			entry.getMethod(), entry.getHeaders(), entry.getQueryParameters(),
+			entry.getBodyData() == null ? null
+				: new ByteBodyDataProvider(entry.getBodyData()),
+			ServiceResponseFormat.RAW, null,
+			resultContainer -> _executor.execute(() ->
+				entryReplayed(batch, resultContainers, resultContainer)),
+			ServiceOperationPriority.NORMAL, false, options);
+	}
+
+	private void entryReplayed(List<Entry> batch,
+		List<ServiceResultContainer<?>> resultContainers,
+		ServiceResultContainer<byte[]> resultContainer)
+	{
+		// a client error won't go away, anything else is worth another try
+		int responseCode = resultContainer.serviceResponseCode;
+		boolean done = resultContainer.serviceResultStatus
+			!= ServiceResultStatus.CANCELLED && responseCode > 0
+			&& responseCode < 500;
+		if (done)
+		{
+			resultContainers.add(resultContainer);
+			if (resultContainers.size() < batch.size())
+			{
+				replayEntry(batch, resultContainers);
+				return;
+			}
+		}
+
+		// drop what was sent, once per batch
+		int sentCount = resultContainers.size();
+		if (sentCount > 0)
+		{
+			_entries.subList(0, sentCount).clear();
+			_pendingCount.addAndGet(-sentCount);
+
+			// already sent, so it's only logged; they'd be sent again after
+			// a restart
+			save();
+
+			Listener listener = _listener;
+			if (listener != null)
+			{
+				listener.onReplayed(Collections.unmodifiableList(
+					batch.subList(0, sentCount)),
+					Collections.unmodifiableList(resultContainers));
+			}
+		}
+		_replaying = false;
+
+		if (done)
+		{
+			replayNextBatch();
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	public interface Listener
+	{
+		/**
+		 * Invoked on the outbox thread after a batch of stored requests has
+		 * been sent.
+		 *
+		 * @param resultContainers the result of each request, in the order
+		 *                         of {@code entries}.
+		 */
+		void onReplayed(List<Entry> entries,
+			List<ServiceResultContainer<?>> resultContainers);
+	}
+
+	/**
+	 * A request stored for replay.
+	 */
+	public static final class Entry implements Serializable
+	{
+		// [region] constants
+
+		private static final long serialVersionUID = 1L;
+
+		// [endregion]
+
+
+		// [region] instance variables
+
+		private final String _uri;
+		private final ServiceMethod _method;
+		private final HashMap<String, String> _headers;
+		private final HashMap<String, String> _queryParameters;
+		private final byte[] _bodyData;
+		private final long _createdAt;
+		private final transient long _sequence;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		Entry(String uri, ServiceMethod method, Map<String, String> headers,
+			Map<String, String> queryParameters, byte[] bodyData,
+			long sequence)
+		{
+			_uri = uri;
+			_method = method;
+			_headers = headers == null ? new HashMap<String, String>()
+				: new HashMap<>(headers);
+			if (!containsHeader(_headers,
+				ServiceClientConstants.IDEMPOTENCY_KEY_HEADER))
+			{
+				_headers.put(ServiceClientConstants.IDEMPOTENCY_KEY_HEADER,
+					UUID.randomUUID().toString());
+			}
+			_queryParameters = queryParameters == null ? null
+				: new HashMap<>(queryParameters);
+			_bodyData = bodyData;
+			_createdAt = System.currentTimeMillis();
+			_sequence = sequence;
+		}
+
+		// [endregion]
+
+
+		// [region] getter/setter methods
+
+		public String getUri()
+		{
+			return _uri;
+		}
+
+		public ServiceMethod getMethod()
+		{
+			return _method;
+		}
+
+		public Map<String, String> getHeaders()
+		{
+			return _headers;
+		}
+
+		public Map<String, String> getQueryParameters()
+		{
+			return _queryParameters;
+		}
+
+		public byte[] getBodyData()
+		{
+			return _bodyData;
+		}
+
+		/**
+		 * @return when the request was made, in milliseconds since the epoch.
+		 */
+		public long getCreatedAt()
+		{
+			return _createdAt;
+		}
+
+		/**
+		 * @return position in the order requests were made since the outbox
+		 *         was opened; 0 for those loaded from storage.
+		 */
+		long getSequence()
+		{
+			return _sequence;
+		}
+
+		// [endregion]
+
+
+		// [region] private methods
+
+		private static boolean containsHeader(Map<String, String> headers,
+			String name)
+		{
+			for (String field : headers.keySet())
+			{
+				if (name.equalsIgnoreCase(field))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// [endregion]
+
+	} // class Entry
+
+	// [endregion]
+
+} // class ServiceOutbox
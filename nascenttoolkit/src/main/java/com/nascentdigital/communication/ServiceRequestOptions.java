@@ -0,0 +1,125 @@
+package com.nascentdigital.communication;
+
+import java.util.concurrent.Executor;
+
+
+/**
+ * Optional per-request settings for
+ * {@link ServiceClient#beginRequest(String, ServiceMethod, java.util.Map,
+ * java.util.Map, BodyDataProvider, ServiceResponseFormat,
+ * ServiceResponseTransform, ServiceClientCompletion, ServiceOperationPriority,
+ * boolean, ServiceRequestOptions)}.
+ */
+public class ServiceRequestOptions
+{
+	// [region] instance variables
+
+	private Object _tag;
+	private Executor _completionExecutor;
+	private long _deadlineInMilliseconds;
+	private int _connectTimeoutInMilliseconds;
+	private int _readTimeoutInMilliseconds;
+	private int _writeTimeoutInMilliseconds;
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public Object getTag()
+	{
+		return _tag;
+	}
+
+	/**
+	 * Groups the request with others sharing the same tag, so they can be
+	 * cancelled together with {@link ServiceClient#cancelRequests(Object)}.
+	 */
+	public void setTag(Object tag)
+	{
+		_tag = tag;
+	}
+
+	public Executor getCompletionExecutor()
+	{
+		return _completionExecutor;
+	}
+
+	/**
+	 * Delivers this request's completion on {@code completionExecutor}
+	 * instead of the client's
+	 * {@link ServiceClient#getCompletionExecutor() completion executor}.
+	 */
+	public void setCompletionExecutor(Executor completionExecutor)
+	{
+		_completionExecutor = completionExecutor;
+	}
+
+	public long getDeadlineInMilliseconds()
+	{
+		return _deadlineInMilliseconds;
+	}
+
+	/**
+	 * Bounds the whole request, from when it is started through queueing,
+	 * every retry and reading the body.  Once the deadline passes the
+	 * exchange is aborted and the request fails with
+	 * {@link ServiceClientConstants#SERVICE_RESPONSE_STATUS_CODE_DEADLINE_EXCEEDED}.
+	 *
+	 * @param deadlineInMilliseconds the time allowed, or 0 for the client's
+	 *                               {@link ServiceClient#getDeadlineInMilliseconds()
+	 *                               default}.
+	 */
+	public void setDeadlineInMilliseconds(long deadlineInMilliseconds)
+	{
+		_deadlineInMilliseconds = deadlineInMilliseconds;
+	}
+
+	public int getConnectTimeoutInMilliseconds()
+	{
+		return _connectTimeoutInMilliseconds;
+	}
+
+	/**
+	 * @param connectTimeoutInMilliseconds time allowed to establish each
+	 *                                     connection, or 0 for the client's
+	 *                                     default.
+	 */
+	public void setConnectTimeoutInMilliseconds(int connectTimeoutInMilliseconds)
+	{
+		_connectTimeoutInMilliseconds = connectTimeoutInMilliseconds;
+	}
+
+	public int getReadTimeoutInMilliseconds()
+	{
+		return _readTimeoutInMilliseconds;
+	}
+
+	/**
+	 * @param readTimeoutInMilliseconds time allowed for each read of the
+	 *                                  response to make progress, or 0 for the
+	 *                                  client's default.
+	 */
+	public void setReadTimeoutInMilliseconds(int readTimeoutInMilliseconds)
+	{
+		_readTimeoutInMilliseconds = readTimeoutInMilliseconds;
+	}
+
+	public int getWriteTimeoutInMilliseconds()
+	{
+		return _writeTimeoutInMilliseconds;
+	}
+
+	/**
+	 * @param writeTimeoutInMilliseconds time allowed for each write of the
+	 *                                   request body to make progress, or 0
+	 *                                   for the client's default.
+	 */
+	public void setWriteTimeoutInMilliseconds(int writeTimeoutInMilliseconds)
+	{
+		_writeTimeoutInMilliseconds = writeTimeoutInMilliseconds;
+	}
+
+	// [endregion]
+
+} // class ServiceRequestOptions
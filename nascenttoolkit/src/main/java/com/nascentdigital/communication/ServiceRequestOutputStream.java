@@ -0,0 +1,139 @@
+package com.nascentdigital.communication;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+
+
+/**
+ * Request body stream that counts the bytes written and fails with an
+ * {@link InterruptedIOException} once the owning operation's thread has been
+ * interrupted, so a cancelled upload stops part way.
+ * <p>
+ * It also tracks how long the current write has been blocked, so a watchdog
+ * can abort a stalled upload; the resulting failure is reported as a
+ * {@link SocketTimeoutException}.
+ */
+final class ServiceRequestOutputStream extends FilterOutputStream
+{
+	// [region] instance variables
+
+	private final Thread _ownerThread;
+	private long _count;
+	private volatile long _writeStartedAt;
+	private volatile boolean _timedOut;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	ServiceRequestOutputStream(OutputStream out, Thread ownerThread)
+	{
+		super(out);
+
+		_ownerThread = ownerThread;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	long getCount()
+	{
+		return _count;
+	}
+
+	/**
+	 * Called by the write watchdog.
+	 *
+	 * @return true if the current write has been blocked longer than
+	 *         {@code writeTimeoutInNanos}, in which case the stream has been
+	 *         marked as timed out and the connection should be aborted.
+	 */
+	boolean checkWriteTimeout(long writeTimeoutInNanos)
+	{
+		long writeStartedAt = _writeStartedAt;
+		if (writeStartedAt == 0
+			|| System.nanoTime() - writeStartedAt <= writeTimeoutInNanos)
+		{
+			return false;
+		}
+		_timedOut = true;
+		return true;
+	}
+
+	@Override
+	public void write(int value) throws IOException
+	{
+		throwIfInterrupted();
+		beginWrite();
+		try
+		{
+			out.write(value);
+		}
+		catch (IOException e)
+		{
+			throw endWriteWithError(e);
+		}
+		_writeStartedAt = 0;
+		++_count;
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int count) throws IOException
+	{
+		// FilterOutputStream writes arrays a byte at a time
+		throwIfInterrupted();
+		beginWrite();
+		try
+		{
+			out.write(buffer, offset, count);
+		}
+		catch (IOException e)
+		{
+			throw endWriteWithError(e);
+		}
+		_writeStartedAt = 0;
+		_count += count;
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private void beginWrite()
+	{
+		// zero means no write in progress
+		long now = System.nanoTime();
+		_writeStartedAt = now == 0 ? 1 : now;
+	}
+
+	private IOException endWriteWithError(IOException e)
+	{
+		_writeStartedAt = 0;
+		if (_timedOut)
+		{
+			SocketTimeoutException timeout =
+				new SocketTimeoutException("Write timed out.");
+			timeout.initCause(e);
+			return timeout;
+		}
+		return e;
+	}
+
+	private void throwIfInterrupted() throws InterruptedIOException
+	{
+		if (_ownerThread.isInterrupted())
+		{
+			throw new InterruptedIOException("Service operation cancelled.");
+		}
+	}
+
+	// [endregion]
+
+} // class ServiceRequestOutputStream
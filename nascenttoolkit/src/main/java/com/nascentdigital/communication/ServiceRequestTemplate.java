@@ -0,0 +1,377 @@
+package com.nascentdigital.communication;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A request to a frequently called endpoint, parsed once and then expanded
+ * cheaply for each call.
+ * <p>
+ * The URI template may contain {@code {name}} placeholders in its path and as
+ * query parameter values, e.g.
+ * {@code https://api.example.com/users/{id}/posts?limit={limit}&sort=recent}.
+ * Literal parts, query names and values included, are used as written and so
+ * must already be encoded; placeholder values are percent-encoded as they are
+ * appended, without intermediate strings when they need no escaping.  A query
+ * parameter whose value is null is left out, while every path placeholder
+ * requires a value.
+ * <p>
+ * Templates are immutable and can be shared between threads; execute them
+ * with {@link ServiceClient#beginRequest(ServiceRequestTemplate, String[],
+ * BodyDataProvider, ServiceResponseFormat, ServiceResponseTransform,
+ * ServiceClientCompletion)}.
+ */
+public final class ServiceRequestTemplate
+{
+	// [region] constants
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final ServiceMethod _method;
+	private final String _uriTemplate;
+	private final Map<String, String> _headers;
+	private final List<String> _parameterNames;
+	private final String[] _pathLiterals;
+	private final int[] _pathParameters;
+	private final String[] _queryNames;
+	private final String[] _queryPairs;
+	private final int[] _queryParameters;
+	private final int _literalLength;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public ServiceRequestTemplate(ServiceMethod method, String uriTemplate)
+	{
+		this(method, uriTemplate, null);
+	}
+
+	/**
+	 * @param headers headers sent with every request made from the template.
+	 */
+	public ServiceRequestTemplate(ServiceMethod method, String uriTemplate,
+		Map<String, String> headers)
+	{
+		if (method == null || uriTemplate == null)
+		{
+			throw new IllegalArgumentException(
+				"method and uriTemplate are required.");
+		}
+
+		_method = method;
+		_uriTemplate = uriTemplate;
+		_headers = headers == null ? null : Collections.unmodifiableMap(
+			new LinkedHashMap<>(headers));
+
+		ArrayList<String> parameterNames = new ArrayList<>();
+		int queryStart = uriTemplate.indexOf('?');
+		String path = queryStart == -1 ? uriTemplate
+			: uriTemplate.substring(0, queryStart);
+
+		// path: literals around placeholders
+		ArrayList<String> pathLiterals = new ArrayList<>();
+		ArrayList<Integer> pathParameters = new ArrayList<>();
+		int position = 0;
+		while (true)
+		{
+			int open = path.indexOf('{', position);
+			if (open == -1)
+			{
+				pathLiterals.add(path.substring(position));
+				break;
+			}
+			int close = path.indexOf('}', open);
+			if (close == -1)
+			{
+				throw new IllegalArgumentException(
+					"Unclosed placeholder in " + uriTemplate);
+			}
+			pathLiterals.add(path.substring(position, open));
+			pathParameters.add(getParameterIndex(parameterNames,
+				path.substring(open + 1, close)));
+			position = close + 1;
+		}
+
+		// query: a literal pair, or a name with a placeholder value
+		ArrayList<String> queryNames = new ArrayList<>();
+		ArrayList<String> queryPairs = new ArrayList<>();
+		ArrayList<Integer> queryParameters = new ArrayList<>();
+		if (queryStart != -1)
+		{
+			for (String pair : uriTemplate.substring(queryStart + 1).split("&"))
+			{
+				if (pair.length() == 0)
+				{
+					continue;
+				}
+				int separator = pair.indexOf('=');
+				String value = separator == -1 ? ""
+					: pair.substring(separator + 1);
+				if (value.length() > 2 && value.charAt(0) == '{'
+					&& value.charAt(value.length() - 1) == '}')
+				{
+					queryNames.add(pair.substring(0, separator));
+					queryPairs.add(null);
+					queryParameters.add(getParameterIndex(parameterNames,
+						value.substring(1, value.length() - 1)));
+				}
+				else
+				{
+					queryNames.add(null);
+					queryPairs.add(pair);
+					queryParameters.add(-1);
+				}
+			}
+		}
+
+		_parameterNames = Collections.unmodifiableList(parameterNames);
+		_pathLiterals = pathLiterals.toArray(new String[pathLiterals.size()]);
+		_pathParameters = toArray(pathParameters);
+		_queryNames = queryNames.toArray(new String[queryNames.size()]);
+		_queryPairs = queryPairs.toArray(new String[queryPairs.size()]);
+		_queryParameters = toArray(queryParameters);
+
+		int literalLength = 0;
+		for (String literal : _pathLiterals)
+		{
+			literalLength += literal.length();
+		}
+		for (int i = 0; i < _queryNames.length; ++i)
+		{
+			literalLength += _queryPairs[i] != null
+				? _queryPairs[i].length() + 1 : _queryNames[i].length() + 2;
+		}
+		_literalLength = literalLength;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public ServiceMethod getMethod()
+	{
+		return _method;
+	}
+
+	public String getUriTemplate()
+	{
+		return _uriTemplate;
+	}
+
+	/**
+	 * @return the template's headers, which can't be modified, or null.
+	 */
+	public Map<String, String> getHeaders()
+	{
+		return _headers;
+	}
+
+	/**
+	 * @return the placeholder names, in the order their values are given to
+	 *         {@link #expand(String...)}.
+	 */
+	public List<String> getParameterNames()
+	{
+		return _parameterNames;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * @param parameterValues a value for each of
+	 *                        {@link #getParameterNames()}, in order.
+	 * @return the URI with every placeholder replaced.
+	 */
+	public String expand(String... parameterValues)
+	{
+		int parameterCount = parameterValues == null ? 0
+			: parameterValues.length;
+		if (parameterCount != _parameterNames.size())
+		{
+			throw new IllegalArgumentException("Expected "
+				+ _parameterNames.size() + " parameter values, got "
+				+ parameterCount + ".");
+		}
+
+		StringBuilder uri = new StringBuilder(_literalLength
+			+ parameterCount * 16);
+		for (int i = 0; i < _pathParameters.length; ++i)
+		{
+			uri.append(_pathLiterals[i]);
+			String value = parameterValues[_pathParameters[i]];
+			if (value == null)
+			{
+				throw new IllegalArgumentException("Path parameter "
+					+ _parameterNames.get(_pathParameters[i])
+					+ " requires a value.");
+			}
+			encode(uri, value, false);
+		}
+		uri.append(_pathLiterals[_pathLiterals.length - 1]);
+
+		char separator = '?';
+		for (int i = 0; i < _queryNames.length; ++i)
+		{
+			String pair = _queryPairs[i];
+			if (pair != null)
+			{
+				uri.append(separator).append(pair);
+			}
+			else
+			{
+				String value = parameterValues[_queryParameters[i]];
+				if (value == null)
+				{
+					continue;
+				}
+				uri.append(separator).append(_queryNames[i]).append('=');
+				encode(uri, value, true);
+			}
+			separator = '&';
+		}
+		return uri.toString();
+	}
+
+	/**
+	 * @param parameterValues values by placeholder name; missing names count
+	 *                        as null.
+	 */
+	public String expand(Map<String, String> parameterValues)
+	{
+		String[] values = new String[_parameterNames.size()];
+		for (int i = 0; i < values.length; ++i)
+		{
+			values[i] = parameterValues.get(_parameterNames.get(i));
+		}
+		return expand(values);
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private static int getParameterIndex(List<String> parameterNames,
+		String name)
+	{
+		if (name.length() == 0)
+		{
+			throw new IllegalArgumentException("Empty placeholder name.");
+		}
+		int index = parameterNames.indexOf(name);
+		if (index == -1)
+		{
+			index = parameterNames.size();
+			parameterNames.add(name);
+		}
+		return index;
+	}
+
+	private static int[] toArray(List<Integer> values)
+	{
+		int[] array = new int[values.size()];
+		for (int i = 0; i < array.length; ++i)
+		{
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Appends {@code value} percent-encoded as UTF-8.  Query values follow
+	 * {@link java.net.URLEncoder} (spaces become {@code +}); path values keep
+	 * only unreserved characters.
+	 */
+	private static void encode(StringBuilder out, String value,
+		boolean query)
+	{
+		int length = value.length();
+		for (int i = 0; i < length; ++i)
+		{
+			char c = value.charAt(i);
+			if (isUnreserved(c, query))
+			{
+				out.append(c);
+			}
+			else if (query && c == ' ')
+			{
+				out.append('+');
+			}
+			else if (c < 0x80)
+			{
+				appendEscaped(out, c);
+			}
+			else if (c < 0x800)
+			{
+				appendEscaped(out, 0xC0 | (c >> 6));
+				appendEscaped(out, 0x80 | (c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length
+				&& Character.isLowSurrogate(value.charAt(i + 1)))
+			{
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				appendEscaped(out, 0xF0 | (codePoint >> 18));
+				appendEscaped(out, 0x80 | ((codePoint >> 12) & 0x3F));
+				appendEscaped(out, 0x80 | ((codePoint >> 6) & 0x3F));
+				appendEscaped(out, 0x80 | (codePoint & 0x3F));
+			}
+			else if (Character.isSurrogate(c))
+			{
+				// unpaired surrogates encode as '?', as URLEncoder does
+				appendEscaped(out, '?');
+			}
+			else
+			{
+				appendEscaped(out, 0xE0 | (c >> 12));
+				appendEscaped(out, 0x80 | ((c >> 6) & 0x3F));
+				appendEscaped(out, 0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	private static boolean isUnreserved(char c, boolean query)
+	{
+		if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+			|| (c >= '0' && c <= '9'))
+		{
+			return true;
+		}
+		switch (c)
+		{
+			case '-':
+			case '.':
+			case '_':
+				return true;
+			case '*':
+				return query;
+			case '~':
+				return !query;
+			default:
+				return false;
+		}
+	}
+
+	private static void appendEscaped(StringBuilder out, int octet)
+	{
+		out.append('%').append(HEX_DIGITS[(octet >> 4) & 0xF])
+			.append(HEX_DIGITS[octet & 0xF]);
+	}
+
+	// [endregion]
+
+} // class ServiceRequestTemplate
@@ -0,0 +1,1024 @@
+package com.nascentdigital.communication;
+
+import com.nascentdigital.util.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Disk-backed HTTP response cache for {@link ServiceClient} GET requests,
+ * following the private cache rules of RFC 7234.
+ * <p>
+ * Fresh responses (per {@code Cache-Control: max-age}, {@code Expires} or the
+ * {@code Last-Modified} heuristic) are served without touching the network.
+ * Stale responses carrying an {@code ETag} or {@code Last-Modified} validator
+ * are revalidated with {@code If-None-Match} / {@code If-Modified-Since}, and a
+ * {@code 304 Not Modified} is answered from the stored body.  Successful
+ * POST, PUT and DELETE requests invalidate the stored response for their URI.
+ * <p>
+ * Only requests issued with {@code useCaches} set consult the cache.  Entries
+ * are evicted least recently used first once the cache exceeds its maximum
+ * size.
+ */
+public class ServiceResponseCache
+{
+	// [region] constants
+
+	private static final int ENTRY_FORMAT_VERSION = 1;
+	private static final String META_EXTENSION = ".meta";
+	private static final String BODY_EXTENSION = ".body";
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final int DRAIN_BUFFER_SIZE = 8192;
+	private static final long MAX_HEURISTIC_FRESHNESS = 24 * 60 * 60 * 1000;
+	private static final List<String> NOT_MODIFIED_IGNORED_HEADERS =
+		Arrays.asList("content-length", "content-encoding", "transfer-encoding");
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final File _directory;
+	private final long _maxSizeInBytes;
+	private final LinkedHashMap<String, Long> _entrySizes;
+	private long _size;
+	private boolean _initialized;
+	private long _hitCount;
+	private long _conditionalHitCount;
+	private long _missCount;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public ServiceResponseCache(File directory, long maxSizeInBytes)
+	{
+		_directory = directory;
+		_maxSizeInBytes = maxSizeInBytes;
+		_entrySizes = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public File getDirectory()
+	{
+		return _directory;
+	}
+
+	public long getMaxSizeInBytes()
+	{
+		return _maxSizeInBytes;
+	}
+
+	public synchronized long getSizeInBytes()
+	{
+		initialize();
+		return _size;
+	}
+
+	/**
+	 * @return number of responses served from the cache without a network
+	 *         request.
+	 */
+	public synchronized long getHitCount()
+	{
+		return _hitCount;
+	}
+
+	/**
+	 * @return number of responses served from the cache after a successful
+	 *         revalidation (a {@code 304 Not Modified}).
+	 */
+	public synchronized long getConditionalHitCount()
+	{
+		return _conditionalHitCount;
+	}
+
+	/**
+	 * @return number of cacheable requests that needed a full download.
+	 */
+	public synchronized long getMissCount()
+	{
+		return _missCount;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * Removes the stored response for the given URI, if any.
+	 */
+	public synchronized void remove(String uri)
+	{
+		initialize();
+		removeEntry(keyFor(uri));
+	}
+
+	/**
+	 * Removes every stored response.
+	 */
+	public synchronized void clear()
+	{
+		initialize();
+		for (String key : new ArrayList<>(_entrySizes.keySet()))
+		{
+			removeEntry(key);
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] internal methods
+
+	/**
+	 * @return the stored response for the request, or null if there isn't one
+	 *         or it was stored for different values of its {@code Vary}
+	 *         headers.
+	 */
+	synchronized Entry get(String uri, Map<String, String> requestHeaders)
+	{
+		initialize();
+		String key = keyFor(uri);
+		if (!_entrySizes.containsKey(key))
+		{
+			return null;
+		}
+
+		Entry entry;
+		try
+		{
+			entry = readEntry(key);
+		}
+		catch (IOException e)
+		{
+			Logger.w(getClass().getName(), "Discarding unreadable cache entry: " + uri);
+			removeEntry(key);
+			return null;
+		}
+
+		if (!entry.uri.equals(uri) || !entry.matchesVary(requestHeaders))
+		{
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Wraps a response stream so the body is stored as it is read.  The entry
+	 * is committed once the end of the body is reached, including by draining
+	 * what a format left unread when the stream is closed; a body that fails
+	 * to read, is cut off by cancellation or outgrows the cache is
+	 * discarded.
+	 *
+	 * @return the stream to read the response from, which is {@code body}
+	 *         itself if the response isn't cacheable.
+	 */
+	InputStream storeWhileReading(String uri, Map<String, String> requestHeaders,
+		int responseCode, Map<String, List<String>> responseHeaders,
+		InputStream body, long requestTime, long responseTime)
+	{
+		Entry entry = createEntry(uri, requestHeaders, responseCode,
+			responseHeaders, requestTime, responseTime);
+		if (entry == null)
+		{
+			return body;
+		}
+
+		try
+		{
+			return new StoringInputStream(body, entry);
+		}
+		catch (IOException e)
+		{
+			Logger.e(getClass().getName(), "Error storing cache entry.", e);
+			return body;
+		}
+	}
+
+	/**
+	 * Refreshes a stored entry with the headers of a {@code 304 Not Modified}
+	 * response.
+	 *
+	 * @return the refreshed entry, whose stored body is still valid.
+	 */
+	Entry update(Entry entry, Map<String, List<String>> notModifiedHeaders,
+		long requestTime, long responseTime)
+	{
+		// headers in the 304 replace the stored ones (RFC 7234 4.3.4)
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		headers.putAll(entry.responseHeaders);
+		for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet())
+		{
+			if (header.getKey() != null && !NOT_MODIFIED_IGNORED_HEADERS
+				.contains(header.getKey().toLowerCase()))
+			{
+				headers.put(header.getKey(), header.getValue());
+			}
+		}
+
+		Entry updated = new Entry(entry.key, entry.uri, entry.responseCode,
+			headers, entry.varyHeaders, requestTime, responseTime);
+		synchronized (this)
+		{
+			try
+			{
+				File metaFile = new File(_directory, entry.key + META_EXTENSION);
+				long bodySize = new File(_directory, entry.key + BODY_EXTENSION).length();
+				writeMeta(updated, metaFile);
+				track(entry.key, metaFile.length() + bodySize);
+			}
+			catch (IOException e)
+			{
+				Logger.e(getClass().getName(), "Error updating cache entry.", e);
+			}
+		}
+		return updated;
+	}
+
+	/**
+	 * @return the stored body of the entry, or null if it has been evicted
+	 *         since the entry was looked up.
+	 */
+	synchronized InputStream openBody(Entry entry)
+	{
+		try
+		{
+			return new FileInputStream(
+				new File(_directory, entry.key + BODY_EXTENSION));
+		}
+		catch (FileNotFoundException e)
+		{
+			removeEntry(entry.key);
+			return null;
+		}
+	}
+
+	synchronized void recordHit()
+	{
+		++_hitCount;
+	}
+
+	synchronized void recordConditionalHit()
+	{
+		++_conditionalHitCount;
+	}
+
+	synchronized void recordMiss()
+	{
+		++_missCount;
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private Entry createEntry(String uri, Map<String, String> requestHeaders,
+		int responseCode, Map<String, List<String>> responseHeaders,
+		long requestTime, long responseTime)
+	{
+		synchronized (this)
+		{
+			initialize();
+		}
+
+		if (responseCode != HttpURLConnection.HTTP_OK)
+		{
+			return null;
+		}
+
+		CacheControl requestCacheControl = CacheControl.parse(
+			getRequestHeader(requestHeaders, "Cache-Control"));
+		CacheControl responseCacheControl = CacheControl.parse(
+			ServiceResponseHeaders.getHeaderValue(responseHeaders, "Cache-Control"));
+		if (requestCacheControl.noStore || responseCacheControl.noStore)
+		{
+			return null;
+		}
+
+		// only worth storing if it can be reused or revalidated
+		boolean reusable = responseCacheControl.maxAgeSeconds > 0
+			|| ServiceResponseHeaders.getHeaderValue(responseHeaders, "Expires") != null
+			|| ServiceResponseHeaders.getHeaderValue(responseHeaders, "ETag") != null
+			|| ServiceResponseHeaders.getHeaderValue(responseHeaders, "Last-Modified") != null;
+		if (!reusable)
+		{
+			return null;
+		}
+
+		// record the request headers the response varies on
+		Map<String, String> varyHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		String vary = ServiceResponseHeaders.getHeaderValue(responseHeaders, "Vary");
+		if (vary != null)
+		{
+			for (String field : vary.split(","))
+			{
+				field = field.trim();
+				if (field.equals("*"))
+				{
+					return null;
+				}
+				if (field.length() > 0)
+				{
+					String value = getRequestHeader(requestHeaders, field);
+					varyHeaders.put(field, value == null ? "" : value);
+				}
+			}
+		}
+
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (Map.Entry<String, List<String>> header : responseHeaders.entrySet())
+		{
+			// skip the status line, which HttpURLConnection keys by null
+			if (header.getKey() != null)
+			{
+				headers.put(header.getKey(), header.getValue());
+			}
+		}
+
+		return new Entry(keyFor(uri), uri, responseCode, headers, varyHeaders,
+			requestTime, responseTime);
+	}
+
+	private synchronized void commit(Entry entry, File bodyTempFile)
+		throws IOException
+	{
+		initialize();
+
+		File metaFile = new File(_directory, entry.key + META_EXTENSION);
+		File bodyFile = new File(_directory, entry.key + BODY_EXTENSION);
+		if (!bodyTempFile.renameTo(bodyFile))
+		{
+			bodyTempFile.delete();
+			throw new IOException("Unable to commit cache entry: " + bodyFile);
+		}
+		writeMeta(entry, metaFile);
+		track(entry.key, metaFile.length() + bodyFile.length());
+	}
+
+	private void track(String key, long entrySize)
+	{
+		Long previousSize = _entrySizes.put(key, entrySize);
+		_size += entrySize - (previousSize == null ? 0 : previousSize);
+
+		// evict least recently used entries, never the one just stored
+		Iterator<Map.Entry<String, Long>> iterator = _entrySizes.entrySet().iterator();
+		while (_size > _maxSizeInBytes && iterator.hasNext())
+		{
+			Map.Entry<String, Long> eldest = iterator.next();
+			if (eldest.getKey().equals(key))
+			{
+				continue;
+			}
+			iterator.remove();
+			_size -= eldest.getValue();
+			deleteFiles(eldest.getKey());
+		}
+	}
+
+	private void removeEntry(String key)
+	{
+		Long entrySize = _entrySizes.remove(key);
+		if (entrySize != null)
+		{
+			_size -= entrySize;
+		}
+		deleteFiles(key);
+	}
+
+	private void deleteFiles(String key)
+	{
+		new File(_directory, key + META_EXTENSION).delete();
+		new File(_directory, key + BODY_EXTENSION).delete();
+	}
+
+	private void initialize()
+	{
+		if (_initialized)
+		{
+			return;
+		}
+		_initialized = true;
+
+		if (!_directory.exists() && !_directory.mkdirs())
+		{
+			Logger.e(getClass().getName(), "Unable to create cache directory: "
+				+ _directory);
+			return;
+		}
+
+		// rebuild the index, oldest first, and drop abandoned temp files
+		File[] files = _directory.listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		List<File> metaFiles = new ArrayList<>();
+		for (File file : files)
+		{
+			if (file.getName().endsWith(META_EXTENSION))
+			{
+				metaFiles.add(file);
+			}
+			else if (file.getName().endsWith(TEMP_EXTENSION))
+			{
+				file.delete();
+			}
+		}
+		Collections.sort(metaFiles, (lhs, rhs) -> {
+			long result = lhs.lastModified() - rhs.lastModified();
+			return result < 0 ? -1 : (result > 0 ? 1 : 0);
+		});
+		for (File metaFile : metaFiles)
+		{
+			String name = metaFile.getName();
+			String key = name.substring(0, name.length() - META_EXTENSION.length());
+			File bodyFile = new File(_directory, key + BODY_EXTENSION);
+			if (bodyFile.exists())
+			{
+				track(key, metaFile.length() + bodyFile.length());
+			}
+			else
+			{
+				metaFile.delete();
+			}
+		}
+	}
+
+	private Entry readEntry(String key) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+			new FileInputStream(new File(_directory, key + META_EXTENSION))));
+		try
+		{
+			if (in.readInt() != ENTRY_FORMAT_VERSION)
+			{
+				throw new IOException("Unsupported cache entry version.");
+			}
+			String uri = in.readUTF();
+			int responseCode = in.readInt();
+			long requestTime = in.readLong();
+			long responseTime = in.readLong();
+
+			Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			int headerCount = in.readInt();
+			for (int i = 0; i < headerCount; ++i)
+			{
+				String name = in.readUTF();
+				int valueCount = in.readInt();
+				List<String> values = new ArrayList<>(valueCount);
+				for (int j = 0; j < valueCount; ++j)
+				{
+					values.add(in.readUTF());
+				}
+				headers.put(name, values);
+			}
+
+			Map<String, String> varyHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			int varyCount = in.readInt();
+			for (int i = 0; i < varyCount; ++i)
+			{
+				varyHeaders.put(in.readUTF(), in.readUTF());
+			}
+
+			return new Entry(key, uri, responseCode, headers, varyHeaders,
+				requestTime, responseTime);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private void writeMeta(Entry entry, File metaFile) throws IOException
+	{
+		File tempFile = File.createTempFile(entry.key, TEMP_EXTENSION, _directory);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(tempFile)));
+		try
+		{
+			out.writeInt(ENTRY_FORMAT_VERSION);
+			out.writeUTF(entry.uri);
+			out.writeInt(entry.responseCode);
+			out.writeLong(entry.requestTime);
+			out.writeLong(entry.responseTime);
+
+			out.writeInt(entry.responseHeaders.size());
+			for (Map.Entry<String, List<String>> header : entry.responseHeaders.entrySet())
+			{
+				out.writeUTF(header.getKey());
+				out.writeInt(header.getValue().size());
+				for (String value : header.getValue())
+				{
+					out.writeUTF(value == null ? "" : value);
+				}
+			}
+
+			out.writeInt(entry.varyHeaders.size());
+			for (Map.Entry<String, String> varyHeader : entry.varyHeaders.entrySet())
+			{
+				out.writeUTF(varyHeader.getKey());
+				out.writeUTF(varyHeader.getValue());
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		if (!tempFile.renameTo(metaFile))
+		{
+			tempFile.delete();
+			throw new IOException("Unable to commit cache entry: " + metaFile);
+		}
+	}
+
+	private static String getRequestHeader(Map<String, String> requestHeaders,
+		String name)
+	{
+		if (requestHeaders == null)
+		{
+			return null;
+		}
+		for (Map.Entry<String, String> header : requestHeaders.entrySet())
+		{
+			if (header.getKey() != null && header.getKey().equalsIgnoreCase(name))
+			{
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	private static String keyFor(String uri)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			byte[] hash = digest.digest(uri.getBytes(ServiceClientConstants.UTF8_ENCODING));
+			StringBuilder key = new StringBuilder(hash.length * 2);
+			for (byte b : hash)
+			{
+				key.append(Character.forDigit((b >> 4) & 0xf, 16));
+				key.append(Character.forDigit(b & 0xf, 16));
+			}
+			return key.toString();
+		}
+		catch (NoSuchAlgorithmException | IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long parseSeconds(String value)
+	{
+		if (value == null)
+		{
+			return -1;
+		}
+		try
+		{
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return -1;
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	/**
+	 * A stored response.
+	 */
+	static final class Entry
+	{
+
+		// [region] instance variables
+
+		final String key;
+		final String uri;
+		final int responseCode;
+		final Map<String, List<String>> responseHeaders;
+		final Map<String, String> varyHeaders;
+		final long requestTime;
+		final long responseTime;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		private Entry(String key, String uri, int responseCode,
+			Map<String, List<String>> responseHeaders,
+			Map<String, String> varyHeaders, long requestTime,
+			long responseTime)
+		{
+			this.key = key;
+			this.uri = uri;
+			this.responseCode = responseCode;
+			this.responseHeaders = responseHeaders;
+			this.varyHeaders = varyHeaders;
+			this.requestTime = requestTime;
+			this.responseTime = responseTime;
+		}
+
+		// [endregion]
+
+
+		// [region] methods
+
+		/**
+		 * @return true if the entry can be served without revalidation.
+		 */
+		boolean isFresh(Map<String, String> requestHeaders, long now)
+		{
+			CacheControl requestCacheControl = CacheControl.parse(
+				getRequestHeader(requestHeaders, "Cache-Control"));
+			CacheControl responseCacheControl = CacheControl.parse(
+				getHeader("Cache-Control"));
+			if (requestCacheControl.noCache || responseCacheControl.noCache)
+			{
+				return false;
+			}
+
+			long age = getCurrentAge(now);
+			if (requestCacheControl.maxAgeSeconds >= 0
+				&& age > requestCacheControl.maxAgeSeconds * 1000)
+			{
+				return false;
+			}
+			return age < getFreshnessLifetime(responseCacheControl);
+		}
+
+		/**
+		 * @return true if a conditional request can revalidate the entry.
+		 */
+		boolean hasValidators()
+		{
+			return getHeader("ETag") != null || getHeader("Last-Modified") != null;
+		}
+
+		void addValidators(HttpURLConnection connection)
+		{
+			String etag = getHeader("ETag");
+			if (etag != null)
+			{
+				connection.setRequestProperty("If-None-Match", etag);
+			}
+			String lastModified = getHeader("Last-Modified");
+			if (lastModified != null)
+			{
+				connection.setRequestProperty("If-Modified-Since", lastModified);
+			}
+		}
+
+		void addValidators(Map<String, String> requestHeaders)
+		{
+			String etag = getHeader("ETag");
+			if (etag != null)
+			{
+				requestHeaders.put("If-None-Match", etag);
+			}
+			String lastModified = getHeader("Last-Modified");
+			if (lastModified != null)
+			{
+				requestHeaders.put("If-Modified-Since", lastModified);
+			}
+		}
+
+		private boolean matchesVary(Map<String, String> requestHeaders)
+		{
+			for (Map.Entry<String, String> varyHeader : varyHeaders.entrySet())
+			{
+				String value = getRequestHeader(requestHeaders, varyHeader.getKey());
+				if (!varyHeader.getValue().equals(value == null ? "" : value))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private long getCurrentAge(long now)
+		{
+			// RFC 7234 4.2.3
+			long date = ServiceResponseHeaders.parseHttpDate(getHeader("Date"));
+			long apparentAge = date == -1 ? 0 : Math.max(0, responseTime - date);
+			long ageValue = Math.max(0, parseSeconds(getHeader("Age")) * 1000);
+			long correctedInitialAge = Math.max(apparentAge,
+				ageValue + (responseTime - requestTime));
+			return correctedInitialAge + (now - responseTime);
+		}
+
+		private long getFreshnessLifetime(CacheControl cacheControl)
+		{
+			// RFC 7234 4.2.1
+			if (cacheControl.maxAgeSeconds >= 0)
+			{
+				return cacheControl.maxAgeSeconds * 1000;
+			}
+
+			long date = ServiceResponseHeaders.parseHttpDate(getHeader("Date"));
+			long servedDate = date == -1 ? responseTime : date;
+			String expiresValue = getHeader("Expires");
+			if (expiresValue != null)
+			{
+				long expires = ServiceResponseHeaders.parseHttpDate(expiresValue);
+				return expires == -1 ? 0 : Math.max(0, expires - servedDate);
+			}
+
+			// heuristic freshness (RFC 7234 4.2.2), skipped for query URIs
+			// as earlier HTTP caches did
+			long lastModified = ServiceResponseHeaders.parseHttpDate(
+				getHeader("Last-Modified"));
+			if (lastModified != -1 && uri.indexOf('?') == -1)
+			{
+				return Math.min(MAX_HEURISTIC_FRESHNESS,
+					Math.max(0, (servedDate - lastModified) / 10));
+			}
+			return 0;
+		}
+
+		private String getHeader(String name)
+		{
+			return ServiceResponseHeaders.getHeaderValue(responseHeaders, name);
+		}
+
+		// [endregion]
+
+	} // class Entry
+
+	private static final class CacheControl
+	{
+
+		// [region] instance variables
+
+		boolean noStore;
+		boolean noCache;
+		long maxAgeSeconds = -1;
+
+		// [endregion]
+
+
+		// [region] methods
+
+		static CacheControl parse(String value)
+		{
+			CacheControl cacheControl = new CacheControl();
+			if (value == null)
+			{
+				return cacheControl;
+			}
+
+			for (String directive : value.split(","))
+			{
+				directive = directive.trim().toLowerCase();
+				if (directive.equals("no-store"))
+				{
+					cacheControl.noStore = true;
+				}
+				else if (directive.equals("no-cache")
+					|| directive.startsWith("no-cache="))
+				{
+					cacheControl.noCache = true;
+				}
+				else if (directive.startsWith("max-age="))
+				{
+					String seconds = directive.substring("max-age=".length());
+					cacheControl.maxAgeSeconds = parseSeconds(
+						seconds.replace("\"", ""));
+				}
+			}
+			return cacheControl;
+		}
+
+		// [endregion]
+
+	} // class CacheControl
+
+	/**
+	 * Copies a response body into a temp file as it is read, committing it as
+	 * a cache entry once the end of the body is reached.
+	 */
+	private final class StoringInputStream extends FilterInputStream
+	{
+
+		// [region] instance variables
+
+		private final Entry _entry;
+		private final File _tempFile;
+		private OutputStream _out;
+		private long _length;
+		private boolean _committed;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		StoringInputStream(InputStream in, Entry entry) throws IOException
+		{
+			super(in);
+
+			_entry = entry;
+			_tempFile = File.createTempFile(entry.key, TEMP_EXTENSION, _directory);
+			_out = new BufferedOutputStream(new FileOutputStream(_tempFile));
+		}
+
+		// [endregion]
+
+
+		// [region] methods
+
+		@Override
+		public int read() throws IOException
+		{
+			int value;
+			try
+			{
+				value = super.read();
+			}
+			catch (IOException e)
+			{
+				abandon();
+				throw e;
+			}
+			if (value == -1)
+			{
+				complete();
+			}
+			else
+			{
+				store(new byte[] {(byte)value}, 0, 1);
+			}
+			return value;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int count) throws IOException
+		{
+			int read;
+			try
+			{
+				read = super.read(buffer, offset, count);
+			}
+			catch (IOException e)
+			{
+				abandon();
+				throw e;
+			}
+			if (read == -1)
+			{
+				complete();
+			}
+			else
+			{
+				store(buffer, offset, read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long count) throws IOException
+		{
+			// skipped bytes can't be stored
+			abandon();
+			return super.skip(count);
+		}
+
+		@Override
+		public boolean markSupported()
+		{
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			// formats that stop at their closing token leave the tail unread;
+			// store it too, unless the read was cut off by cancellation
+			if (_out != null && !Thread.currentThread().isInterrupted())
+			{
+				drain();
+			}
+			abandon();
+			super.close();
+		}
+
+		private void drain()
+		{
+			byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+			try
+			{
+				while (_out != null && read(buffer, 0, buffer.length) != -1)
+				{
+					// stored as it is read
+				}
+			}
+			catch (IOException e)
+			{
+				// the partial body has been discarded
+			}
+		}
+
+		private void store(byte[] buffer, int offset, int count)
+		{
+			if (_out == null)
+			{
+				return;
+			}
+			_length += count;
+			if (_length > _maxSizeInBytes)
+			{
+				// could never fit, so stop copying it
+				abandon();
+				return;
+			}
+			try
+			{
+				_out.write(buffer, offset, count);
+			}
+			catch (IOException e)
+			{
+				Logger.e(getClass().getName(), "Error storing cache entry.", e);
+				abandon();
+			}
+		}
+
+		private void complete()
+		{
+			if (_out == null || _committed)
+			{
+				return;
+			}
+			try
+			{
+				_out.close();
+				_out = null;
+				commit(_entry, _tempFile);
+				_committed = true;
+			}
+			catch (IOException e)
+			{
+				Logger.e(getClass().getName(), "Error storing cache entry.", e);
+				_tempFile.delete();
+			}
+		}
+
+		private void abandon()
+		{
+			if (_out != null)
+			{
+				try
+				{
+					_out.close();
+				}
+				catch (IOException e)
+				{
+					// discarding anyway
+				}
+				_out = null;
+				_tempFile.delete();
+			}
+		}
+
+		// [endregion]
+
+	} // class StoringInputStream
+
+	// [endregion]
+
+} // class ServiceResponseCache
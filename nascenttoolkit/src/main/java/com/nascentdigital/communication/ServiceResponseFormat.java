@@ -1,9 +1,13 @@
 package com.nascentdigital.communication;
 
+import java.io.InputStream;
 import java.util.Map;
 import org.json.JSONObject;
 import org.w3c.dom.Document;
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.nascentdigital.util.IndexedJson;
 
 
 public abstract class ServiceResponseFormat<T>
@@ -18,6 +22,29 @@ public abstract class ServiceResponseFormat<T>
 	public static final ServiceResponseFormat<JsonElement> GSON = new GsonFormat();
 	public static final ServiceResponseFormat<Document> XML = new XmlFormat();
 
+	/**
+	 * Indexes the body in one pass and decodes values only as they are read,
+	 * for transforms that need a few fields of a large document.
+	 */
+	public static final ServiceResponseFormat<IndexedJson> INDEXED_JSON =
+		new IndexedJsonFormat();
+
+	/**
+	 * Hands the live response stream to the {@link ServiceResponseTransform}
+	 * instead of buffering the body, so parsing overlaps with the download.
+	 * The stream is only valid for the duration of
+	 * {@link ServiceResponseTransform#transformResponseData(Object)} and is
+	 * closed by the operation once the transform returns.
+	 */
+	public static final ServiceResponseFormat<InputStream> STREAM = new StreamFormat();
+
+	// [endregion]
+
+
+	// [region] class variables
+
+	private static final Gson _defaultGson = new Gson();
+
 	// [endregion]
 
 
@@ -38,11 +65,83 @@ public abstract class ServiceResponseFormat<T>
 	// [endregion]
 
 
+	// [region] public methods
+
+	/**
+	 * Creates a format that binds the response body directly into a model of
+	 * the given class using a streaming {@link com.google.gson.stream.JsonReader},
+	 * without materializing the body as a String or a {@link JsonElement} tree.
+	 */
+	public static <T> ServiceResponseFormat<T> gson(Class<T> modelClass)
+	{
+		return new TypedGsonFormat<>(modelClass, _defaultGson);
+	}
+
+	/**
+	 * Creates a streaming Gson format for a generic model type, e.g.
+	 * {@code gson(new TypeToken<List<Account>>() {})}.
+	 */
+	public static <T> ServiceResponseFormat<T> gson(TypeToken<T> modelType)
+	{
+		return new TypedGsonFormat<>(modelType.getType(), _defaultGson);
+	}
+
+	/**
+	 * Creates a streaming Gson format for the given model type.  The type must
+	 * match {@code T}; prefer the {@link Class} or {@link TypeToken} overloads
+	 * where possible.
+	 */
+	public static <T> ServiceResponseFormat<T> gson(java.lang.reflect.Type modelType)
+	{
+		return new TypedGsonFormat<>(modelType, _defaultGson);
+	}
+
+	/**
+	 * Creates a streaming Gson format that binds with a custom configured
+	 * {@link Gson} instance (type adapters, naming policies, etc).
+	 */
+	public static <T> ServiceResponseFormat<T> gson(java.lang.reflect.Type modelType,
+		Gson gson)
+	{
+		return new TypedGsonFormat<>(modelType, gson);
+	}
+
+	/**
+	 * Creates a format that binds the response body with a pull parser as it
+	 * downloads, instead of building a DOM {@link Document} of the whole
+	 * body.  Documents with a DOCTYPE are rejected, as with {@link #XML}.
+	 */
+	public static <T> ServiceResponseFormat<T> xml(ServiceXmlBinder<T> binder)
+	{
+		return new XmlPullFormat<>(binder);
+	}
+
+	/**
+	 * @return true if the response body is consumed directly from the
+	 *         connection stream rather than buffered into memory first.
+	 */
+	public boolean isStreaming()
+	{
+		return type.streaming;
+	}
+
+	// [endregion]
+
+
 	// [region] internal data structures
 
 	protected enum Type
 	{
-		RAW, STRING, FORM_ENCODED, JSON, GSON, XML
+		RAW(false), STRING(false), FORM_ENCODED(false), JSON(false),
+		GSON(false), XML(false), STREAM(true), GSON_TYPED(true), XML_PULL(true),
+		INDEXED_JSON(false);
+
+		final boolean streaming;
+
+		Type(boolean streaming)
+		{
+			this.streaming = streaming;
+		}
 
 	} // Type
 
@@ -131,6 +230,83 @@ public abstract class ServiceResponseFormat<T>
 
 	} // class GsonFormat
 
+	private static final class StreamFormat extends ServiceResponseFormat<InputStream>
+	{
+
+		// [region] constructors
+
+		private StreamFormat()
+		{
+			super(Type.STREAM);
+		}
+
+		// [endregion]
+
+	} // class StreamFormat
+
+	private static final class IndexedJsonFormat
+		extends ServiceResponseFormat<IndexedJson>
+	{
+
+		// [region] constructors
+
+		private IndexedJsonFormat()
+		{
+			super(Type.INDEXED_JSON);
+		}
+
+		// [endregion]
+
+	} // class IndexedJsonFormat
+
+	static final class TypedGsonFormat<T> extends ServiceResponseFormat<T>
+	{
+
+		// [region] instance variables
+
+		final java.lang.reflect.Type modelType;
+		final Gson gson;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		private TypedGsonFormat(java.lang.reflect.Type modelType, Gson gson)
+		{
+			super(Type.GSON_TYPED);
+
+			this.modelType = modelType;
+			this.gson = gson;
+		}
+
+		// [endregion]
+
+	} // class TypedGsonFormat
+
+	static final class XmlPullFormat<T> extends ServiceResponseFormat<T>
+	{
+
+		// [region] instance variables
+
+		final ServiceXmlBinder<T> binder;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		private XmlPullFormat(ServiceXmlBinder<T> binder)
+		{
+			super(Type.XML_PULL);
+
+			this.binder = binder;
+		}
+
+		// [endregion]
+
+	} // class XmlPullFormat
+
 	// [endregion]
 
 } // class ResponseFormat
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.nascentdigital.communication;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * Created by andyrohan on 2016-07-12.
@@ -12,4 +16,53 @@ public class ServiceResponseHeaders {
     public ServiceResponseHeaders(Map<String, List<String>> headers) {
         this.headers = headers;
     }
+
+    /**
+     * @return the first value of the named header (matched case-insensitively),
+     *         or null if it isn't present.
+     */
+    public String getHeaderValue(String name) {
+        return getHeaderValue(headers, name);
+    }
+
+    /**
+     * @return the named HTTP-date header in milliseconds since the epoch, or -1
+     *         if it isn't present or can't be parsed.
+     */
+    public long getDateHeaderValue(String name) {
+        return parseHttpDate(getHeaderValue(name));
+    }
+
+    static String getHeaderValue(Map<String, List<String>> headers,
+                                 String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (header.getKey() != null
+                    && header.getKey().equalsIgnoreCase(name)
+                    && header.getValue() != null
+                    && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    static long parseHttpDate(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        // SimpleDateFormat isn't thread-safe, and dates are rare enough that
+        // caching a formatter isn't worth it
+        SimpleDateFormat format = new SimpleDateFormat(
+                "EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value.trim()).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
 }
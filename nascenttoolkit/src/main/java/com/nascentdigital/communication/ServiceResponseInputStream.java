@@ -0,0 +1,74 @@
+package com.nascentdigital.communication;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+
+/**
+ * Response stream handed to streaming response formats. Reads fail with an
+ * {@link InterruptedIOException} once the owning operation's thread has been
+ * interrupted, so a cancelled operation stops consuming the body even while
+ * the transform is in control of the read loop.
+ */
+final class ServiceResponseInputStream extends FilterInputStream
+{
+	// [region] instance variables
+
+	private final Thread _ownerThread;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	ServiceResponseInputStream(InputStream in, Thread ownerThread)
+	{
+		super(in);
+
+		_ownerThread = ownerThread;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	@Override
+	public int read() throws IOException
+	{
+		throwIfInterrupted();
+		return super.read();
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException
+	{
+		throwIfInterrupted();
+		return super.read(buffer, offset, count);
+	}
+
+	@Override
+	public long skip(long count) throws IOException
+	{
+		throwIfInterrupted();
+		return super.skip(count);
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private void throwIfInterrupted() throws InterruptedIOException
+	{
+		if (_ownerThread.isInterrupted())
+		{
+			throw new InterruptedIOException("Service operation cancelled.");
+		}
+	}
+
+	// [endregion]
+
+} // class ServiceResponseInputStream
@@ -4,7 +4,8 @@ public interface ServiceResponseTransform <TResponse, TResult>
 {
 	/**
 	 * 
-	 * @param responseData will be one of byte[], string, map, json, or document (based on service format)
+	 * @param responseData will be one of byte[], string, map, json, document, or the live
+	 *                     response stream for STREAM (based on service format)
 	 * @return
 	 */
 	TResult transformResponseData (TResponse responseData) throws ServiceResponseTransformException;
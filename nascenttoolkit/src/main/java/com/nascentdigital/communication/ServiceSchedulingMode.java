@@ -0,0 +1,17 @@
+package com.nascentdigital.communication;
+
+/**
+ * How the {@link ServiceClient} request queue orders waiting operations.
+ */
+public enum ServiceSchedulingMode {
+	/**
+	 * Highest {@link ServiceOperationPriority} first, FIFO within a priority.
+	 */
+	STRICT_PRIORITY,
+
+	/**
+	 * Like {@link #STRICT_PRIORITY}, but an operation's priority rises the
+	 * longer it waits, so low priority operations can't be starved.
+	 */
+	PRIORITY_AGING
+}
@@ -0,0 +1,31 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+
+/**
+ * Supplies the connections used by a {@link ServiceClient}.  Every connection
+ * returned from {@link #openConnection(URL)} is handed back exactly once via
+ * {@link #releaseConnection(HttpURLConnection, boolean)}.
+ */
+public interface ServiceTransport
+{
+	/**
+	 * Opens an unconnected connection for the given URL.  It shouldn't wait
+	 * for capacity on the host: {@link ServiceClient} host limits hold
+	 * requests back without tying up a worker thread.
+	 */
+	HttpURLConnection openConnection(URL url) throws IOException;
+
+	/**
+	 * Returns a connection to the transport.
+	 *
+	 * @param reusable true if the response body was fully consumed and closed,
+	 *                 so the underlying socket can be kept alive for reuse;
+	 *                 false if the exchange failed and the socket should be
+	 *                 torn down.
+	 */
+	void releaseConnection(HttpURLConnection connection, boolean reusable);
+}
@@ -0,0 +1,25 @@
+package com.nascentdigital.communication;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+
+/**
+ * Binds an XML response to a model while it streams in, for
+ * {@link ServiceResponseFormat#xml(ServiceXmlBinder)}.
+ */
+public interface ServiceXmlBinder<T>
+{
+	/**
+	 * @param parser positioned on the root element's
+	 *               {@link XmlPullParser#START_TAG}, without namespace
+	 *               processing.  The parser is reused by later responses on
+	 *               the same thread, so it must not be kept.
+	 * @return the model passed to the
+	 *         {@link ServiceResponseTransform}.
+	 */
+	T bind(XmlPullParser parser) throws XmlPullParserException, IOException;
+
+}
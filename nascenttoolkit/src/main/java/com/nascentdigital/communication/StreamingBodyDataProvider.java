@@ -0,0 +1,32 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body data provider that writes its body straight to the connection, so
+ * large uploads run in constant memory.  Bodies of known length are sent with
+ * a fixed-length stream, others with chunked transfer encoding.
+ * <p>
+ * The service client only calls {@link #writeTo(OutputStream)};
+ * {@link #getBodyData()} is a fallback that reads the whole body into memory.
+ */
+public interface StreamingBodyDataProvider extends BodyDataProvider {
+
+	/**
+	 * @return length of the body in bytes, or -1 if it isn't known up front.
+	 */
+	long getContentLength ();
+
+	/**
+	 * Writes the body to {@code out}, without closing it.
+	 */
+	void writeTo (OutputStream out) throws IOException;
+
+	/**
+	 * @return true if the body can be written more than once, which retrying
+	 *         a request requires.
+	 */
+	boolean isRepeatable ();
+
+}
@@ -0,0 +1,161 @@
+package com.nascentdigital.communication;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+
+/**
+ * Socket factory that reports TLS handshake timing to a
+ * {@link ServiceEventListener}.  Sockets are created on the thread running
+ * the operation, which is registered with {@link #setCurrentOperation}.
+ */
+final class TimingSSLSocketFactory extends SSLSocketFactory
+{
+	// [region] class variables
+
+	private static final ThreadLocal<ServiceOperation<?, ?>> _currentOperation =
+		new ThreadLocal<>();
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final SSLSocketFactory _delegate;
+	private final ServiceEventListener _eventListener;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	TimingSSLSocketFactory(SSLSocketFactory delegate,
+		ServiceEventListener eventListener)
+	{
+		_delegate = delegate;
+		_eventListener = eventListener;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	SSLSocketFactory getDelegate()
+	{
+		return _delegate;
+	}
+
+	ServiceEventListener getEventListener()
+	{
+		return _eventListener;
+	}
+
+	static void setCurrentOperation(ServiceOperation<?, ?> serviceOperation)
+	{
+		if (serviceOperation == null)
+		{
+			_currentOperation.remove();
+		}
+		else
+		{
+			_currentOperation.set(serviceOperation);
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	@Override
+	public String[] getDefaultCipherSuites()
+	{
+		return _delegate.getDefaultCipherSuites();
+	}
+
+	@Override
+	public String[] getSupportedCipherSuites()
+	{
+		return _delegate.getSupportedCipherSuites();
+	}
+
+	@Override
+	public Socket createSocket(Socket socket, String host, int port,
+		boolean autoClose) throws IOException
+	{
+		return observe(_delegate.createSocket(socket, host, port, autoClose));
+	}
+
+	@Override
+	public Socket createSocket() throws IOException
+	{
+		return observe(_delegate.createSocket());
+	}
+
+	@Override
+	public Socket createSocket(String host, int port) throws IOException
+	{
+		return observe(_delegate.createSocket(host, port));
+	}
+
+	@Override
+	public Socket createSocket(String host, int port, InetAddress localHost,
+		int localPort) throws IOException
+	{
+		return observe(_delegate.createSocket(host, port, localHost,
+			localPort));
+	}
+
+	@Override
+	public Socket createSocket(InetAddress host, int port) throws IOException
+	{
+		return observe(_delegate.createSocket(host, port));
+	}
+
+	@Override
+	public Socket createSocket(InetAddress address, int port,
+		InetAddress localAddress, int localPort) throws IOException
+	{
+		return observe(_delegate.createSocket(address, port, localAddress,
+			localPort));
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private Socket observe(Socket socket)
+	{
+		final ServiceOperation<?, ?> serviceOperation = _currentOperation.get();
+		if (serviceOperation != null && socket instanceof SSLSocket)
+		{
+			_eventListener.secureConnectStart(serviceOperation,
+				System.nanoTime());
+			((SSLSocket)socket).addHandshakeCompletedListener(
+				new HandshakeCompletedListener()
+				{
+					@Override
+					public void handshakeCompleted(HandshakeCompletedEvent event)
+					{
+						_eventListener.secureConnectEnd(serviceOperation,
+							System.nanoTime());
+
+						// pooled sockets outlive the operation
+						event.getSocket().removeHandshakeCompletedListener(this);
+					}
+				});
+		}
+		return socket;
+	}
+
+	// [endregion]
+
+} // class TimingSSLSocketFactory
@@ -0,0 +1,17 @@
+package com.nascentdigital.communication.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Sends a parameter as the request body.  The parameter must be a String,
+ * a byte[] or a {@link com.nascentdigital.communication.BodyDataProvider}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.CLASS)
+public @interface Body
+{
+}
@@ -0,0 +1,18 @@
+package com.nascentdigital.communication.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Sends a parameter as a request header; a null value leaves the header
+ * out.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.CLASS)
+public @interface Header
+{
+	String value();
+}
@@ -0,0 +1,18 @@
+package com.nascentdigital.communication.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Binds a parameter to the {@code {name}} placeholder of a {@link Request}
+ * path.  Path values are required.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.CLASS)
+public @interface Path
+{
+	String value();
+}
@@ -0,0 +1,18 @@
+package com.nascentdigital.communication.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Appends a parameter to the query string of a {@link Request}; a null value
+ * leaves the parameter out.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.CLASS)
+public @interface Query
+{
+	String value();
+}
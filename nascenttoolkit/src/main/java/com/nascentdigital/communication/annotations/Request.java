@@ -0,0 +1,52 @@
+package com.nascentdigital.communication.annotations;
+
+import com.nascentdigital.communication.ServiceMethod;
+import com.nascentdigital.communication.ServiceOperationPriority;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Binds a method of a {@link ServiceInterface} to an endpoint.
+ * <p>
+ * The method's last parameter must be a
+ * {@link com.nascentdigital.communication.ServiceClientCompletion}; its
+ * result type selects the response format (byte[], String, form-encoded
+ * {@code Map<String, String>}, JSONObject, JsonElement, IndexedJson and
+ * Document map to the matching built-in formats, any other type is bound
+ * with Gson).  The
+ * method may return void, a
+ * {@link com.nascentdigital.communication.Cancellable} or the
+ * {@link com.nascentdigital.communication.ServiceOperation}, and may take a
+ * {@link com.nascentdigital.communication.ServiceRequestOptions}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.CLASS)
+public @interface Request
+{
+	// [region] properties
+
+	ServiceMethod method() default ServiceMethod.GET;
+
+	/**
+	 * Path relative to the base URI, with {@code {name}} placeholders bound
+	 * by {@link Path} parameters.  It may carry a fixed query string, to
+	 * which {@link Query} parameters are appended.
+	 */
+	String path();
+
+	/**
+	 * Headers sent with every call, each as {@code "Name: value"}.
+	 */
+	String[] headers() default {};
+
+	ServiceOperationPriority priority() default ServiceOperationPriority.NORMAL;
+
+	boolean useCaches() default false;
+
+	// [endregion]
+
+}
@@ -0,0 +1,32 @@
+package com.nascentdigital.communication.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks an interface whose {@link Request} methods are implemented at build
+ * time by the {@code nascenttoolkit-compiler} annotation processor.  For an
+ * interface {@code AccountService} it generates {@code AccountServiceImpl},
+ * constructed with a {@link com.nascentdigital.communication.ServiceClient}
+ * and the base URI that request paths are appended to.
+ *
+ * eg:
+ * <pre>
+ * &#64;ServiceInterface
+ * public interface AccountService
+ * {
+ *     &#64;Request(method = ServiceMethod.GET, path = "/accounts/{id}")
+ *     ServiceOperation&lt;Account, Account&gt; getAccount(&#64;Path("id") String id,
+ *         &#64;Query("expand") String expand,
+ *         ServiceClientCompletion&lt;Account&gt; completion);
+ * }
+ * </pre>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.CLASS)
+public @interface ServiceInterface
+{
+}
@@ -51,6 +51,16 @@ public class ConnectivityHelper {
         return (info != null && info.isConnected() && info.getType() == ConnectivityManager.TYPE_MOBILE);
     }
 
+    /**
+     * Check if the active network is metered, e.g. a mobile data plan
+     * @param context
+     * @return
+     */
+    public static boolean isConnectedMetered(Context context){
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return cm.isActiveNetworkMetered();
+    }
+
     /**
      * Check if there is fast connectivity
      * @param context
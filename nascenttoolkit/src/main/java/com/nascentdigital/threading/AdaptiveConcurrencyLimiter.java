@@ -0,0 +1,224 @@
+package com.nascentdigital.threading;
+
+
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * Additive-increase/multiplicative-decrease concurrency limit driven by
+ * observed latency and errors.
+ * <p>
+ * Each completed request reports its round trip time.  The limiter keeps a
+ * baseline of the lowest recent round trip time; a request that took longer
+ * than {@code latencyTolerance} times the baseline, or that failed in a way
+ * that signals overload, multiplies the limit by {@code backoffRatio}.
+ * Otherwise, while the limit is actually being used, it grows by one for
+ * every {@code limit} successful requests.
+ */
+public class AdaptiveConcurrencyLimiter
+{
+	// [region] constants
+
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+	public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+	private static final int BASELINE_WINDOW_SAMPLES = 100;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final int _minLimit;
+	private final int _maxLimit;
+	private final double _backoffRatio;
+	private final double _latencyTolerance;
+	private volatile Listener _listener;
+	private int _limit;
+	private double _increase;
+	private long _windowMinRtt;
+	private long _previousWindowMinRtt;
+	private int _windowSampleCount;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit,
+		int maxLimit)
+	{
+		this(initialLimit, minLimit, maxLimit, DEFAULT_BACKOFF_RATIO,
+			DEFAULT_LATENCY_TOLERANCE);
+	}
+
+	/**
+	 * @param backoffRatio     factor applied to the limit on overload, between
+	 *                         0 and 1.
+	 * @param latencyTolerance multiple of the baseline round trip time beyond
+	 *                         which a request counts as overloaded.
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit,
+		int maxLimit, double backoffRatio, double latencyTolerance)
+	{
+		if (minLimit < 1 || maxLimit < minLimit)
+		{
+			throw new IllegalArgumentException(
+				"Limits must satisfy 1 <= minLimit <= maxLimit.");
+		}
+		if (backoffRatio <= 0 || backoffRatio >= 1)
+		{
+			throw new IllegalArgumentException(
+				"backoffRatio must be between 0 and 1.");
+		}
+		if (latencyTolerance < 1)
+		{
+			throw new IllegalArgumentException(
+				"latencyTolerance must be at least 1.");
+		}
+
+		_minLimit = minLimit;
+		_maxLimit = maxLimit;
+		_backoffRatio = backoffRatio;
+		_latencyTolerance = latencyTolerance;
+		_limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+		_windowMinRtt = Long.MAX_VALUE;
+		_previousWindowMinRtt = Long.MAX_VALUE;
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public synchronized int getLimit()
+	{
+		return _limit;
+	}
+
+	public int getMinLimit()
+	{
+		return _minLimit;
+	}
+
+	public int getMaxLimit()
+	{
+		return _maxLimit;
+	}
+
+	/**
+	 * @return the baseline round trip time in milliseconds, or -1 before any
+	 *         request has completed.
+	 */
+	public synchronized double getBaselineLatencyInMilliseconds()
+	{
+		long baseline = getBaselineRtt();
+		return baseline == Long.MAX_VALUE ? -1 : baseline / 1000000.0;
+	}
+
+	public void setListener(Listener listener)
+	{
+		_listener = listener;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * Reports a completed request.
+	 *
+	 * @param rtt      round trip time of the request.
+	 * @param unit     unit of {@code rtt}.
+	 * @param inFlight requests in flight when it completed, including it.
+	 * @param dropped  true if the request failed in a way that indicates
+	 *                 overload (timeout, connection failure, 429 or 5xx).
+	 */
+	public void onSample(long rtt, TimeUnit unit, int inFlight,
+		boolean dropped)
+	{
+		int limit;
+		synchronized (this)
+		{
+			long rttInNanos = unit.toNanos(rtt);
+			if (!dropped)
+			{
+				updateBaseline(rttInNanos);
+			}
+
+			int previousLimit = _limit;
+			if (dropped || rttInNanos > getBaselineRtt() * _latencyTolerance)
+			{
+				_limit = Math.max(_minLimit, (int)(_limit * _backoffRatio));
+				_increase = 0;
+			}
+
+			// only grow a limit that is actually being used
+			else if (inFlight * 2 >= _limit && _limit < _maxLimit)
+			{
+				_increase += 1.0 / _limit;
+				if (_increase >= 1)
+				{
+					_increase = 0;
+					++_limit;
+				}
+			}
+
+			if (_limit == previousLimit)
+			{
+				return;
+			}
+			limit = _limit;
+		}
+
+		Listener listener = _listener;
+		if (listener != null)
+		{
+			listener.onLimitChanged(limit);
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private long getBaselineRtt()
+	{
+		return Math.min(_windowMinRtt, _previousWindowMinRtt);
+	}
+
+	/**
+	 * Tracks the minimum over the last one to two windows of samples, so the
+	 * baseline follows a network that gets permanently slower.
+	 */
+	private void updateBaseline(long rttInNanos)
+	{
+		if (rttInNanos < _windowMinRtt)
+		{
+			_windowMinRtt = rttInNanos;
+		}
+		if (++_windowSampleCount == BASELINE_WINDOW_SAMPLES)
+		{
+			_previousWindowMinRtt = _windowMinRtt;
+			_windowMinRtt = Long.MAX_VALUE;
+			_windowSampleCount = 0;
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	public interface Listener
+	{
+		void onLimitChanged(int limit);
+	}
+
+	// [endregion]
+
+}
@@ -0,0 +1,587 @@
+package com.nascentdigital.threading;
+
+
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+
+/**
+ * Unbounded blocking queue that hands out elements by priority, FIFO within a
+ * priority.
+ * <p>
+ * With aging enabled, an element's effective priority rises by one for every
+ * {@code agingIntervalInMilliseconds} it has spent waiting, so low priority
+ * work is never starved by a steady stream of higher priority work.  With an
+ * aging interval of zero the queue is strictly ordered by priority.  Ties in
+ * effective priority go to the element enqueued first.
+ * <p>
+ * The time each element spent in the queue is sampled per priority, so queue
+ * wait percentiles can be reported.
+ */
+public class AgingPriorityBlockingQueue<E> extends AbstractQueue<E>
+	implements BlockingQueue<E>
+{
+	// [region] constants
+
+	private static final int WAIT_SAMPLE_COUNT = 256;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final PriorityProvider<? super E> _priorityProvider;
+	private final ReentrantLock _lock;
+	private final Condition _notEmpty;
+	private final TreeMap<Integer, Level<E>> _levels;
+	private long _agingIntervalInNanos;
+	private long _nextSequence;
+	private int _size;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public AgingPriorityBlockingQueue(PriorityProvider<? super E> priorityProvider)
+	{
+		this(priorityProvider, 0);
+	}
+
+	public AgingPriorityBlockingQueue(PriorityProvider<? super E> priorityProvider,
+		long agingIntervalInMilliseconds)
+	{
+		if (priorityProvider == null)
+		{
+			throw new IllegalArgumentException("priorityProvider is required.");
+		}
+
+		_priorityProvider = priorityProvider;
+		_lock = new ReentrantLock();
+		_notEmpty = _lock.newCondition();
+		_levels = new TreeMap<>(Collections.reverseOrder());
+		setAgingIntervalInMilliseconds(agingIntervalInMilliseconds);
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public long getAgingIntervalInMilliseconds()
+	{
+		_lock.lock();
+		try
+		{
+			return TimeUnit.NANOSECONDS.toMillis(_agingIntervalInNanos);
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @param agingIntervalInMilliseconds wait time that raises an element's
+	 *                                    priority by one, or zero to disable
+	 *                                    aging.
+	 */
+	public void setAgingIntervalInMilliseconds(long agingIntervalInMilliseconds)
+	{
+		if (agingIntervalInMilliseconds < 0)
+		{
+			throw new IllegalArgumentException(
+				"agingIntervalInMilliseconds can't be negative.");
+		}
+
+		_lock.lock();
+		try
+		{
+			_agingIntervalInNanos =
+				TimeUnit.MILLISECONDS.toNanos(agingIntervalInMilliseconds);
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * @param priority   the priority whose waits to report.
+	 * @param percentile percentile between 0 and 100.
+	 * @return the wait time at the percentile in milliseconds, over the most
+	 *         recent elements taken at {@code priority}, or -1 if none have
+	 *         been.
+	 */
+	public double getWaitPercentile(int priority, double percentile)
+	{
+		long[] samples;
+		_lock.lock();
+		try
+		{
+			Level<E> level = _levels.get(priority);
+			if (level == null || level.waitSampleCount == 0)
+			{
+				return -1;
+			}
+			samples = Arrays.copyOf(level.waitSamples, level.waitSampleCount);
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+
+		// nearest-rank percentile
+		Arrays.sort(samples);
+		int rank = (int)Math.ceil(percentile / 100 * samples.length);
+		int index = Math.min(samples.length - 1, Math.max(0, rank - 1));
+		return samples[index] / 1000000.0;
+	}
+
+	// [endregion]
+
+
+	// [region] queue methods
+
+	@Override
+	public boolean offer(E element)
+	{
+		if (element == null)
+		{
+			throw new NullPointerException();
+		}
+
+		int priority = _priorityProvider.getPriority(element);
+		_lock.lock();
+		try
+		{
+			Level<E> level = _levels.get(priority);
+			if (level == null)
+			{
+				level = new Level<>(priority);
+				_levels.put(priority, level);
+			}
+			level.nodes.addLast(new Node<>(element, _nextSequence++,
+				System.nanoTime()));
+			++_size;
+			_notEmpty.signal();
+			return true;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(E element)
+	{
+		offer(element);
+	}
+
+	@Override
+	public boolean offer(E element, long timeout, TimeUnit unit)
+	{
+		return offer(element);
+	}
+
+	@Override
+	public E poll()
+	{
+		_lock.lock();
+		try
+		{
+			return dequeue();
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public E take() throws InterruptedException
+	{
+		_lock.lockInterruptibly();
+		try
+		{
+			while (_size == 0)
+			{
+				_notEmpty.await();
+			}
+			return dequeue();
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		long nanos = unit.toNanos(timeout);
+		_lock.lockInterruptibly();
+		try
+		{
+			while (_size == 0)
+			{
+				if (nanos <= 0)
+				{
+					return null;
+				}
+				nanos = _notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public E peek()
+	{
+		_lock.lock();
+		try
+		{
+			Level<E> level = selectLevel(System.nanoTime());
+			return level == null ? null : level.nodes.peekFirst().element;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int size()
+	{
+		_lock.lock();
+		try
+		{
+			return _size;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity()
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public boolean remove(Object element)
+	{
+		if (element == null)
+		{
+			return false;
+		}
+
+		_lock.lock();
+		try
+		{
+			for (Level<E> level : _levels.values())
+			{
+				Iterator<Node<E>> nodes = level.nodes.iterator();
+				while (nodes.hasNext())
+				{
+					if (element.equals(nodes.next().element))
+					{
+						nodes.remove();
+						--_size;
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean contains(Object element)
+	{
+		if (element == null)
+		{
+			return false;
+		}
+
+		_lock.lock();
+		try
+		{
+			for (Level<E> level : _levels.values())
+			{
+				for (Node<E> node : level.nodes)
+				{
+					if (element.equals(node.element))
+					{
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		_lock.lock();
+		try
+		{
+			for (Level<E> level : _levels.values())
+			{
+				level.nodes.clear();
+			}
+			_size = 0;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> collection)
+	{
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> collection, int maxElements)
+	{
+		if (collection == this)
+		{
+			throw new IllegalArgumentException();
+		}
+
+		_lock.lock();
+		try
+		{
+			int count = 0;
+			while (count < maxElements && _size > 0)
+			{
+				collection.add(dequeue());
+				++count;
+			}
+			return count;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	@Override
+	public Object[] toArray()
+	{
+		return snapshot().toArray();
+	}
+
+	@Override
+	public <T> T[] toArray(T[] array)
+	{
+		return snapshot().toArray(array);
+	}
+
+	/**
+	 * @return an iterator over a snapshot of the queue, in no particular order.
+	 */
+	@Override
+	public Iterator<E> iterator()
+	{
+		final Iterator<E> snapshot = snapshot().iterator();
+		return new Iterator<E>()
+		{
+			private E _current;
+
+			@Override
+			public boolean hasNext()
+			{
+				return snapshot.hasNext();
+			}
+
+			@Override
+			public E next()
+			{
+				_current = snapshot.next();
+				return _current;
+			}
+
+			@Override
+			public void remove()
+			{
+				if (_current == null)
+				{
+					throw new IllegalStateException();
+				}
+				AgingPriorityBlockingQueue.this.remove(_current);
+				_current = null;
+			}
+		};
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private ArrayList<E> snapshot()
+	{
+		_lock.lock();
+		try
+		{
+			ArrayList<E> elements = new ArrayList<>(_size);
+			for (Level<E> level : _levels.values())
+			{
+				for (Node<E> node : level.nodes)
+				{
+					elements.add(node.element);
+				}
+			}
+			return elements;
+		}
+		finally
+		{
+			_lock.unlock();
+		}
+	}
+
+	/**
+	 * Picks the level whose head should be served next.  Heads are the
+	 * longest-waiting element of their level, so only they need comparing.
+	 */
+	private Level<E> selectLevel(long now)
+	{
+		Level<E> selected = null;
+		double selectedPriority = 0;
+		long selectedSequence = 0;
+		for (Level<E> level : _levels.values())
+		{
+			Node<E> head = level.nodes.peekFirst();
+			if (head == null)
+			{
+				continue;
+			}
+
+			// without aging, the first non-empty level wins outright
+			if (_agingIntervalInNanos == 0)
+			{
+				return level;
+			}
+
+			double effectivePriority = level.priority
+				+ (double)(now - head.enqueuedAt) / _agingIntervalInNanos;
+			if (selected == null
+				|| effectivePriority > selectedPriority
+				|| (effectivePriority == selectedPriority
+					&& head.sequence < selectedSequence))
+			{
+				selected = level;
+				selectedPriority = effectivePriority;
+				selectedSequence = head.sequence;
+			}
+		}
+		return selected;
+	}
+
+	private E dequeue()
+	{
+		long now = System.nanoTime();
+		Level<E> level = selectLevel(now);
+		if (level == null)
+		{
+			return null;
+		}
+
+		Node<E> node = level.nodes.pollFirst();
+		--_size;
+		level.recordWait(now - node.enqueuedAt);
+		return node.element;
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	/**
+	 * Supplies the priority of queued elements; higher values are served
+	 * first.
+	 */
+	public interface PriorityProvider<E>
+	{
+		int getPriority(E element);
+	}
+
+	private static final class Node<E>
+	{
+		final E element;
+		final long sequence;
+		final long enqueuedAt;
+
+		Node(E element, long sequence, long enqueuedAt)
+		{
+			this.element = element;
+			this.sequence = sequence;
+			this.enqueuedAt = enqueuedAt;
+		}
+
+	} // class Node
+
+	private static final class Level<E>
+	{
+		final int priority;
+		final ArrayDeque<Node<E>> nodes;
+		final long[] waitSamples;
+		int waitSampleCount;
+		private int _nextWaitSample;
+
+		Level(int priority)
+		{
+			this.priority = priority;
+			this.nodes = new ArrayDeque<>();
+			this.waitSamples = new long[WAIT_SAMPLE_COUNT];
+		}
+
+		void recordWait(long waitInNanos)
+		{
+			waitSamples[_nextWaitSample] = waitInNanos;
+			_nextWaitSample = (_nextWaitSample + 1) % waitSamples.length;
+			if (waitSampleCount < waitSamples.length)
+			{
+				++waitSampleCount;
+			}
+		}
+
+	} // class Level
+
+	// [endregion]
+
+}
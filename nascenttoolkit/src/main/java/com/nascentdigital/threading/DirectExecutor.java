@@ -0,0 +1,45 @@
+package com.nascentdigital.threading;
+
+
+
+import java.util.concurrent.Executor;
+
+
+
+/**
+ * Executor that runs tasks immediately on the calling thread.
+ */
+public final class DirectExecutor implements Executor
+{
+	// [region] class variables
+
+	private static final DirectExecutor _instance = new DirectExecutor();
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	private DirectExecutor()
+	{
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	public static DirectExecutor getInstance()
+	{
+		return _instance;
+	}
+
+	@Override
+	public void execute(Runnable runnable)
+	{
+		runnable.run();
+	}
+
+	// [endregion]
+
+}
@@ -0,0 +1,92 @@
+package com.nascentdigital.threading;
+
+
+
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+
+/**
+ * Executor that runs tasks on the main thread in batches, once per display
+ * frame.  A burst of tasks costs one posted message and one frame callback
+ * instead of a message each, and the tasks run back to back before the frame
+ * is drawn.  Tasks run in the order they were submitted.
+ */
+public final class FrameBatchingExecutor implements Executor
+{
+	// [region] class variables
+
+	private static final FrameBatchingExecutor _instance =
+		new FrameBatchingExecutor();
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final ConcurrentLinkedQueue<Runnable> _pendingTasks;
+	private final AtomicBoolean _frameScheduled;
+	private final Choreographer.FrameCallback _frameCallback;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	private FrameBatchingExecutor()
+	{
+		_pendingTasks = new ConcurrentLinkedQueue<>();
+		_frameScheduled = new AtomicBoolean();
+		_frameCallback = frameTimeNanos -> runPendingTasks();
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	public static FrameBatchingExecutor getInstance()
+	{
+		return _instance;
+	}
+
+	@Override
+	public void execute(Runnable runnable)
+	{
+		_pendingTasks.add(runnable);
+		if (_frameScheduled.compareAndSet(false, true))
+		{
+			// the Choreographer belongs to the main thread
+			MainThreadExecutor.getInstance().execute(() -> Choreographer
+				.getInstance().postFrameCallback(_frameCallback));
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private void runPendingTasks()
+	{
+		// tasks submitted from here on go into the next frame
+		_frameScheduled.set(false);
+		int count = _pendingTasks.size();
+		for (int i = 0; i < count; ++i)
+		{
+			Runnable task = _pendingTasks.poll();
+			if (task == null)
+			{
+				break;
+			}
+			task.run();
+		}
+	}
+
+	// [endregion]
+
+}
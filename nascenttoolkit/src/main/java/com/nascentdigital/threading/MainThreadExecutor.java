@@ -0,0 +1,57 @@
+package com.nascentdigital.threading;
+
+
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+
+
+/**
+ * Executor that posts tasks to the main (UI) thread through a single shared
+ * {@link Handler}.
+ */
+public final class MainThreadExecutor implements Executor
+{
+	// [region] class variables
+
+	private static final MainThreadExecutor _instance = new MainThreadExecutor();
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final Handler _handler;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	private MainThreadExecutor()
+	{
+		_handler = new Handler(Looper.getMainLooper());
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	public static MainThreadExecutor getInstance()
+	{
+		return _instance;
+	}
+
+	@Override
+	public void execute(Runnable runnable)
+	{
+		_handler.post(runnable);
+	}
+
+	// [endregion]
+
+}
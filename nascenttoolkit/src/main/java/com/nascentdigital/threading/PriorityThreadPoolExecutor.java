@@ -27,6 +27,18 @@ public class PriorityThreadPoolExecutor<TRunnable extends Runnable>
 				(PriorityBlockingQueue<Runnable>)workQueue);
 	}
 
+	@SuppressWarnings("unchecked")
+	public PriorityThreadPoolExecutor(int corePoolSize,
+		int maximumPoolSize,
+		long keepAliveTime,
+		TimeUnit unit,
+		AgingPriorityBlockingQueue<TRunnable> workQueue)
+	{
+		_executor =
+			new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, unit,
+				(AgingPriorityBlockingQueue<Runnable>)workQueue);
+	}
+
 	// [endregion]
 
 	// [region] public methods
@@ -36,6 +48,52 @@ public class PriorityThreadPoolExecutor<TRunnable extends Runnable>
 		_executor.execute(runnable);
 	}
 
+	/**
+	 * @return number of threads currently running tasks.
+	 */
+	public int getActiveCount()
+	{
+		return _executor.getActiveCount();
+	}
+
+	public int getCorePoolSize()
+	{
+		return _executor.getCorePoolSize();
+	}
+
+	public int getMaximumPoolSize()
+	{
+		return _executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Resizes the pool at runtime.  The maximum size is always kept at or
+	 * above the core size while changing.
+	 */
+	public void setPoolSize(int corePoolSize, int maximumPoolSize)
+	{
+		if (maximumPoolSize >= _executor.getMaximumPoolSize())
+		{
+			_executor.setMaximumPoolSize(maximumPoolSize);
+			_executor.setCorePoolSize(corePoolSize);
+		}
+		else
+		{
+			_executor.setCorePoolSize(corePoolSize);
+			_executor.setMaximumPoolSize(maximumPoolSize);
+		}
+	}
+
+	/**
+	 * Removes a task that is still waiting in the queue.
+	 *
+	 * @return true if the task was removed and will not be run.
+	 */
+	public boolean remove(TRunnable runnable)
+	{
+		return _executor.remove(runnable);
+	}
+
 	// [endregion]
 
 }
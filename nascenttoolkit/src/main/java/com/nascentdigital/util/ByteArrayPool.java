@@ -0,0 +1,193 @@
+package com.nascentdigital.util;
+
+
+import java.util.ArrayDeque;
+
+
+/**
+ * Bounded pool of reusable byte arrays, kept in power-of-two size classes.
+ * <p>
+ * {@link #acquire(int)} hands out an array of at least the requested size
+ * from the matching class, allocating one when the class is empty.  Arrays
+ * given back with {@link #release(byte[])} are kept until the pool holds
+ * {@code maxPooledBytes}; beyond that, and for arrays larger than
+ * {@code maxArraySize}, they are left to the garbage collector.
+ */
+public final class ByteArrayPool
+{
+	// [region] constants
+
+	public static final int MIN_ARRAY_SIZE = 4 * 1024;
+	public static final int DEFAULT_MAX_ARRAY_SIZE = 1024 * 1024;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final long _maxPooledBytes;
+	private final int _maxArraySize;
+	private final ArrayDeque<byte[]>[] _sizeClasses;
+	private long _pooledBytes;
+	private long _hitCount;
+	private long _missCount;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	public ByteArrayPool(long maxPooledBytes)
+	{
+		this(maxPooledBytes, DEFAULT_MAX_ARRAY_SIZE);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ByteArrayPool(long maxPooledBytes, int maxArraySize)
+	{
+		if (maxArraySize < MIN_ARRAY_SIZE)
+		{
+			throw new IllegalArgumentException("maxArraySize must be at least "
+				+ MIN_ARRAY_SIZE + ".");
+		}
+
+		_maxPooledBytes = maxPooledBytes;
+		_maxArraySize = roundUpToSizeClass(maxArraySize);
+		_sizeClasses = new ArrayDeque[getSizeClass(_maxArraySize) + 1];
+		for (int i = 0; i < _sizeClasses.length; ++i)
+		{
+			_sizeClasses[i] = new ArrayDeque<>();
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] getter/setter methods
+
+	public long getMaxPooledBytes()
+	{
+		return _maxPooledBytes;
+	}
+
+	public synchronized long getPooledBytes()
+	{
+		return _pooledBytes;
+	}
+
+	/**
+	 * @return number of acquisitions served from the pool.
+	 */
+	public synchronized long getHitCount()
+	{
+		return _hitCount;
+	}
+
+	/**
+	 * @return number of acquisitions that had to allocate.
+	 */
+	public synchronized long getMissCount()
+	{
+		return _missCount;
+	}
+
+	public synchronized double getHitRate()
+	{
+		long total = _hitCount + _missCount;
+		return total == 0 ? 0 : (double)_hitCount / total;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * @return an array of at least {@code minSize} bytes, with arbitrary
+	 *         contents.
+	 */
+	public byte[] acquire(int minSize)
+	{
+		if (minSize > _maxArraySize)
+		{
+			synchronized (this)
+			{
+				++_missCount;
+			}
+			return new byte[minSize];
+		}
+
+		int size = roundUpToSizeClass(minSize);
+		synchronized (this)
+		{
+			byte[] array = _sizeClasses[getSizeClass(size)].pollLast();
+			if (array != null)
+			{
+				_pooledBytes -= array.length;
+				++_hitCount;
+				return array;
+			}
+			++_missCount;
+		}
+		return new byte[size];
+	}
+
+	/**
+	 * Returns an array obtained from {@link #acquire(int)} to the pool.  The
+	 * caller must not use it afterwards.
+	 */
+	public void release(byte[] array)
+	{
+		if (array == null
+			|| array.length > _maxArraySize
+			|| array.length != roundUpToSizeClass(array.length))
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			if (_pooledBytes + array.length <= _maxPooledBytes)
+			{
+				_sizeClasses[getSizeClass(array.length)].addLast(array);
+				_pooledBytes += array.length;
+			}
+		}
+	}
+
+	/**
+	 * Drops every pooled array.
+	 */
+	public synchronized void clear()
+	{
+		for (ArrayDeque<byte[]> sizeClass : _sizeClasses)
+		{
+			sizeClass.clear();
+		}
+		_pooledBytes = 0;
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private static int roundUpToSizeClass(int size)
+	{
+		if (size <= MIN_ARRAY_SIZE)
+		{
+			return MIN_ARRAY_SIZE;
+		}
+		int highestBit = Integer.highestOneBit(size);
+		return highestBit == size ? size : highestBit << 1;
+	}
+
+	private static int getSizeClass(int size)
+	{
+		return Integer.numberOfTrailingZeros(size)
+			- Integer.numberOfTrailingZeros(MIN_ARRAY_SIZE);
+	}
+
+	// [endregion]
+
+}
@@ -0,0 +1,783 @@
+package com.nascentdigital.util;
+
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Read-only view of a JSON document that is indexed rather than parsed.
+ * <p>
+ * {@link #parse(byte[])} makes one pass over the UTF-8 bytes, recording
+ * where each value starts and ends; no strings, numbers or containers are
+ * created.  Values are decoded from the bytes only when read, so picking a
+ * few fields out of a large response costs little more than the scan.
+ * Accessors follow Gson's {@link JsonElement} naming, and {@link JsonHelper}
+ * has matching getters.
+ * <p>
+ * The byte array is referenced, not copied, and must not be modified while
+ * the document is in use.  Instances are immutable and can be shared between
+ * threads.  Member lookup is linear in the size of the object, and
+ * {@link #get(int)} in the position of the element; use
+ * {@link #getAsList()} to go through a whole array.
+ */
+public final class IndexedJson
+{
+	// [region] constants
+
+	private static final byte OBJECT = 1;
+	private static final byte ARRAY = 2;
+	private static final byte STRING = 3;
+	private static final byte NUMBER = 4;
+	private static final byte TRUE = 5;
+	private static final byte FALSE = 6;
+	private static final byte NULL = 7;
+	private static final byte KEY = 8;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private final Index _index;
+	private final int _node;
+
+	// [endregion]
+
+
+	// [region] constructors
+
+	private IndexedJson(Index index, int node)
+	{
+		_index = index;
+		_node = node;
+	}
+
+	// [endregion]
+
+
+	// [region] public methods
+
+	/**
+	 * @throws JsonSyntaxException if {@code data} isn't a single well-formed
+	 *                             JSON value.
+	 */
+	public static IndexedJson parse(byte[] data)
+	{
+		return parse(data, 0, data.length);
+	}
+
+	public static IndexedJson parse(byte[] data, int offset, int length)
+	{
+		Index index = new Index(data, length);
+		index.build(offset, offset + length);
+		return new IndexedJson(index, 0);
+	}
+
+	public boolean isJsonObject()
+	{
+		return getType() == OBJECT;
+	}
+
+	public boolean isJsonArray()
+	{
+		return getType() == ARRAY;
+	}
+
+	public boolean isJsonNull()
+	{
+		return getType() == NULL;
+	}
+
+	/**
+	 * @return true for strings, numbers and booleans.
+	 */
+	public boolean isJsonPrimitive()
+	{
+		byte type = getType();
+		return type != OBJECT && type != ARRAY && type != NULL;
+	}
+
+	public boolean has(String key)
+	{
+		return findMember(key) != -1;
+	}
+
+	/**
+	 * @return the member named {@code key}, or null if this isn't an object
+	 *         or has no such member.
+	 */
+	public IndexedJson get(String key)
+	{
+		int member = findMember(key);
+		return member == -1 ? null : new IndexedJson(_index, member);
+	}
+
+	/**
+	 * @return the element at {@code position}, or null if this isn't an
+	 *         array or is too short.
+	 */
+	public IndexedJson get(int position)
+	{
+		if (getType() != ARRAY)
+		{
+			return null;
+		}
+		int end = _index.nexts[_node];
+		for (int child = _node + 1; child < end; child = _index.nexts[child])
+		{
+			if (position-- == 0)
+			{
+				return new IndexedJson(_index, child);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the number of members of an object or elements of an array,
+	 *         otherwise 0.
+	 */
+	public int size()
+	{
+		byte type = getType();
+		if (type != OBJECT && type != ARRAY)
+		{
+			return 0;
+		}
+		int size = 0;
+		int end = _index.nexts[_node];
+		for (int child = _node + 1; child < end; child = _index.nexts[child])
+		{
+			++size;
+		}
+		return type == OBJECT ? size / 2 : size;
+	}
+
+	/**
+	 * @return the elements of an array, or an empty list for other values.
+	 */
+	public List<IndexedJson> getAsList()
+	{
+		List<IndexedJson> elements = new ArrayList<>();
+		if (getType() == ARRAY)
+		{
+			int end = _index.nexts[_node];
+			for (int child = _node + 1; child < end;
+				child = _index.nexts[child])
+			{
+				elements.add(new IndexedJson(_index, child));
+			}
+		}
+		return elements;
+	}
+
+	/**
+	 * @return the member names of an object, or an empty list for other
+	 *         values.
+	 */
+	public List<String> getKeys()
+	{
+		List<String> keys = new ArrayList<>();
+		if (getType() == OBJECT)
+		{
+			int end = _index.nexts[_node];
+			for (int key = _node + 1; key < end; key = _index.nexts[key + 1])
+			{
+				keys.add(_index.decodeString(key));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException if this is an object, an array
+	 *                                       or null.
+	 */
+	public String getAsString()
+	{
+		switch (getType())
+		{
+			case STRING:
+				return _index.decodeString(_node);
+
+			case NUMBER:
+				return _index.decodeAscii(_node);
+
+			case TRUE:
+				return "true";
+
+			case FALSE:
+				return "false";
+
+			default:
+				throw new UnsupportedOperationException(
+					"Not a primitive: " + this);
+		}
+	}
+
+	public boolean getAsBoolean()
+	{
+		byte type = getType();
+		return type == TRUE || (type != FALSE
+			&& Boolean.parseBoolean(getAsString()));
+	}
+
+	/**
+	 * @throws NumberFormatException if the value isn't numeric.
+	 */
+	public int getAsInt()
+	{
+		long value = getAsLong();
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+		{
+			return getAsBigDecimal().intValue();
+		}
+		return (int)value;
+	}
+
+	public long getAsLong()
+	{
+		// whole numbers are read straight from the bytes
+		if (getType() == NUMBER)
+		{
+			long value = _index.parseLong(_node);
+			if (value != Long.MIN_VALUE)
+			{
+				return value;
+			}
+		}
+		return getAsBigDecimal().longValue();
+	}
+
+	public double getAsDouble()
+	{
+		return Double.parseDouble(getAsString());
+	}
+
+	public BigDecimal getAsBigDecimal()
+	{
+		return new BigDecimal(getAsString());
+	}
+
+	/**
+	 * Parses this value, and everything in it, into a Gson tree.
+	 */
+	public JsonElement toJsonElement()
+	{
+		try
+		{
+			return new JsonParser().parse(new InputStreamReader(
+				new ByteArrayInputStream(_index.data, _index.starts[_node],
+					_index.ends[_node] - _index.starts[_node]), "UTF-8"));
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the value's JSON text, as it appears in the document.
+	 */
+	@Override
+	public String toString()
+	{
+		try
+		{
+			return new String(_index.data, _index.starts[_node],
+				_index.ends[_node] - _index.starts[_node], "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] private methods
+
+	private byte getType()
+	{
+		return _index.types[_node];
+	}
+
+	/**
+	 * @return the node of the member's value, or -1.
+	 */
+	private int findMember(String key)
+	{
+		if (getType() != OBJECT)
+		{
+			return -1;
+		}
+		int end = _index.nexts[_node];
+		for (int member = _node + 1; member < end;
+			member = _index.nexts[member + 1])
+		{
+			if (_index.keyEquals(member, key))
+			{
+				return member + 1;
+			}
+		}
+		return -1;
+	}
+
+	// [endregion]
+
+
+	// [region] internal data structures
+
+	/**
+	 * The structural index: every value, and every member name, is a node in
+	 * document order, with its byte range and the node that follows it and
+	 * its contents.  An object's children alternate between name and value.
+	 */
+	private static final class Index
+	{
+		// [region] constants
+
+		private static final int EXPECT_VALUE = 0;
+		private static final int EXPECT_VALUE_OR_CLOSE = 1;
+		private static final int EXPECT_KEY_OR_CLOSE = 2;
+		private static final int EXPECT_KEY = 3;
+		private static final int EXPECT_COLON = 4;
+		private static final int EXPECT_COMMA_OR_CLOSE = 5;
+		private static final int EXPECT_END = 6;
+
+		// [endregion]
+
+
+		// [region] instance variables
+
+		final byte[] data;
+		byte[] types;
+		int[] starts;
+		int[] ends;
+		int[] nexts;
+		int count;
+
+		// [endregion]
+
+
+		// [region] constructors
+
+		Index(byte[] data, int length)
+		{
+			this.data = data;
+
+			// roughly one node per eight bytes of typical JSON
+			int capacity = length / 8 + 16;
+			types = new byte[capacity];
+			starts = new int[capacity];
+			ends = new int[capacity];
+			nexts = new int[capacity];
+		}
+
+		// [endregion]
+
+
+		// [region] methods
+
+		void build(int position, int limit)
+		{
+			int[] containers = new int[16];
+			int depth = 0;
+			int state = EXPECT_VALUE;
+			while (true)
+			{
+				while (position < limit && isWhitespace(data[position]))
+				{
+					++position;
+				}
+				if (position == limit)
+				{
+					break;
+				}
+
+				byte b = data[position];
+				boolean closes = false;
+				switch (state)
+				{
+					case EXPECT_VALUE_OR_CLOSE:
+						if (b == ']')
+						{
+							closes = true;
+							break;
+						}
+						// fall through
+
+					case EXPECT_VALUE:
+						if (b == '{' || b == '[')
+						{
+							if (depth == containers.length)
+							{
+								int[] larger = new int[depth * 2];
+								System.arraycopy(containers, 0, larger, 0,
+									depth);
+								containers = larger;
+							}
+							containers[depth++] = addNode(
+								b == '{' ? OBJECT : ARRAY, position, -1);
+							state = b == '{' ? EXPECT_KEY_OR_CLOSE
+								: EXPECT_VALUE_OR_CLOSE;
+							++position;
+							continue;
+						}
+						position = scanScalar(position, limit);
+						state = depth == 0 ? EXPECT_END
+							: EXPECT_COMMA_OR_CLOSE;
+						continue;
+
+					case EXPECT_KEY_OR_CLOSE:
+						if (b == '}')
+						{
+							closes = true;
+							break;
+						}
+						// fall through
+
+					case EXPECT_KEY:
+						if (b != '"')
+						{
+							throw syntaxError("Expected a name", position);
+						}
+						int end = scanString(position, limit);
+						addNode(KEY, position, end);
+						position = end;
+						state = EXPECT_COLON;
+						continue;
+
+					case EXPECT_COLON:
+						if (b != ':')
+						{
+							throw syntaxError("Expected ':'", position);
+						}
+						++position;
+						state = EXPECT_VALUE;
+						continue;
+
+					case EXPECT_COMMA_OR_CLOSE:
+						byte containerType = types[containers[depth - 1]];
+						if (b == ',')
+						{
+							++position;
+							state = containerType == OBJECT ? EXPECT_KEY
+								: EXPECT_VALUE;
+							continue;
+						}
+						closes = (b == '}' && containerType == OBJECT)
+							|| (b == ']' && containerType == ARRAY);
+						break;
+
+					default:
+						break;
+				}
+				if (!closes)
+				{
+					throw syntaxError("Unexpected character", position);
+				}
+
+				// close the innermost container
+				int container = containers[--depth];
+				ends[container] = ++position;
+				nexts[container] = count;
+				state = depth == 0 ? EXPECT_END : EXPECT_COMMA_OR_CLOSE;
+			}
+			if (state != EXPECT_END)
+			{
+				throw syntaxError("Unexpected end of document", position);
+			}
+		}
+
+		boolean keyEquals(int node, String key)
+		{
+			int length = key.length();
+			int j = 0;
+			int end = ends[node] - 1;
+			for (int i = starts[node] + 1; i < end; ++i, ++j)
+			{
+				byte b = data[i];
+				if (b == '\\' || b < 0)
+				{
+					// escaped or non-ASCII names are compared decoded
+					return decodeString(node).equals(key);
+				}
+				if (j == length || key.charAt(j) != b)
+				{
+					return false;
+				}
+			}
+			return j == length;
+		}
+
+		String decodeString(int node)
+		{
+			int end = ends[node] - 1;
+			char[] chars = new char[end - starts[node] - 1];
+			int length = 0;
+			int i = starts[node] + 1;
+			while (i < end)
+			{
+				int b = data[i] & 0xFF;
+				if (b == '\\')
+				{
+					char escaped = (char)data[i + 1];
+					i += 2;
+					switch (escaped)
+					{
+						case 'b':
+							chars[length++] = '\b';
+							break;
+						case 'f':
+							chars[length++] = '\f';
+							break;
+						case 'n':
+							chars[length++] = '\n';
+							break;
+						case 'r':
+							chars[length++] = '\r';
+							break;
+						case 't':
+							chars[length++] = '\t';
+							break;
+						case 'u':
+							if (i + 4 > end)
+							{
+								throw syntaxError("Invalid escape", i);
+							}
+							chars[length++] = (char)Integer.parseInt(
+								decodeAscii(i, i + 4), 16);
+							i += 4;
+							break;
+						default:
+							chars[length++] = escaped;
+					}
+				}
+				else if (b < 0x80)
+				{
+					chars[length++] = (char)b;
+					++i;
+				}
+				else if (b >= 0xC0 && b < 0xE0 && i + 1 < end)
+				{
+					chars[length++] = (char)(((b & 0x1F) << 6)
+						| (data[i + 1] & 0x3F));
+					i += 2;
+				}
+				else if (b >= 0xE0 && b < 0xF0 && i + 2 < end)
+				{
+					chars[length++] = (char)(((b & 0x0F) << 12)
+						| ((data[i + 1] & 0x3F) << 6) | (data[i + 2] & 0x3F));
+					i += 3;
+				}
+				else if (b >= 0xF0 && b < 0xF8 && i + 3 < end)
+				{
+					int codePoint = ((b & 0x07) << 18)
+						| ((data[i + 1] & 0x3F) << 12)
+						| ((data[i + 2] & 0x3F) << 6) | (data[i + 3] & 0x3F);
+					length += Character.toChars(codePoint, chars, length);
+					i += 4;
+				}
+				else
+				{
+					chars[length++] = '\uFFFD';
+					++i;
+				}
+			}
+			return new String(chars, 0, length);
+		}
+
+		String decodeAscii(int node)
+		{
+			return decodeAscii(starts[node], ends[node]);
+		}
+
+		/**
+		 * @return the whole number at {@code node}, or Long.MIN_VALUE if it
+		 *         has a fraction, an exponent or too many digits.
+		 */
+		long parseLong(int node)
+		{
+			int i = starts[node];
+			int end = ends[node];
+			boolean negative = data[i] == '-';
+			if (negative)
+			{
+				++i;
+			}
+			if (end - i > 18 || i == end)
+			{
+				return Long.MIN_VALUE;
+			}
+			long value = 0;
+			for (; i < end; ++i)
+			{
+				int digit = data[i] - '0';
+				if (digit < 0 || digit > 9)
+				{
+					return Long.MIN_VALUE;
+				}
+				value = value * 10 + digit;
+			}
+			return negative ? -value : value;
+		}
+
+		// [endregion]
+
+
+		// [region] private methods
+
+		private int addNode(byte type, int start, int end)
+		{
+			if (count == types.length)
+			{
+				int capacity = count * 2;
+				byte[] largerTypes = new byte[capacity];
+				System.arraycopy(types, 0, largerTypes, 0, count);
+				types = largerTypes;
+				starts = grow(starts, capacity);
+				ends = grow(ends, capacity);
+				nexts = grow(nexts, capacity);
+			}
+			types[count] = type;
+			starts[count] = start;
+			ends[count] = end;
+			nexts[count] = count + 1;
+			return count++;
+		}
+
+		private int scanScalar(int position, int limit)
+		{
+			byte b = data[position];
+			int end;
+			byte type;
+			if (b == '"')
+			{
+				end = scanString(position, limit);
+				type = STRING;
+			}
+			else if (b == '-' || (b >= '0' && b <= '9'))
+			{
+				end = position + 1;
+				while (end < limit && isNumberCharacter(data[end]))
+				{
+					++end;
+				}
+				type = NUMBER;
+			}
+			else if (matches(position, limit, "true"))
+			{
+				end = position + 4;
+				type = TRUE;
+			}
+			else if (matches(position, limit, "false"))
+			{
+				end = position + 5;
+				type = FALSE;
+			}
+			else if (matches(position, limit, "null"))
+			{
+				end = position + 4;
+				type = NULL;
+			}
+			else
+			{
+				throw syntaxError("Expected a value", position);
+			}
+			addNode(type, position, end);
+			return end;
+		}
+
+		/**
+		 * @return the position after the closing quote.
+		 */
+		private int scanString(int position, int limit)
+		{
+			for (int i = position + 1; i < limit; ++i)
+			{
+				byte b = data[i];
+				if (b == '"')
+				{
+					return i + 1;
+				}
+				if (b == '\\')
+				{
+					++i;
+				}
+				else if (b >= 0 && b < 0x20)
+				{
+					throw syntaxError("Unescaped control character", i);
+				}
+			}
+			throw syntaxError("Unterminated string", position);
+		}
+
+		private boolean matches(int position, int limit, String literal)
+		{
+			if (limit - position < literal.length())
+			{
+				return false;
+			}
+			for (int i = 0; i < literal.length(); ++i)
+			{
+				if (data[position + i] != literal.charAt(i))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private String decodeAscii(int start, int end)
+		{
+			char[] chars = new char[end - start];
+			for (int i = 0; i < chars.length; ++i)
+			{
+				chars[i] = (char)(data[start + i] & 0x7F);
+			}
+			return new String(chars);
+		}
+
+		private static int[] grow(int[] array, int capacity)
+		{
+			int[] larger = new int[capacity];
+			System.arraycopy(array, 0, larger, 0, array.length);
+			return larger;
+		}
+
+		private static boolean isWhitespace(byte b)
+		{
+			return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+		}
+
+		private static boolean isNumberCharacter(byte b)
+		{
+			return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E'
+				|| b == '+' || b == '-';
+		}
+
+		private static JsonSyntaxException syntaxError(String message,
+			int position)
+		{
+			return new JsonSyntaxException(message + " at byte " + position
+				+ ".");
+		}
+
+		// [endregion]
+
+	} // class Index
+
+	// [endregion]
+
+} // class IndexedJson
@@ -11,6 +11,7 @@ import org.joda.time.DateTime;
 
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -329,4 +330,276 @@ public class JsonHelper {
     }
 
 
+    // [region] IndexedJson getters
+
+    /**
+     * Utility method that returns the response value of an IndexedJson
+     * object.
+     *
+     * @param json
+     * @return the value corresponding to the response key if it exists, or null
+     *         otherwise.
+     */
+    public static IndexedJson getResponseFromJson(final IndexedJson json)
+    {
+        return json != null ? json.get("response") : null;
+    }
+
+    /**
+     * Utility method that returns the corresponding object for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @return the object corresponding to the key if it exists, or null
+     *         otherwise.
+     */
+    public static IndexedJson getJsonObjectFromJson(final IndexedJson json,
+                                                    final String key)
+    {
+        IndexedJson value = getValue(json, key);
+        return value != null && value.isJsonObject() ? value : null;
+    }
+
+    /**
+     * Utility method that returns the elements of the array for the given
+     * key; a single object is returned as a list of one, as with the
+     * JsonObject version.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @return the elements corresponding to the key if it exists, or null
+     *         otherwise.
+     */
+    public static List<IndexedJson> getJsonArrayFromJson(final IndexedJson json,
+                                                         final String key)
+    {
+        IndexedJson value = json != null ? json.get(key) : null;
+        if (value == null)
+        {
+            return null;
+        }
+        if (value.isJsonArray())
+        {
+            return value.getAsList();
+        }
+        if (value.isJsonObject())
+        {
+            return Collections.singletonList(value);
+        }
+        return null;
+    }
+
+    public static String getStringFromJson(final IndexedJson json,
+                                           final String key,
+                                           final String defaultValue)
+    {
+        String string = getStringFromJson(json, key);
+        return string != null ? string : defaultValue;
+    }
+
+    /**
+     * Utility method that returns the corresponding String for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @return the String corresponding to the key if it exists, or null
+     *         otherwise.
+     */
+    public static String getStringFromJson(final IndexedJson json,
+                                           final String key)
+    {
+        try {
+            IndexedJson value = getValue(json, key);
+            if (value != null) {
+                return value.getAsString();
+            }
+        } catch(Exception ex) {
+            return null;
+        }
+        return null;
+    }
+
+    public static <T extends Enum<T>> T getEnumFromJson(final IndexedJson json,
+                                        final String key, Class<T> enumType)
+    {
+        IndexedJson value = getValue(json, key);
+        if (value != null)
+        {
+            try {
+                return T.valueOf(enumType, value.getAsString());
+            }
+            catch (Exception ex)
+            {
+                Log.e("JsonHelper", "Can't parse enum value: " + key + " to type: " + enumType.getName(), ex);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Utility method that returns the corresponding boolean for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @param defaultValue
+     * @return the boolean corresponding to the given key if it exists, or the
+     *         defaultValue otherwise.
+     */
+    public static boolean getBooleanFromJson(final IndexedJson json,
+                                              final String key, final boolean defaultValue)
+    {
+        IndexedJson value = getValue(json, key);
+        return value != null ? value.getAsBoolean() : defaultValue;
+    }
+
+    /**
+     * Utility method that returns the corresponding int for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @param defaultValue
+     * @return the int corresponding to the given key if it exists, or the
+     *         defaultValue otherwise.
+     * @throws NumberFormatException
+     *             if the value corresponding to the given key is not numeric.
+     */
+    public static int getIntFromJson(final IndexedJson json,
+                                      final String key, final int defaultValue) throws NumberFormatException
+    {
+        IndexedJson value = getValue(json, key);
+        return value != null ? value.getAsInt() : defaultValue;
+    }
+
+    /**
+     * Utility method that returns the corresponding double for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @param defaultValue
+     * @return the double corresponding to the given key if it exists, or the
+     *         defaultValue otherwise.
+     */
+    public static double getDoubleFromJson(final IndexedJson json,
+                                            final String key, final double defaultValue)
+    {
+        try {
+            IndexedJson value = getValue(json, key);
+            if (value != null && value.isJsonPrimitive()) {
+                return value.getAsDouble();
+            }
+        }
+        catch (Exception ex)
+        {
+            Log.e("JsonHelper", "Can't parse json value to double", ex);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Utility method that returns the corresponding BigDecimal for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @param defaultValue
+     * @return the BigDecimal corresponding to the given key if it exists, or the
+     *         defaultValue otherwise.
+     */
+    public static BigDecimal getBigDecimalFromJson(final IndexedJson json,
+                                                   final String key, final
+                                                   BigDecimal defaultValue)
+    {
+        try {
+            IndexedJson value = getValue(json, key);
+            if (value != null) {
+                return value.getAsBigDecimal();
+            }
+        }
+        catch (Exception ex)
+        {
+            Log.e("JsonHelper", "Can't parse json value to BigDecimal", ex);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Utility method that returns the corresponding Date for the given key.
+     *
+     * @param json
+     *            the IndexedJson object to search.
+     * @param key
+     * @return the Date corresponding to the given key if it exists, or null
+     *         otherwise.
+     */
+    public static Date getDateFromJson(final IndexedJson json,
+                                        final String key)
+    {
+        if (getValue(json, key) != null)
+        {
+            final double milliseconds = getDoubleFromJson(json, key, 0);
+            return new Date((long)milliseconds);
+        }
+        return null;
+    }
+
+    public static DateTime getDateTimeFromJson(final IndexedJson json,
+                                               final String key)
+    {
+        Date date = getDateFromJson(json, key);
+        if (date == null)
+        {
+            return null;
+        }
+
+        return new DateTime(date);
+    }
+
+    public static Date getDateFromJson(final IndexedJson json, final String key, final String pattern) {
+
+        if (getValue(json, key) != null) {
+            try {
+                String stringDate = getStringFromJson(json, key);
+
+                SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+                return sdf.parse(stringDate);
+
+            } catch (Exception e) {
+                Log.e("JsonHelper", "Error parsing date in json for key: " + key, e);
+            }
+
+        }
+
+        return new Date();
+    }
+
+    public static DateTime getDateTimeFromJson(final IndexedJson json,
+                                               final String key, final String pattern)
+    {
+        Date date = getDateFromJson(json, key, pattern);
+        if (date == null)
+        {
+            return null;
+        }
+
+        return new DateTime(date);
+    }
+
+    /**
+     * @return the value for the given key, or null if it is missing or a
+     *         JSON null.
+     */
+    private static IndexedJson getValue(final IndexedJson json, final String key)
+    {
+        IndexedJson value = json != null ? json.get(key) : null;
+        return value != null && !value.isJsonNull() ? value : null;
+    }
+
+    // [endregion]
+
 }
@@ -9,6 +9,7 @@ import com.nascentdigital.util.EncryptionHelper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -22,6 +23,12 @@ import java.io.Serializable;
  */
 public class StorageHelper
 {
+    //region constants
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    //endregion
+
     //region static fields
 
     private static EncryptionHelper _encryptionHelper = null;
@@ -58,25 +65,62 @@ public class StorageHelper
     {
         try
         {
-            //serialize to string
-            String objectString = objectToString(object);
-            if (objectString == null)
-            {
-                Log.e("StorageHelper", "Error, seralized object is null");
-                return;
-            }
-            //encrypt
-            objectString = getEncryptionHelper(ctx).encrypt(objectString);
+            writeToInternalStorage(filename, object, ctx);
+        }
+        catch (Exception ex)
+        {
+            Log.e("StorageHelper", "Error saving file: " + filename, ex);
+        }
+    }
 
-            //write to file
-            byte[] objectBytes = objectString.getBytes();
-            FileOutputStream fos = ctx.openFileOutput(filename, Context.MODE_PRIVATE);
+    /**
+     * Writes a serializable object to internal storage, reporting failures. The object is
+     * written to a temporary file that then replaces the file, so the file always holds
+     * either the previous object or the new one in full.
+     * @param filename Filename for the file that the serialzed object will be stored in.
+     * @param object Object to be saved. Must extend serializable.
+     * @param ctx Application context
+     * @param <T> Class type of the object being saved. Must extend Serializable.
+     * @throws IOException if the object could not be serialized or written.
+     */
+    public static <T extends Serializable> void writeToInternalStorage(String filename, T object, Context ctx)
+        throws IOException
+    {
+        //serialize to string
+        String objectString = objectToString(object);
+        if (objectString == null)
+        {
+            throw new IOException("Error, seralized object is null");
+        }
+        //encrypt
+        objectString = getEncryptionHelper(ctx).encrypt(objectString);
+
+        //write to a temporary file and flush it to disk
+        byte[] objectBytes = objectString.getBytes();
+        File file = new File(ctx.getFilesDir(), filename);
+        File tempFile = new File(ctx.getFilesDir(), filename + TEMP_FILE_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(tempFile);
+        boolean written = false;
+        try
+        {
             fos.write(objectBytes, 0, objectBytes.length);
+            fos.getFD().sync();
+            written = true;
+        }
+        finally
+        {
             fos.close();
+            if (!written)
+            {
+                tempFile.delete();
+            }
         }
-        catch (Exception ex)
+
+        //replace the file
+        if (!tempFile.renameTo(file))
         {
-            Log.e("StorageHelper", "Error saving file: " + filename, ex);
+            tempFile.delete();
+            throw new IOException("Error replacing file: " + filename);
         }
     }
 
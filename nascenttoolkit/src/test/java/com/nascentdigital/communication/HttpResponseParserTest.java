@@ -0,0 +1,201 @@
+package com.nascentdigital.communication;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class HttpResponseParserTest
+{
+	// [region] constants
+
+	private static final long MAX_BODY_SIZE = 1024 * 1024;
+
+	// [endregion]
+
+
+	// [region] tests
+
+	@Test
+	public void parsesFixedLengthBody() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+
+		assertTrue(feed(parser, "HTTP/1.1 200 OK\r\n"
+			+ "Content-Length: 5\r\n"
+			+ "X-Test: a\r\n"
+			+ "X-Test: b\r\n"
+			+ "\r\n"
+			+ "hello"));
+		assertEquals(200, parser.getResponseCode());
+		assertEquals("OK", parser.getResponseMessage());
+		assertEquals(Arrays.asList("a", "b"), parser.getHeaders().get("X-Test"));
+		assertEquals("hello", body(parser));
+		assertTrue(parser.isKeepAlive());
+	}
+
+	@Test
+	public void parsesChunkedBodySplitAcrossReads() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+		String response = "HTTP/1.1 200 OK\r\n"
+			+ "Transfer-Encoding: chunked\r\n"
+			+ "\r\n"
+			+ "5;name=value\r\n"
+			+ "hello\r\n"
+			+ "7\r\n"
+			+ ", world\r\n"
+			+ "0\r\n"
+			+ "Trailer: ignored\r\n"
+			+ "\r\n";
+
+		// one byte at a time, so every state resumes mid-line
+		for (int i = 0; i < response.length() - 1; ++i)
+		{
+			assertFalse(feed(parser, response.substring(i, i + 1)));
+		}
+		assertTrue(feed(parser, response.substring(response.length() - 1)));
+		assertEquals("hello, world", body(parser));
+		assertTrue(parser.isKeepAlive());
+	}
+
+	@Test
+	public void readsBodyUntilClose() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+
+		assertFalse(feed(parser, "HTTP/1.0 200 OK\r\n\r\nfirst "));
+		assertFalse(feed(parser, "second"));
+		assertTrue(parser.onEndOfStream());
+		assertEquals("first second", body(parser));
+		assertFalse(parser.isKeepAlive());
+	}
+
+	@Test
+	public void skipsInterimResponses() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+
+		assertTrue(feed(parser, "HTTP/1.1 100 Continue\r\n\r\n"
+			+ "HTTP/1.1 102 Processing\r\n\r\n"
+			+ "HTTP/1.1 201 Created\r\n"
+			+ "Content-Length: 2\r\n"
+			+ "\r\n"
+			+ "ok"));
+		assertEquals(201, parser.getResponseCode());
+		assertEquals("ok", body(parser));
+	}
+
+	@Test
+	public void completesWithoutBodyWhenNoneIsExpected() throws IOException
+	{
+		HttpResponseParser head = new HttpResponseParser(false, MAX_BODY_SIZE);
+		assertTrue(feed(head,
+			"HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n"));
+		assertEquals(0, head.getBodyLength());
+
+		HttpResponseParser notModified =
+			new HttpResponseParser(true, MAX_BODY_SIZE);
+		assertTrue(feed(notModified, "HTTP/1.1 304 Not Modified\r\n\r\n"));
+		assertEquals(304, notModified.getResponseCode());
+	}
+
+	@Test
+	public void honoursConnectionClose() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+
+		assertTrue(feed(parser, "HTTP/1.1 200 OK\r\n"
+			+ "Content-Length: 0\r\n"
+			+ "Connection: close\r\n"
+			+ "\r\n"));
+		assertFalse(parser.isKeepAlive());
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void rejectsNegativeContentLength() throws IOException
+	{
+		feed(new HttpResponseParser(true, MAX_BODY_SIZE),
+			"HTTP/1.1 200 OK\r\nContent-Length: -1\r\n\r\n");
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void rejectsMalformedContentLength() throws IOException
+	{
+		feed(new HttpResponseParser(true, MAX_BODY_SIZE),
+			"HTTP/1.1 200 OK\r\nContent-Length: ten\r\n\r\n");
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void rejectsNegativeChunkSize() throws IOException
+	{
+		feed(new HttpResponseParser(true, MAX_BODY_SIZE),
+			"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-5\r\n");
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void rejectsMissingChunkTerminator() throws IOException
+	{
+		feed(new HttpResponseParser(true, MAX_BODY_SIZE),
+			"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "2\r\nokx\r\n");
+	}
+
+	@Test(expected = ProtocolException.class)
+	public void rejectsInvalidStatusLine() throws IOException
+	{
+		feed(new HttpResponseParser(true, MAX_BODY_SIZE), "SPDY/3 200 OK\r\n");
+	}
+
+	@Test(expected = ResponseBodyTooLargeException.class)
+	public void rejectsContentLengthOverMaximum() throws IOException
+	{
+		feed(new HttpResponseParser(true, 4),
+			"HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\n");
+	}
+
+	@Test(expected = ResponseBodyTooLargeException.class)
+	public void rejectsChunkedBodyOverMaximum() throws IOException
+	{
+		feed(new HttpResponseParser(true, 4),
+			"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "3\r\nabc\r\n3\r\ndef\r\n");
+	}
+
+	@Test(expected = EOFException.class)
+	public void failsWhenClosedBeforeComplete() throws IOException
+	{
+		HttpResponseParser parser = new HttpResponseParser(true, MAX_BODY_SIZE);
+		feed(parser, "HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhel");
+		parser.onEndOfStream();
+	}
+
+	// [endregion]
+
+
+	// [region] helper methods
+
+	private static boolean feed(HttpResponseParser parser, String data)
+		throws IOException
+	{
+		return parser.feed(ByteBuffer.wrap(data.getBytes("ISO-8859-1")));
+	}
+
+	private static String body(HttpResponseParser parser)
+		throws IOException
+	{
+		return new String(parser.getBody(), 0, parser.getBodyLength(),
+			"ISO-8859-1");
+	}
+
+	// [endregion]
+
+} // class HttpResponseParserTest
@@ -0,0 +1,126 @@
+package com.nascentdigital.communication;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class ServiceRequestTemplateTest
+{
+	// [region] tests
+
+	@Test
+	public void expandsPathAndQueryPlaceholders()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET,
+			"https://api.example.com/users/{id}/posts?limit={limit}&sort=recent");
+
+		assertEquals(Arrays.asList("id", "limit"),
+			template.getParameterNames());
+		assertEquals("https://api.example.com/users/42/posts?limit=10&sort=recent",
+			template.expand("42", "10"));
+	}
+
+	@Test
+	public void reusesRepeatedPlaceholder()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/a/{id}/b/{id}?echo={id}");
+
+		assertEquals(Arrays.asList("id"), template.getParameterNames());
+		assertEquals("/a/7/b/7?echo=7", template.expand("7"));
+	}
+
+	@Test
+	public void leavesOutNullQueryValues()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/items?first={first}&second={second}&flag");
+
+		assertEquals("/items?second=2&flag", template.expand(null, "2"));
+		assertEquals("/items?flag", template.expand(null, null));
+	}
+
+	@Test
+	public void keepsLiteralsAsWritten()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/a%20b/{name}?q=x%20y&raw");
+
+		assertEquals("/a%20b/c?q=x%20y&raw", template.expand("c"));
+	}
+
+	@Test
+	public void encodesPathValues()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/files/{name}");
+
+		assertEquals("/files/a%20b%2Fc~d-e.f_g%2A",
+			template.expand("a b/c~d-e.f_g*"));
+		assertEquals("/files/caf%C3%A9%E2%82%AC%F0%9F%98%80",
+			template.expand("caf\u00e9\u20ac\ud83d\ude00"));
+	}
+
+	@Test
+	public void encodesQueryValuesLikeUrlEncoder()
+		throws UnsupportedEncodingException
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/search?q={q}");
+
+		for (String value : new String[] { "plain", "a b&c=d", "~*-._",
+			"100%", "caf\u00e9", "\u20ac\ud83d\ude00", "\ud83d", "/?#[]@" })
+		{
+			assertEquals(value, "/search?q=" + URLEncoder.encode(value, "UTF-8"),
+				template.expand(value));
+		}
+	}
+
+	@Test
+	public void expandsByName()
+	{
+		ServiceRequestTemplate template = new ServiceRequestTemplate(
+			ServiceMethod.GET, "/users/{id}?fields={fields}");
+		Map<String, String> values = new HashMap<>();
+		values.put("id", "5");
+
+		assertEquals("/users/5", template.expand(values));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void requiresPathValues()
+	{
+		new ServiceRequestTemplate(ServiceMethod.GET, "/users/{id}")
+			.expand((String)null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void requiresAValuePerParameter()
+	{
+		new ServiceRequestTemplate(ServiceMethod.GET, "/users/{id}")
+			.expand("1", "2");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnclosedPlaceholder()
+	{
+		new ServiceRequestTemplate(ServiceMethod.GET, "/users/{id");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyPlaceholder()
+	{
+		new ServiceRequestTemplate(ServiceMethod.GET, "/users/{}");
+	}
+
+	// [endregion]
+
+} // class ServiceRequestTemplateTest
@@ -0,0 +1,343 @@
+package com.nascentdigital.communication;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ServiceResponseCacheTest
+{
+	// [region] constants
+
+	private static final String URI = "https://api.example.com/items";
+	private static final long SECOND = 1000;
+	private static final long HOUR = 60 * 60 * SECOND;
+	private static final long DAY = 24 * HOUR;
+
+	// [endregion]
+
+
+	// [region] instance variables
+
+	private File _directory;
+	private ServiceResponseCache _cache;
+	private long _now;
+
+	// [endregion]
+
+
+	// [region] setup
+
+	@Before
+	public void setUp() throws IOException
+	{
+		_directory = File.createTempFile("ServiceResponseCacheTest", "");
+		assertTrue(_directory.delete() && _directory.mkdir());
+		_cache = new ServiceResponseCache(_directory, 1024 * 1024);
+
+		// HTTP dates have whole seconds
+		_now = System.currentTimeMillis() / SECOND * SECOND;
+	}
+
+	@After
+	public void tearDown()
+	{
+		_cache.clear();
+		_directory.delete();
+	}
+
+	// [endregion]
+
+
+	// [region] tests
+
+	@Test
+	public void maxAgeBoundsFreshness() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60"));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertNotNull(entry);
+		assertTrue(entry.isFresh(null, _now + 59 * SECOND));
+		assertFalse(entry.isFresh(null, _now + 61 * SECOND));
+	}
+
+	@Test
+	public void ageHeaderCountsAgainstMaxAge() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60", "Age", "50"));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertTrue(entry.isFresh(null, _now + 9 * SECOND));
+		assertFalse(entry.isFresh(null, _now + 11 * SECOND));
+	}
+
+	@Test
+	public void expiresIsRelativeToDate() throws IOException
+	{
+		// a server clock an hour ahead doesn't lengthen the lifetime
+		store(URI, null, headers("Date", httpDate(_now + HOUR),
+			"Expires", httpDate(_now + HOUR + 60 * SECOND)));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertTrue(entry.isFresh(null, _now + 30 * SECOND));
+		assertFalse(entry.isFresh(null, _now + 90 * SECOND));
+	}
+
+	@Test
+	public void invalidExpiresIsStale() throws IOException
+	{
+		store(URI, null, headers("Expires", "0"));
+
+		assertFalse(_cache.get(URI, null).isFresh(null, _now));
+	}
+
+	@Test
+	public void lastModifiedGivesHeuristicFreshness() throws IOException
+	{
+		// a tenth of the time since the last change
+		store(URI, null, headers("Date", httpDate(_now),
+			"Last-Modified", httpDate(_now - 5 * DAY)));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertTrue(entry.isFresh(null, _now + 11 * HOUR));
+		assertFalse(entry.isFresh(null, _now + 13 * HOUR));
+		assertTrue(entry.hasValidators());
+	}
+
+	@Test
+	public void heuristicFreshnessIsCappedAtADay() throws IOException
+	{
+		store(URI, null, headers("Date", httpDate(_now),
+			"Last-Modified", httpDate(_now - 100 * DAY)));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertTrue(entry.isFresh(null, _now + 23 * HOUR));
+		assertFalse(entry.isFresh(null, _now + 25 * HOUR));
+	}
+
+	@Test
+	public void noHeuristicFreshnessWithQuery() throws IOException
+	{
+		String uri = URI + "?page=2";
+		store(uri, null, headers("Date", httpDate(_now),
+			"Last-Modified", httpDate(_now - 5 * DAY)));
+
+		assertFalse(_cache.get(uri, null).isFresh(null, _now + SECOND));
+	}
+
+	@Test
+	public void noCacheRequiresRevalidation() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "no-cache, max-age=60",
+			"ETag", "\"v1\""));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertFalse(entry.isFresh(null, _now));
+		assertTrue(entry.hasValidators());
+
+		Map<String, String> requestHeaders = new HashMap<>();
+		entry.addValidators(requestHeaders);
+		assertEquals("\"v1\"", requestHeaders.get("If-None-Match"));
+	}
+
+	@Test
+	public void requestCacheControlLimitsFreshness() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60"));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		assertFalse(entry.isFresh(request("Cache-Control", "max-age=10"),
+			_now + 20 * SECOND));
+		assertFalse(entry.isFresh(request("Cache-Control", "no-cache"),
+			_now));
+		assertTrue(entry.isFresh(request("Cache-Control", "max-age=30"),
+			_now + 20 * SECOND));
+	}
+
+	@Test
+	public void storesOnlyReusableResponses() throws IOException
+	{
+		store(URI + "/plain", null, headers("Content-Type", "text/plain"));
+		store(URI + "/no-store", null,
+			headers("Cache-Control", "no-store, max-age=60"));
+		store(URI + "/no-store-request", request("Cache-Control", "no-store"),
+			headers("Cache-Control", "max-age=60"));
+		store(URI + "/zero", null, headers("Cache-Control", "max-age=0"));
+
+		assertNull(_cache.get(URI + "/plain", null));
+		assertNull(_cache.get(URI + "/no-store", null));
+		assertNull(_cache.get(URI + "/no-store-request", null));
+		assertNull(_cache.get(URI + "/zero", null));
+	}
+
+	@Test
+	public void storesOnlyOkResponses() throws IOException
+	{
+		InputStream body = _cache.storeWhileReading(URI, null, 404,
+			headers("Cache-Control", "max-age=60"), body("missing"), _now,
+			_now);
+		drain(body);
+
+		assertNull(_cache.get(URI, null));
+	}
+
+	@Test
+	public void servesStoredBody() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60"));
+		InputStream body = _cache.openBody(_cache.get(URI, null));
+
+		assertEquals("body", new String(drain(body), "UTF-8"));
+	}
+
+	@Test
+	public void varyMatchesRequestHeaders() throws IOException
+	{
+		store(URI, request("Accept-Language", "en"),
+			headers("Cache-Control", "max-age=60",
+				"Vary", "Accept-Encoding, accept-language"));
+
+		assertNotNull(_cache.get(URI, request("accept-language", "en")));
+		assertNull(_cache.get(URI, request("Accept-Language", "fr")));
+		assertNull(_cache.get(URI, null));
+		assertNull(_cache.get(URI, request("Accept-Language", "en",
+			"Accept-Encoding", "gzip")));
+	}
+
+	@Test
+	public void varyOnAbsentHeaderMatchesOnlyAbsence() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60",
+			"Vary", "Authorization"));
+
+		assertNotNull(_cache.get(URI, null));
+		assertNull(_cache.get(URI, request("Authorization", "Bearer x")));
+	}
+
+	@Test
+	public void varyStarIsNotStored() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60", "Vary", "*"));
+
+		assertNull(_cache.get(URI, null));
+	}
+
+	@Test
+	public void notModifiedRefreshesHeaders() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60",
+			"ETag", "\"v1\"", "Content-Length", "4"));
+		ServiceResponseCache.Entry entry = _cache.get(URI, null);
+
+		long later = _now + HOUR;
+		ServiceResponseCache.Entry updated = _cache.update(entry,
+			headers("ETag", "\"v2\"", "Content-Length", "0"), later, later);
+
+		assertTrue(updated.isFresh(null, later + 30 * SECOND));
+		Map<String, String> requestHeaders = new HashMap<>();
+		_cache.get(URI, null).addValidators(requestHeaders);
+		assertEquals("\"v2\"", requestHeaders.get("If-None-Match"));
+		assertEquals(Collections.singletonList("4"),
+			updated.responseHeaders.get("content-length"));
+	}
+
+	@Test
+	public void removeDropsEntry() throws IOException
+	{
+		store(URI, null, headers("Cache-Control", "max-age=60"));
+		_cache.remove(URI);
+
+		assertNull(_cache.get(URI, null));
+		assertEquals(0, _cache.getSizeInBytes());
+	}
+
+	// [endregion]
+
+
+	// [region] helper methods
+
+	private void store(String uri, Map<String, String> requestHeaders,
+		Map<String, List<String>> responseHeaders) throws IOException
+	{
+		drain(_cache.storeWhileReading(uri, requestHeaders, 200,
+			responseHeaders, body("body"), _now, _now));
+	}
+
+	private static Map<String, List<String>> headers(String... namesAndValues)
+	{
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2)
+		{
+			headers.put(namesAndValues[i],
+				Collections.singletonList(namesAndValues[i + 1]));
+		}
+		return headers;
+	}
+
+	private static Map<String, String> request(String... namesAndValues)
+	{
+		Map<String, String> headers = new HashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2)
+		{
+			headers.put(namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return headers;
+	}
+
+	private static InputStream body(String text) throws IOException
+	{
+		return new ByteArrayInputStream(text.getBytes("UTF-8"));
+	}
+
+	private static byte[] drain(InputStream in) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[256];
+			int count;
+			while ((count = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static String httpDate(long time)
+	{
+		SimpleDateFormat format = new SimpleDateFormat(
+			"EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(time));
+	}
+
+	// [endregion]
+
+} // class ServiceResponseCacheTest
@@ -0,0 +1,129 @@
+package com.nascentdigital.threading;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class AgingPriorityBlockingQueueTest
+{
+	// [region] constants
+
+	// elements are ints whose tens digit is their priority
+	private static final AgingPriorityBlockingQueue.PriorityProvider<Integer>
+		TENS = element -> element / 10;
+
+	// [endregion]
+
+
+	// [region] tests
+
+	@Test
+	public void servesHigherPriorityFirstAndFifoWithinPriority()
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS);
+		queue.addAll(Arrays.asList(1, 21, 11, 2, 22, 12, 3));
+
+		assertEquals(Arrays.asList(21, 22, 11, 12, 1, 2, 3), drain(queue));
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void agingLetsLongWaitingElementOvertakeHigherPriority()
+		throws InterruptedException
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS, 10);
+		queue.offer(1);
+		Thread.sleep(60);
+		queue.offer(21);
+
+		// 1 has aged by about six levels, 21 by none
+		assertEquals(Arrays.asList(1, 21), drain(queue));
+	}
+
+	@Test
+	public void withoutAgingWaitingDoesNotRaisePriority()
+		throws InterruptedException
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS);
+		queue.offer(1);
+		Thread.sleep(60);
+		queue.offer(21);
+
+		assertEquals(Arrays.asList(21, 1), drain(queue));
+	}
+
+	@Test
+	public void agingKeepsFifoWithinPriority() throws InterruptedException
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS, 10);
+		queue.offer(1);
+		queue.offer(2);
+		Thread.sleep(30);
+		queue.offer(3);
+
+		assertEquals(Arrays.asList(1, 2, 3), drain(queue));
+	}
+
+	@Test
+	public void removeAndContainsFindElementsAtAnyPriority()
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS);
+		queue.addAll(Arrays.asList(1, 11, 21));
+
+		assertTrue(queue.contains(11));
+		assertTrue(queue.remove(11));
+		assertEquals(2, queue.size());
+		assertEquals(Arrays.asList(21, 1), drain(queue));
+	}
+
+	@Test
+	public void reportsWaitPercentilesPerPriority() throws InterruptedException
+	{
+		AgingPriorityBlockingQueue<Integer> queue =
+			new AgingPriorityBlockingQueue<>(TENS);
+		assertEquals(-1, queue.getWaitPercentile(0, 50), 0);
+
+		queue.offer(1);
+		Thread.sleep(40);
+		queue.poll();
+		queue.offer(2);
+		queue.poll();
+		queue.offer(11);
+		queue.poll();
+
+		double fastest = queue.getWaitPercentile(0, 0);
+		double slowest = queue.getWaitPercentile(0, 100);
+		assertTrue("slowest " + slowest, slowest >= 40);
+		assertTrue("fastest " + fastest, fastest < 40);
+		assertEquals(slowest, queue.getWaitPercentile(0, 99), 0);
+		assertTrue(queue.getWaitPercentile(1, 50) < 40);
+		assertEquals(-1, queue.getWaitPercentile(2, 50), 0);
+	}
+
+	// [endregion]
+
+
+	// [region] helper methods
+
+	private static ArrayList<Integer> drain(
+		AgingPriorityBlockingQueue<Integer> queue)
+	{
+		ArrayList<Integer> elements = new ArrayList<>();
+		queue.drainTo(elements);
+		return elements;
+	}
+
+	// [endregion]
+
+} // class AgingPriorityBlockingQueueTest
@@ -0,0 +1,190 @@
+package com.nascentdigital.util;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class IndexedJsonTest
+{
+	// [region] tests
+
+	@Test
+	public void readsNestedValues() throws UnsupportedEncodingException
+	{
+		IndexedJson json = parse("{\"user\": {\"id\": 42, \"name\": \"Ada\","
+			+ " \"admin\": true, \"manager\": null},"
+			+ " \"scores\": [1.5, -2, 3e2], \"empty\": {}, \"none\": []}");
+
+		assertTrue(json.isJsonObject());
+		assertEquals(Arrays.asList("user", "scores", "empty", "none"),
+			json.getKeys());
+		assertEquals(4, json.size());
+
+		IndexedJson user = json.get("user");
+		assertEquals(42, user.get("id").getAsInt());
+		assertEquals("Ada", user.get("name").getAsString());
+		assertTrue(user.get("admin").getAsBoolean());
+		assertTrue(user.get("manager").isJsonNull());
+		assertFalse(user.has("email"));
+		assertNull(user.get("email"));
+
+		IndexedJson scores = json.get("scores");
+		assertEquals(3, scores.size());
+		assertEquals(1.5, scores.get(0).getAsDouble(), 0);
+		assertEquals(-2, scores.get(1).getAsLong());
+		assertEquals(300, scores.get(2).getAsInt());
+		assertNull(scores.get(3));
+		assertEquals(3, scores.getAsList().size());
+
+		assertEquals(0, json.get("empty").size());
+		assertEquals(0, json.get("none").size());
+		assertEquals("{\"id\": 42, \"name\": \"Ada\", \"admin\": true,"
+			+ " \"manager\": null}", user.toString());
+	}
+
+	@Test
+	public void readsNumbersBeyondLong() throws UnsupportedEncodingException
+	{
+		IndexedJson json = parse("[9223372036854775807, 12345678901234567890,"
+			+ " -9223372036854775808]");
+
+		assertEquals(Long.MAX_VALUE, json.get(0).getAsLong());
+		assertEquals(new BigDecimal("12345678901234567890"),
+			json.get(1).getAsBigDecimal());
+		assertEquals(Long.MIN_VALUE, json.get(2).getAsLong());
+	}
+
+	@Test
+	public void decodesEscapes() throws UnsupportedEncodingException
+	{
+		IndexedJson json = parse("[\"quote\\\" slash\\/ back\\\\\","
+			+ " \"\\b\\f\\n\\r\\t\", \"\\u00e9\\u20AC\", \"\\ud83d\\ude00\"]");
+
+		assertEquals("quote\" slash/ back\\", json.get(0).getAsString());
+		assertEquals("\b\f\n\r\t", json.get(1).getAsString());
+		assertEquals("\u00e9\u20ac", json.get(2).getAsString());
+		assertEquals("\ud83d\ude00", json.get(3).getAsString());
+	}
+
+	@Test
+	public void decodesUtf8() throws UnsupportedEncodingException
+	{
+		String text = "caf\u00e9 \u20ac \ud83d\ude00";
+		IndexedJson json = parse("[\"" + text + "\"]");
+
+		assertEquals(text, json.get(0).getAsString());
+	}
+
+	@Test
+	public void findsEscapedAndNonAsciiKeys()
+		throws UnsupportedEncodingException
+	{
+		IndexedJson json = parse("{\"a\\\"b\": 1, \"caf\u00e9\": 2,"
+			+ " \"\\u00e9t\\u00e9\": 3, \"ab\": 4}");
+
+		assertEquals(1, json.get("a\"b").getAsInt());
+		assertEquals(2, json.get("caf\u00e9").getAsInt());
+		assertEquals(3, json.get("\u00e9t\u00e9").getAsInt());
+		assertEquals(4, json.get("ab").getAsInt());
+		assertFalse(json.has("a"));
+		assertFalse(json.has("caf"));
+		assertEquals(Arrays.asList("a\"b", "caf\u00e9", "\u00e9t\u00e9", "ab"),
+			json.getKeys());
+	}
+
+	@Test
+	public void parsesSlice() throws UnsupportedEncodingException
+	{
+		byte[] data = "xx{\"a\": [1, 2]}yy".getBytes("UTF-8");
+		IndexedJson json = IndexedJson.parse(data, 2, data.length - 4);
+
+		assertEquals(2, json.get("a").get(1).getAsInt());
+	}
+
+	@Test
+	public void convertsToGsonTree() throws UnsupportedEncodingException
+	{
+		String text = "{\"a\": [1, {\"b\": \"c\\u00e9\"}], \"d\": null}";
+
+		assertEquals(new JsonParser().parse(text),
+			parse(text).toJsonElement());
+	}
+
+	@Test
+	public void readsTopLevelScalars() throws UnsupportedEncodingException
+	{
+		assertEquals("s", parse(" \"s\" ").getAsString());
+		assertEquals(-1, parse("-1").getAsInt());
+		assertFalse(parse("false").getAsBoolean());
+		assertTrue(parse("null").isJsonNull());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void objectIsNotAString() throws UnsupportedEncodingException
+	{
+		parse("{}").getAsString();
+	}
+
+	@Test
+	public void rejectsMalformedDocuments() throws UnsupportedEncodingException
+	{
+		String[] documents = {
+			"",
+			"   ",
+			"{",
+			"[1, 2",
+			"{\"a\": 1,}",
+			"[1,]",
+			"{\"a\" 1}",
+			"{a: 1}",
+			"{\"a\": 1}}",
+			"[1] [2]",
+			"[1 2]",
+			"\"unterminated",
+			"\"tab\there\"",
+			"tru",
+			"truex",
+			"[1}",
+			"{\"a\": 1]",
+			"@"
+		};
+		for (String document : documents)
+		{
+			try
+			{
+				parse(document);
+				fail("Parsed " + document);
+			}
+			catch (JsonSyntaxException e)
+			{
+				// expected
+			}
+		}
+	}
+
+	// [endregion]
+
+
+	// [region] helper methods
+
+	private static IndexedJson parse(String text)
+		throws UnsupportedEncodingException
+	{
+		return IndexedJson.parse(text.getBytes("UTF-8"));
+	}
+
+	// [endregion]
+
+} // class IndexedJsonTest